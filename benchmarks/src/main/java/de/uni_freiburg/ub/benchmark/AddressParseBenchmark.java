@@ -0,0 +1,139 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.IpAddress;
+import de.uni_freiburg.ub.Ipv4Address;
+import de.uni_freiburg.ub.Ipv6Address;
+
+// parsing of single addresses, the legacy methods reproduce the split based
+// parsers which were replaced by Ipv4Address.parseBits and
+// Ipv6Address.parseBits
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressParseBenchmark {
+
+	static final int N = 1024;
+
+	String[] ipv4;
+	String[] ipv6;
+	String[] compressedIpv6;
+	String[] mixed;
+	long[] bits;
+
+	@Setup
+	public void setup() {
+		ipv4 = Corpus.ipv4Addresses(N, 1);
+		ipv6 = Corpus.ipv6Addresses(N, 2);
+		compressedIpv6 = Corpus.compressedIpv6Addresses(N, 3);
+		mixed = Corpus.mixedAddresses(N, 4);
+		bits = new long[2];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpAddressMixed(Blackhole bh) {
+		for (String s : mixed) {
+			bh.consume(IpAddress.parseIpAddress(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpv4Bits(Blackhole bh) {
+		for (String s : ipv4) {
+			bh.consume(Ipv4Address.parseBits(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpv4Legacy(Blackhole bh) {
+		for (String s : ipv4) {
+			bh.consume(legacyIpv4(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpv6Bits(Blackhole bh) {
+		for (String s : ipv6) {
+			Ipv6Address.parseBits(s, bits);
+			bh.consume(bits[0]);
+			bh.consume(bits[1]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseCompressedIpv6Bits(Blackhole bh) {
+		for (String s : compressedIpv6) {
+			Ipv6Address.parseBits(s, bits);
+			bh.consume(bits[0]);
+			bh.consume(bits[1]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpv6Legacy(Blackhole bh) {
+		for (String s : ipv6) {
+			bh.consume(legacyIpv6(s));
+		}
+	}
+
+	static long legacyIpv4(String str) {
+		String[] blocks = str.split("\\.");
+		if (blocks.length != 4) {
+			throw new IllegalArgumentException(str);
+		}
+		Integer result = 0;
+		for (int idx = 0; idx <= 3; idx++) {
+			Integer block = Integer.parseInt(blocks[idx]);
+			if (0 <= block && block <= 255) {
+				result |= Integer.parseInt(blocks[idx]) << ((3 - idx) * 8);
+			} else {
+				throw new NumberFormatException();
+			}
+		}
+		return Integer.toUnsignedLong(result);
+	}
+
+	static Ipv6Address legacyIpv6(String s) {
+		String[] blocks = s.split(":");
+		long high = 0L;
+		long low = 0L;
+		for (int i = 0; i < 8; i++) {
+			long longValue = 0l;
+			if (!blocks[i].isEmpty()) {
+				longValue = Long.parseLong(blocks[i], 16);
+			}
+			if (longValue < 0 || longValue > 65535) {
+				throw new NumberFormatException();
+			}
+			if (i < 4) {
+				high |= (longValue << ((4 - i - 1) * 16));
+			} else {
+				low |= (longValue << ((4 - i - 1) * 16));
+			}
+		}
+		return new Ipv6Address(high, low);
+	}
+}
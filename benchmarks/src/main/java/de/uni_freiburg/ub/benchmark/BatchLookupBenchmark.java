@@ -0,0 +1,75 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+import de.uni_freiburg.ub.IpRangeIndex;
+
+// classifying a batch of random ipv4 addresses one by one compared to the
+// sorted merge of the batch with the ranges
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class BatchLookupBenchmark {
+
+	@Param({ "1000000" })
+	int batchSize;
+
+	@Param({ "10000", "1000000" })
+	int ranges;
+
+	IpRangeIndex index;
+	int[] addresses;
+
+	@Setup
+	public void setup() {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (IpRange range : Corpus.ipv4Ranges(ranges, 1 << 8, 1)) {
+			ipRangeCollection.add(range);
+		}
+		index = new IpRangeIndex(ipRangeCollection);
+
+		Random random = new Random(2);
+		addresses = new int[batchSize];
+		for (int i = 0; i < batchSize; i++) {
+			addresses[i] = random.nextInt();
+		}
+	}
+
+	@Benchmark
+	public int[] single() {
+		int[] result = new int[addresses.length];
+		for (int i = 0; i < addresses.length; i++) {
+			result[i] = index.indexOfIpv4(addresses[i] & 0xFFFFFFFFl);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int[] batch() {
+		return index.indexOfIpv4(addresses);
+	}
+
+	@Benchmark
+	public int[] batchParallel() {
+		return index.indexOfIpv4(addresses, ForkJoinPool.commonPool());
+	}
+}
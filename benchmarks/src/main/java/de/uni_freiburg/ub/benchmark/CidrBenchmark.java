@@ -0,0 +1,83 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.CidrSink;
+import de.uni_freiburg.ub.IpRange;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CidrBenchmark {
+
+	static final int N = 256;
+
+	IpRange[] ipv4;
+	IpRange[] ipv6;
+
+	@Setup
+	public void setup() {
+		ipv4 = Corpus.ipv4Ranges(N, 1 << 20, 1);
+		ipv6 = Corpus.ipv6Ranges(N, 2);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void toCidrStringsIpv4(Blackhole bh) {
+		for (IpRange range : ipv4) {
+			bh.consume(range.toCidr());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void toCidrSinkIpv4(final Blackhole bh) {
+		CidrSink sink = new CidrSink() {
+			@Override
+			public void accept(long highBits, long lowBits, int cidrSuffix) {
+				bh.consume(lowBits);
+			}
+		};
+		for (IpRange range : ipv4) {
+			bh.consume(range.toCidr(sink));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void toCidrStringsIpv6(Blackhole bh) {
+		for (IpRange range : ipv6) {
+			bh.consume(range.toCidr());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void toCidrSinkIpv6(final Blackhole bh) {
+		CidrSink sink = new CidrSink() {
+			@Override
+			public void accept(long highBits, long lowBits, int cidrSuffix) {
+				bh.consume(lowBits);
+			}
+		};
+		for (IpRange range : ipv6) {
+			bh.consume(range.toCidr(sink));
+		}
+	}
+}
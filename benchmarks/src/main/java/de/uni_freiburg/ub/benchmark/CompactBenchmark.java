@@ -0,0 +1,48 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+
+// compaction of large collections of random ranges
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class CompactBenchmark {
+
+	@Param({ "10000", "1000000" })
+	int size;
+
+	IpRange[] ranges;
+	IpRangeCollection ipRangeCollection;
+
+	@Setup
+	public void setup() {
+		ranges = Corpus.ipv4Ranges(size, 1 << 12, 1);
+		ipRangeCollection = new IpRangeCollection();
+		for (IpRange range : ranges) {
+			ipRangeCollection.add(range);
+		}
+	}
+
+	@Benchmark
+	public IpRangeCollection compact() {
+		return ipRangeCollection.compact();
+	}
+}
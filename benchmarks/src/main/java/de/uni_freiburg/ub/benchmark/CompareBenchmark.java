@@ -0,0 +1,118 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.IpAddress;
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.Ipv4Address;
+import de.uni_freiburg.ub.Ipv6Address;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareBenchmark {
+
+	static final int N = 1024;
+
+	IpAddress[] ipv4;
+	IpAddress[] ipv6;
+	Ipv4Address[] typedIpv4;
+	Ipv6Address[] typedIpv6;
+
+	@Setup
+	public void setup() {
+		IpRange[] ipv4Ranges = Corpus.ipv4Ranges(N, 1 << 16, 1);
+		IpRange[] ipv6Ranges = Corpus.ipv6Ranges(N, 2);
+		ipv4 = new IpAddress[N];
+		ipv6 = new IpAddress[N];
+		typedIpv4 = new Ipv4Address[N];
+		typedIpv6 = new Ipv6Address[N];
+		for (int i = 0; i < N; i++) {
+			ipv4[i] = ipv4Ranges[i].getLowerLimit();
+			ipv6[i] = ipv6Ranges[i].getLowerLimit();
+			typedIpv4[i] = (Ipv4Address) ipv4[i];
+			typedIpv6[i] = (Ipv6Address) ipv6[i];
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N - 1)
+	public void compareToIpv4(Blackhole bh) {
+		for (int i = 1; i < N; i++) {
+			bh.consume(ipv4[i - 1].compareTo(ipv4[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N - 1)
+	public void isGreaterIpv4(Blackhole bh) {
+		for (int i = 1; i < N; i++) {
+			bh.consume(ipv4[i - 1].isGreater(ipv4[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N - 1)
+	public void compareToIpv6(Blackhole bh) {
+		for (int i = 1; i < N; i++) {
+			bh.consume(ipv6[i - 1].compareTo(ipv6[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N - 1)
+	public void isGreaterIpv6(Blackhole bh) {
+		for (int i = 1; i < N; i++) {
+			bh.consume(ipv6[i - 1].isGreater(ipv6[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N - 1)
+	public void isGreaterTypedIpv4(Blackhole bh) {
+		for (int i = 1; i < N; i++) {
+			bh.consume(typedIpv4[i - 1].isGreater(typedIpv4[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N - 1)
+	public void isGreaterTypedIpv6(Blackhole bh) {
+		for (int i = 1; i < N; i++) {
+			bh.consume(typedIpv6[i - 1].isGreater(typedIpv6[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void hashCodeIpv6(Blackhole bh) {
+		for (int i = 0; i < N; i++) {
+			bh.consume(ipv6[i].hashCode());
+		}
+	}
+
+	// prefix boundaries come from the shared instance cache
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void lowerLimitIpv4(Blackhole bh) {
+		for (int i = 0; i < N; i++) {
+			bh.consume(ipv4[i].getLowerLimit(16));
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.Random;
+
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.Ipv4Address;
+import de.uni_freiburg.ub.Ipv6Address;
+
+// deterministic test data for the benchmarks, generated in memory so that
+// the benchmarks run without any input files or network access
+public final class Corpus {
+
+	private Corpus() {
+	}
+
+	public static String[] ipv4Addresses(int n, long seed) {
+		Random random = new Random(seed);
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = new Ipv4Address(random.nextInt() & 0xFFFFFFFFl).toString();
+		}
+		return result;
+	}
+
+	// zero padded ipv6 addresses as written by Ipv6Address.toString
+	public static String[] ipv6Addresses(int n, long seed) {
+		Random random = new Random(seed);
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = new Ipv6Address(0x2001000000000000l | (random.nextLong() >>> 16), random.nextLong())
+					.toString();
+		}
+		return result;
+	}
+
+	// ipv6 addresses in the compressed form found in access logs
+	public static String[] compressedIpv6Addresses(int n, long seed) {
+		Random random = new Random(seed);
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++) {
+			long high = 0x20010db800000000l | ((long) random.nextInt(0x10000) << 16);
+			long low = random.nextBoolean() ? random.nextInt(0x10000) : random.nextLong();
+			result[i] = new Ipv6Address(high, low).toCanonicalString();
+		}
+		return result;
+	}
+
+	public static String[] mixedAddresses(int n, long seed) {
+		String[] ipv4 = ipv4Addresses(n, seed);
+		String[] ipv6 = compressedIpv6Addresses(n, seed);
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++) {
+			// roughly three out of four addresses are ipv4
+			result[i] = (i & 3) == 3 ? ipv6[i] : ipv4[i];
+		}
+		return result;
+	}
+
+	// range notations accepted by IpRange.parseIpRange, see cidr_tests.txt
+	public static String[] rangeStrings(int n, long seed) {
+		Random random = new Random(seed);
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++) {
+			int a = 1 + random.nextInt(223);
+			int b = random.nextInt(256);
+			int c = random.nextInt(250);
+			int d = random.nextInt(250);
+			switch (i % 6) {
+			case 0:
+				result[i] = a + "." + b + "." + c + "." + d + "/" + (8 + random.nextInt(25));
+				break;
+			case 1:
+				result[i] = a + "." + b + "." + c + "." + d + "-" + a + "." + b + "." + (c + random.nextInt(6)) + "."
+						+ (d + 5);
+				break;
+			case 2:
+				result[i] = a + "." + b + "." + c + ".*";
+				break;
+			case 3:
+				result[i] = a + "." + b + "." + c + "-" + (c + 1 + random.nextInt(5)) + ".*";
+				break;
+			case 4:
+				result[i] = a + "." + b + "." + c + "." + d + "-" + (d + 1 + random.nextInt(5));
+				break;
+			default:
+				result[i] = "2001:db8:" + Integer.toHexString(random.nextInt(0x10000)) + "::/"
+						+ (48 + random.nextInt(81));
+				break;
+			}
+		}
+		return result;
+	}
+
+	public static IpRange[] ipv4Ranges(int n, int maxSize, long seed) {
+		Random random = new Random(seed);
+		IpRange[] result = new IpRange[n];
+		for (int i = 0; i < n; i++) {
+			long lower = random.nextInt() & 0xFFFFFFFFl;
+			long upper = Math.min(0xFFFFFFFFl, lower + random.nextInt(maxSize));
+			result[i] = new IpRange(new Ipv4Address(lower), new Ipv4Address(upper));
+		}
+		return result;
+	}
+
+	public static IpRange[] ipv6Ranges(int n, long seed) {
+		Random random = new Random(seed);
+		IpRange[] result = new IpRange[n];
+		for (int i = 0; i < n; i++) {
+			long high = 0x2001000000000000l | (random.nextLong() >>> 16);
+			long low = random.nextLong() >>> 1;
+			long size = random.nextLong() >>> (1 + random.nextInt(62));
+			result[i] = new IpRange(new Ipv6Address(high, low), new Ipv6Address(high, low + size));
+		}
+		return result;
+	}
+}
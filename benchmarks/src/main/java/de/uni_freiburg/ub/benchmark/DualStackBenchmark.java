@@ -0,0 +1,106 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.DualStack;
+import de.uni_freiburg.ub.DualStackIpRangeSet;
+import de.uni_freiburg.ub.IpAddress;
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+import de.uni_freiburg.ub.IpRangeIndex;
+
+// lookups of ipv4 clients logged as plain or ipv4-mapped addresses in an ipv4
+// allowlist, rewriting the mapped strings and an IpRangeIndex against the
+// DualStackIpRangeSet
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class DualStackBenchmark {
+
+	static final int LOOKUPS = 1024;
+	static final String MAPPED_PREFIX = "::ffff:";
+
+	@Param({ "100000" })
+	int ranges;
+
+	IpRangeIndex index;
+	DualStackIpRangeSet set;
+	String[] strings;
+	IpAddress[] addresses;
+
+	@Setup
+	public void setup() {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (IpRange range : Corpus.ipv4Ranges(ranges, 1 << 12, 1)) {
+			ipRangeCollection.add(range);
+		}
+		for (IpRange range : Corpus.ipv6Ranges(ranges / 10, 2)) {
+			ipRangeCollection.add(range);
+		}
+		index = new IpRangeIndex(ipRangeCollection);
+		set = new DualStackIpRangeSet(ipRangeCollection);
+
+		// half of the clients are logged as ipv4-mapped addresses
+		String[] ipv4 = Corpus.ipv4Addresses(LOOKUPS, 3);
+		Random random = new Random(4);
+		strings = new String[LOOKUPS];
+		addresses = new IpAddress[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			strings[i] = random.nextBoolean() ? MAPPED_PREFIX + ipv4[i] : ipv4[i];
+			addresses[i] = IpAddress.parseIpAddress(strings[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void rewriteStrings(Blackhole bh) {
+		for (String s : strings) {
+			if (s.startsWith(MAPPED_PREFIX)) {
+				s = s.substring(MAPPED_PREFIX.length());
+			}
+			bh.consume(index.contains(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void dualStackStrings(Blackhole bh) {
+		for (String s : strings) {
+			bh.consume(set.contains(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void normalizeAddresses(Blackhole bh) {
+		for (IpAddress ipAddr : addresses) {
+			bh.consume(index.contains(DualStack.normalize(ipAddr)));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void dualStackAddresses(Blackhole bh) {
+		for (IpAddress ipAddr : addresses) {
+			bh.consume(set.contains(ipAddr));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.Ipv4EytzingerIndex;
+import de.uni_freiburg.ub.Ipv4RangeSet;
+
+// ipv4 lookups of random addresses in the eytzinger layout against binary
+// searches over the sorted packed ranges of Ipv4RangeSet and over sorted int
+// arrays with the same flipped keys
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class EytzingerBenchmark {
+
+	static final int LOOKUPS = 1024;
+
+	@Param({ "10000", "1000000", "10000000" })
+	int ranges;
+
+	Ipv4RangeSet ipv4RangeSet;
+	Ipv4EytzingerIndex index;
+	int[] lower;
+	int[] upper;
+	long[] addresses;
+
+	@Setup
+	public void setup() {
+		// disjoint ranges covering about half of the address space
+		Random random = new Random(1);
+		long step = (1l << 32) / ranges;
+		ipv4RangeSet = new Ipv4RangeSet(ranges);
+		lower = new int[ranges];
+		upper = new int[ranges];
+		for (int i = 0; i < ranges; i++) {
+			long lowerLimit = i * step + random.nextInt((int) (step / 2));
+			long upperLimit = lowerLimit + random.nextInt((int) (step / 2));
+			ipv4RangeSet.add(lowerLimit, upperLimit);
+			lower[i] = (int) lowerLimit ^ Integer.MIN_VALUE;
+			upper[i] = (int) upperLimit ^ Integer.MIN_VALUE;
+		}
+		index = new Ipv4EytzingerIndex(ipv4RangeSet);
+
+		addresses = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			addresses[i] = random.nextInt() & 0xFFFFFFFFl;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void eytzinger(Blackhole bh) {
+		for (long bits : addresses) {
+			bh.consume(index.contains(bits));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void packedBinarySearch(Blackhole bh) {
+		for (long bits : addresses) {
+			bh.consume(ipv4RangeSet.contains(bits));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void intBinarySearch(Blackhole bh) {
+		for (long bits : addresses) {
+			bh.consume(contains(bits));
+		}
+	}
+
+	private boolean contains(long bits) {
+		int x = (int) bits ^ Integer.MIN_VALUE;
+		int low = 0;
+		int high = lower.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (lower[mid] <= x) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high >= 0 && x <= upper[high];
+	}
+}
@@ -0,0 +1,100 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.Exception.InvalidFormatException;
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+import de.uni_freiburg.ub.IpRangeFile;
+import de.uni_freiburg.ub.IpRangeIndex;
+
+// opening a binary range file and querying it on the mapped buffer compared
+// to an IpRangeIndex on the heap
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class FileBenchmark {
+
+	static final int LOOKUPS = 1024;
+
+	@Param({ "1000000" })
+	int size;
+
+	Path path;
+	IpRangeFile file;
+	IpRangeIndex index;
+	long[] addresses;
+
+	@Setup
+	public void setup() throws IOException, InvalidFormatException {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (IpRange range : Corpus.ipv4Ranges(size, 1 << 8, 1)) {
+			ipRangeCollection.add(range);
+		}
+		path = Files.createTempFile("ranges", ".iprc");
+		IpRangeFile.write(ipRangeCollection, path);
+		file = IpRangeFile.open(path);
+		index = new IpRangeIndex(ipRangeCollection);
+
+		Random random = new Random(2);
+		addresses = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			addresses[i] = random.nextLong() & 0xFFFFFFFFl;
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(path);
+	}
+
+	@Benchmark
+	public IpRangeFile open() throws IOException, InvalidFormatException {
+		return IpRangeFile.open(path, false);
+	}
+
+	@Benchmark
+	public IpRangeFile openVerified() throws IOException, InvalidFormatException {
+		return IpRangeFile.open(path, true);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public void containsMapped(Blackhole bh) {
+		for (long address : addresses) {
+			bh.consume(file.containsIpv4(address));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public void containsIndex(Blackhole bh) {
+		for (long address : addresses) {
+			bh.consume(index.indexOfIpv4(address) >= 0);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+
+// incremental compaction, every add shifts the tail of the bound arrays so
+// this mode is meant for moderate sizes and frequent small updates
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class IncrementalCompactBenchmark {
+
+	@Param({ "1000", "10000" })
+	int size;
+
+	IpRange[] ranges;
+
+	@Setup
+	public void setup() {
+		ranges = Corpus.ipv4Ranges(size, 1 << 12, 1);
+	}
+
+	@Benchmark
+	public IpRangeCollection addKeepCompacted() {
+		IpRangeCollection result = new IpRangeCollection(true);
+		for (IpRange range : ranges) {
+			result.add(range);
+		}
+		return result;
+	}
+}
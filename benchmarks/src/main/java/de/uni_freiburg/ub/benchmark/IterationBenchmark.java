@@ -0,0 +1,82 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uni_freiburg.ub.AddressCursor;
+import de.uni_freiburg.ub.IpAddress;
+import de.uni_freiburg.ub.IpRange;
+
+// walking over all addresses of a /16 and a /112
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+	IpRange ipv4;
+	IpRange ipv6;
+
+	@Setup
+	public void setup() {
+		ipv4 = IpRange.parseIpRange("132.230.0.0/16");
+		ipv6 = IpRange.parseIpRange("2001:db8::/112");
+	}
+
+	@Benchmark
+	public long nextIpv4() {
+		long sum = 0;
+		IpAddress last = ipv4.getUpperLimit();
+		for (IpAddress ipAddr = ipv4.getLowerLimit(); ; ipAddr = ipAddr.next()) {
+			sum += ipAddr.hashCode();
+			if (ipAddr.equals(last)) {
+				return sum;
+			}
+		}
+	}
+
+	@Benchmark
+	public long iteratorIpv4() {
+		long sum = 0;
+		PrimitiveIterator.OfLong it = ipv4.ipv4Iterator();
+		while (it.hasNext()) {
+			sum += it.nextLong();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long nextIpv6() {
+		long sum = 0;
+		IpAddress last = ipv6.getUpperLimit();
+		for (IpAddress ipAddr = ipv6.getLowerLimit(); ; ipAddr = ipAddr.next()) {
+			sum += ipAddr.hashCode();
+			if (ipAddr.equals(last)) {
+				return sum;
+			}
+		}
+	}
+
+	@Benchmark
+	public long cursorIpv6() {
+		long sum = 0;
+		AddressCursor cursor = ipv6.cursor();
+		while (cursor.next()) {
+			sum += cursor.lowBits();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,77 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+import de.uni_freiburg.ub.IpRangeLoader;
+
+// loading a range file into a compacted collection, line by line with
+// IpRange.parseIpRange compared to IpRangeLoader
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class LoadBenchmark {
+
+	@Param({ "500000" })
+	int lines;
+
+	byte[] file;
+	IpRangeLoader loader;
+	IpRangeLoader sequentialLoader;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder();
+		for (String range : Corpus.rangeStrings(lines, 1)) {
+			sb.append(range).append('\n');
+		}
+		file = sb.toString().getBytes(StandardCharsets.US_ASCII);
+		loader = new IpRangeLoader();
+		sequentialLoader = new IpRangeLoader(new ForkJoinPool(1));
+	}
+
+	@Benchmark
+	public IpRangeCollection lineByLine() throws IOException {
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new ByteArrayInputStream(file), StandardCharsets.US_ASCII));
+		IpRangeCollection result = new IpRangeCollection();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			result.add(IpRange.parseIpRange(line));
+		}
+		return result.compact();
+	}
+
+	@Benchmark
+	public IpRangeCollection loader() {
+		return loader.load(ByteBuffer.wrap(file), null);
+	}
+
+	@Benchmark
+	public IpRangeCollection loaderSingleThread() {
+		return sequentialLoader.load(ByteBuffer.wrap(file), null);
+	}
+}
@@ -0,0 +1,99 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.ConcurrentIpRangeSet;
+import de.uni_freiburg.ub.IpAddress;
+import de.uni_freiburg.ub.IpLookupCache;
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+import de.uni_freiburg.ub.Ipv4Address;
+
+// skewed traffic where 90% of the queries come from a few thousand addresses,
+// lookups in a ConcurrentIpRangeSet with and without an IpLookupCache
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class LookupCacheBenchmark {
+
+	static final int LOOKUPS = 4096;
+	static final int HOT_ADDRESSES = 2000;
+
+	@Param({ "100000" })
+	int ranges;
+
+	ConcurrentIpRangeSet set;
+	IpLookupCache cache;
+	String[] strings;
+	long[] addresses;
+
+	@Setup
+	public void setup() {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (IpRange range : Corpus.ipv4Ranges(ranges, 1 << 12, 1)) {
+			ipRangeCollection.add(range);
+		}
+		set = new ConcurrentIpRangeSet(ipRangeCollection);
+		cache = new IpLookupCache(set, 4096);
+
+		String[] hot = Corpus.ipv4Addresses(HOT_ADDRESSES, 2);
+		String[] cold = Corpus.ipv4Addresses(LOOKUPS, 3);
+		Random random = new Random(4);
+		strings = new String[LOOKUPS];
+		addresses = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			strings[i] = random.nextInt(10) == 0 ? cold[i] : hot[random.nextInt(HOT_ADDRESSES)];
+			addresses[i] = ((Ipv4Address) IpAddress.parseIpAddress(strings[i])).longValue();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void parseAndLookup(Blackhole bh) {
+		for (String s : strings) {
+			bh.consume(set.contains(IpAddress.parseIpAddress(s)));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void cachedStrings(Blackhole bh) {
+		for (String s : strings) {
+			bh.consume(cache.contains(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void lookupBits(Blackhole bh) {
+		for (long bits : addresses) {
+			bh.consume(set.snapshot().containsIpv4(bits));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void cachedBits(Blackhole bh) {
+		for (long bits : addresses) {
+			bh.consume(cache.containsIpv4(bits));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.InMemoryMetricsRecorder;
+import de.uni_freiburg.ub.IpAddress;
+import de.uni_freiburg.ub.IpMetrics;
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+import de.uni_freiburg.ub.IpRangeIndex;
+
+// overhead of the instrumentation on parsing and lookups without a recorder
+// and with an InMemoryMetricsRecorder, lookupThreads shows the sampling
+// overhead of concurrent readers on machines with several cores
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class MetricsBenchmark {
+
+	static final int N = 1024;
+
+	@Param({ "none", "memory" })
+	String recorder;
+
+	String[] rangeStrings;
+	IpAddress[] addresses;
+	IpRangeIndex index;
+
+	@Setup
+	public void setup() {
+		rangeStrings = Corpus.rangeStrings(N, 1);
+
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (IpRange range : Corpus.ipv4Ranges(100000, 1 << 12, 2)) {
+			ipRangeCollection.add(range);
+		}
+		index = new IpRangeIndex(ipRangeCollection);
+		String[] ipv4 = Corpus.ipv4Addresses(N, 3);
+		addresses = new IpAddress[N];
+		for (int i = 0; i < N; i++) {
+			addresses[i] = IpAddress.parseIpAddress(ipv4[i]);
+		}
+
+		IpMetrics.setRecorder("memory".equals(recorder) ? new InMemoryMetricsRecorder() : null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		IpMetrics.setRecorder(null);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpRange(Blackhole bh) {
+		for (String s : rangeStrings) {
+			bh.consume(IpRange.tryParseIpRange(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void lookup(Blackhole bh) {
+		for (IpAddress ipAddr : addresses) {
+			bh.consume(index.lookup(ipAddr));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	@Threads(4)
+	public void lookupThreads(Blackhole bh) {
+		for (IpAddress ipAddr : addresses) {
+			bh.consume(index.lookup(ipAddr));
+		}
+	}
+}
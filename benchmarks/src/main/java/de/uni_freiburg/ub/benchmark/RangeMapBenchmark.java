@@ -0,0 +1,77 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeMap;
+
+// splitting overlapping ranges into segments and looking up the value of
+// random addresses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class RangeMapBenchmark {
+
+	static final int LOOKUPS = 1024;
+
+	@Param({ "100000" })
+	int ranges;
+
+	IpRange[] input;
+	IpRangeMap<Integer> map;
+	long[] addresses;
+
+	@Setup
+	public void setup() {
+		// large ranges so that most of them overlap
+		input = Corpus.ipv4Ranges(ranges, 1 << 16, 1);
+		map = build();
+
+		Random random = new Random(2);
+		addresses = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			addresses[i] = random.nextInt() & 0xFFFFFFFFl;
+		}
+	}
+
+	private IpRangeMap<Integer> build() {
+		IpRangeMap<Integer> result = new IpRangeMap<Integer>(IpRangeMap.MergePolicy.FIRST_WINS);
+		for (int i = 0; i < input.length; i++) {
+			result.put(input[i], i % 16);
+		}
+		result.size();
+		return result;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public IpRangeMap<Integer> buildMap() {
+		return build();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void get(Blackhole bh) {
+		for (long bits : addresses) {
+			bh.consume(map.getIpv4(bits));
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uni_freiburg.ub.IpAddress;
+import de.uni_freiburg.ub.IpRange;
+
+// cidr, dash, wildcard and octet range notations in equal parts, the legacy
+// method reproduces the regex and split based cascade which was replaced by
+// the single pass IpRangeParser
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeParseBenchmark {
+
+	static final int N = 1200;
+
+	String[] ranges;
+
+	@Setup
+	public void setup() {
+		ranges = Corpus.rangeStrings(N, 1);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpRange(Blackhole bh) {
+		for (String s : ranges) {
+			bh.consume(IpRange.parseIpRange(s));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseIpRangeLegacy(Blackhole bh) {
+		for (String s : ranges) {
+			bh.consume(legacy(s));
+		}
+	}
+
+	static IpRange legacy(String s) {
+		s = StringUtils.removeAll(s, "\\s");
+
+		String[] parts = s.split("/");
+		if (parts.length == 2) {
+			IpAddress addr = IpAddress.parseIpAddress(parts[0]);
+			int cidrSuffix = addr.parseCidrSuffix(parts[1]);
+			return new IpRange(addr.getLowerLimit(cidrSuffix), addr.getUpperLimit(cidrSuffix), s);
+		}
+
+		String[] limits = s.split("-");
+		if (limits.length == 2) {
+			IpAddress lowerLimit = IpAddress.tryParseIpAddress(limits[0]).getValue();
+			IpAddress upperLimit = IpAddress.tryParseIpAddress(limits[1]).getValue();
+			if (lowerLimit != null && upperLimit != null) {
+				return new IpRange(lowerLimit, upperLimit, s);
+			}
+		}
+
+		if (s.contains(":")) {
+			IpAddress addr = IpAddress.parseIpAddress(s);
+			return new IpRange(addr, addr, s);
+		}
+
+		String[] blocks = s.split("\\.");
+		String blockD = blocks.length == 3 ? "*" : blocks[3];
+		String[] lower = new String[4];
+		String[] upper = new String[4];
+		lower[0] = upper[0] = String.valueOf(Short.parseShort(blocks[0]));
+		lower[1] = upper[1] = String.valueOf(Short.parseShort(blocks[1]));
+		legacyBlock(blocks[2], lower, upper, 2);
+		legacyBlock(blockD, lower, upper, 3);
+		return new IpRange(IpAddress.parseIpAddress(StringUtils.join(lower, '.')),
+				IpAddress.parseIpAddress(StringUtils.join(upper, '.')), s);
+	}
+
+	static void legacyBlock(String block, String[] lower, String[] upper, int idx) {
+		if (block.equals("*")) {
+			lower[idx] = "0";
+			upper[idx] = "255";
+			return;
+		}
+		String[] parts = block.split("-");
+		if (parts.length == 2) {
+			lower[idx] = String.valueOf(Short.parseShort(parts[0]));
+			upper[idx] = String.valueOf(Short.parseShort(parts[1]));
+		} else {
+			lower[idx] = upper[idx] = String.valueOf(Short.parseShort(block));
+		}
+	}
+}
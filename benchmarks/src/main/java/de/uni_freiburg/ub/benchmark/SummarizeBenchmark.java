@@ -0,0 +1,67 @@
+package de.uni_freiburg.ub.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uni_freiburg.ub.CidrSummarizer;
+import de.uni_freiburg.ub.IpRange;
+import de.uni_freiburg.ub.IpRangeCollection;
+
+// cidr lists of a large collection, the per range blocks of toCidrStrings
+// compared to the exact summary and the summaries reduced to a tenth of the
+// blocks or limited to a budget of extra addresses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class SummarizeBenchmark {
+
+	@Param({ "300000" })
+	int ranges;
+
+	IpRangeCollection ipRangeCollection;
+	CidrSummarizer summarizer;
+
+	@Setup
+	public void setup() {
+		ipRangeCollection = new IpRangeCollection(true);
+		for (IpRange range : Corpus.ipv4Ranges(ranges, 1 << 8, 1)) {
+			ipRangeCollection.add(range);
+		}
+		summarizer = new CidrSummarizer(ipRangeCollection);
+	}
+
+	@Benchmark
+	public List<String> toCidrStrings() {
+		return ipRangeCollection.toCidrStrings();
+	}
+
+	@Benchmark
+	public List<String> exact() {
+		return new CidrSummarizer(ipRangeCollection).toCidrStrings();
+	}
+
+	@Benchmark
+	public List<String> maxPrefixes() {
+		return summarizer.toCidrStrings(summarizer.exactSize() / 10);
+	}
+
+	@Benchmark
+	public List<String> maxExtraAddresses() {
+		return summarizer.toCidrStringsWithin(1l << 24);
+	}
+}
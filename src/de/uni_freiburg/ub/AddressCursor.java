@@ -0,0 +1,64 @@
+package de.uni_freiburg.ub;
+
+// walks over the addresses of a range without creating an object per
+// address, ipv4 addresses have highBits 0
+//
+//   AddressCursor cursor = range.cursor();
+//   while (cursor.next()) {
+//     probe(cursor.highBits(), cursor.lowBits());
+//   }
+public final class AddressCursor {
+
+	private final boolean ipv6;
+	private final long lastHigh;
+	private final long lastLow;
+	private long highBits;
+	private long lowBits;
+	private boolean started;
+	private boolean done;
+
+	AddressCursor(boolean ipv6, long firstHigh, long firstLow, long lastHigh, long lastLow) {
+		this.ipv6 = ipv6;
+		this.highBits = firstHigh;
+		this.lowBits = firstLow;
+		this.lastHigh = lastHigh;
+		this.lastLow = lastLow;
+	}
+
+	// moves to the next address, the first call moves to the lower limit of
+	// the range. returns false behind the upper limit
+	public boolean next() {
+		if (!started) {
+			started = true;
+			return true;
+		}
+		if (done || highBits == lastHigh && lowBits == lastLow) {
+			done = true;
+			return false;
+		}
+		lowBits++;
+		if (lowBits == 0l) {
+			highBits++;
+		}
+		return true;
+	}
+
+	public boolean isIpv6() {
+		return ipv6;
+	}
+
+	public long highBits() {
+		return highBits;
+	}
+
+	public long lowBits() {
+		return lowBits;
+	}
+
+	public IpAddress toIpAddress() {
+		if (ipv6) {
+			return new Ipv6Address(highBits, lowBits);
+		}
+		return Ipv4Address.valueOf(lowBits);
+	}
+}
@@ -0,0 +1,281 @@
+package de.uni_freiburg.ub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// classifies a batch of addresses against sorted, disjoint ranges by sorting
+// the batch and merging it with the ranges, the position of the matching
+// range (or -1) is written to the position of the address in the result
+//
+// the ranges are walked forward only, gaps between consecutive addresses are
+// skipped by galloping so a small batch against many ranges does not degrade
+// to a linear scan of the ranges
+final class BatchLookup {
+
+	private static final int MIN_CHUNK_SIZE = 1 << 16;
+	private static final int RADIX_THRESHOLD = 1 << 10;
+
+	private BatchLookup() {
+	}
+
+	// addresses[from..to) are unsigned ipv4 bits
+	static void joinIpv4(long[] lower, long[] upper, int size, int[] addresses, int from, int to, int[] result) {
+		int n = to - from;
+
+		// the address and its position packed into one long, the positions
+		// are ascending so a stable sort on the address bits orders the keys
+		long[] keys = new long[n];
+		boolean sorted = true;
+		for (int i = 0; i < n; i++) {
+			keys[i] = (addresses[from + i] & 0xFFFFFFFFl) << 32 | i;
+			if (i > 0 && Long.compareUnsigned(keys[i], keys[i - 1]) < 0) {
+				sorted = false;
+			}
+		}
+		if (!sorted) {
+			sortIpv4(keys);
+		}
+
+		int r = 0;
+		for (int i = 0; i < n; i++) {
+			long key = keys[i];
+			long bits = key >>> 32;
+			r = skipIpv4(upper, r, size, bits);
+			result[from + (int) (key & 0xFFFFFFFFl)] = r < size && lower[r] <= bits ? r : -1;
+		}
+	}
+
+	// lsd radix sort of the upper 32 bits in three passes of 11 bits, small
+	// batches are left to Arrays.sort
+	private static void sortIpv4(long[] keys) {
+		int n = keys.length;
+		if (n < RADIX_THRESHOLD) {
+			for (int i = 0; i < n; i++) {
+				keys[i] ^= Long.MIN_VALUE;
+			}
+			Arrays.sort(keys);
+			for (int i = 0; i < n; i++) {
+				keys[i] ^= Long.MIN_VALUE;
+			}
+			return;
+		}
+
+		long[] from = keys;
+		long[] to = new long[n];
+		int[] count = new int[1 << 11];
+		for (int shift = 32; shift < 64; shift += 11) {
+			Arrays.fill(count, 0);
+			for (int i = 0; i < n; i++) {
+				count[(int) (from[i] >>> shift) & 0x7FF]++;
+			}
+			int sum = 0;
+			for (int b = 0; b < count.length; b++) {
+				int c = count[b];
+				count[b] = sum;
+				sum += c;
+			}
+			for (int i = 0; i < n; i++) {
+				long key = from[i];
+				to[count[(int) (key >>> shift) & 0x7FF]++] = key;
+			}
+			long[] tmp = from;
+			from = to;
+			to = tmp;
+		}
+		// three passes, the sorted keys are in the scratch array
+		System.arraycopy(from, 0, keys, 0, n);
+	}
+
+	// returns the first position >= r whose upper limit is not lesser than
+	// bits or size
+	private static int skipIpv4(long[] upper, int r, int size, long bits) {
+		if (r >= size || upper[r] >= bits) {
+			return r;
+		}
+
+		// upper[low] < bits, high is size or upper[high] >= bits
+		int low = r;
+		int high = r + 1;
+		int step = 1;
+		while (high < size && upper[high] < bits) {
+			low = high;
+			step <<= 1;
+			high = low + step;
+		}
+		if (high > size) {
+			high = size;
+		}
+
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (upper[mid] < bits) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		return high;
+	}
+
+	// addresses[2 * from..2 * to) are pairs of high and low bits
+	static void joinIpv6(long[] lowerHigh, long[] lowerLow, long[] upperHigh, long[] upperLow, int size,
+			long[] addresses, int from, int to, int[] result) {
+		int n = to - from;
+
+		// sign flipped bits, so that the sort can compare signed
+		long[] high = new long[n];
+		long[] low = new long[n];
+		int[] pos = new int[n];
+		boolean sorted = true;
+		for (int i = 0; i < n; i++) {
+			high[i] = addresses[2 * (from + i)] ^ Long.MIN_VALUE;
+			low[i] = addresses[2 * (from + i) + 1] ^ Long.MIN_VALUE;
+			pos[i] = from + i;
+			if (i > 0 && (high[i] < high[i - 1] || high[i] == high[i - 1] && low[i] < low[i - 1])) {
+				sorted = false;
+			}
+		}
+		if (!sorted) {
+			sort(high, low, pos, 0, n - 1);
+		}
+
+		int r = 0;
+		for (int i = 0; i < n; i++) {
+			long highBits = high[i] ^ Long.MIN_VALUE;
+			long lowBits = low[i] ^ Long.MIN_VALUE;
+			r = skipIpv6(upperHigh, upperLow, r, size, highBits, lowBits);
+			if (r < size && RangeList.compare(lowerHigh[r], lowerLow[r], highBits, lowBits) <= 0) {
+				result[pos[i]] = r;
+			} else {
+				result[pos[i]] = -1;
+			}
+		}
+	}
+
+	private static int skipIpv6(long[] upperHigh, long[] upperLow, int r, int size, long highBits, long lowBits) {
+		if (r >= size || RangeList.compare(upperHigh[r], upperLow[r], highBits, lowBits) >= 0) {
+			return r;
+		}
+
+		int low = r;
+		int high = r + 1;
+		int step = 1;
+		while (high < size && RangeList.compare(upperHigh[high], upperLow[high], highBits, lowBits) < 0) {
+			low = high;
+			step <<= 1;
+			high = low + step;
+		}
+		if (high > size) {
+			high = size;
+		}
+
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (RangeList.compare(upperHigh[mid], upperLow[mid], highBits, lowBits) < 0) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		return high;
+	}
+
+	// quicksort of the parallel arrays by (high, low), signed
+	private static void sort(long[] high, long[] low, int[] pos, int left, int right) {
+		while (right - left > 16) {
+			int mid = (left + right) >>> 1;
+			long ph = high[mid];
+			long pl = low[mid];
+
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (high[i] < ph || high[i] == ph && low[i] < pl) {
+					i++;
+				}
+				while (high[j] > ph || high[j] == ph && low[j] > pl) {
+					j--;
+				}
+				if (i <= j) {
+					swap(high, low, pos, i++, j--);
+				}
+			}
+
+			// recurse into the smaller part to limit the stack depth
+			if (j - left < right - i) {
+				sort(high, low, pos, left, j);
+				left = i;
+			} else {
+				sort(high, low, pos, i, right);
+				right = j;
+			}
+		}
+
+		for (int i = left + 1; i <= right; i++) {
+			for (int j = i; j > left && (high[j - 1] > high[j] || high[j - 1] == high[j] && low[j - 1] > low[j]); j--) {
+				swap(high, low, pos, j, j - 1);
+			}
+		}
+	}
+
+	private static void swap(long[] high, long[] low, int[] pos, int i, int j) {
+		long tmp = high[i];
+		high[i] = high[j];
+		high[j] = tmp;
+		tmp = low[i];
+		low[i] = low[j];
+		low[j] = tmp;
+		int p = pos[i];
+		pos[i] = pos[j];
+		pos[j] = p;
+	}
+
+	// splits the batch of n addresses into chunks which are sorted and joined
+	// independently
+	static void invoke(ForkJoinPool pool, int n, Join join) {
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, n / (pool.getParallelism() * 4));
+		if (n <= chunkSize) {
+			join.join(0, n);
+			return;
+		}
+
+		final List<Chunk> tasks = new ArrayList<Chunk>();
+		for (int from = 0; from < n; from += chunkSize) {
+			tasks.add(new Chunk(join, from, Math.min(n, from + chunkSize)));
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	interface Join {
+		void join(int from, int to);
+	}
+
+	private static final class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Join join;
+		private final int from;
+		private final int to;
+
+		Chunk(Join join, int from, int to) {
+			this.join = join;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			join.join(from, to);
+		}
+	}
+}
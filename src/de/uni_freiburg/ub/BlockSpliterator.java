@@ -0,0 +1,228 @@
+package de.uni_freiburg.ub;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// the aligned blocks of 2^shift addresses overlapping a range, a block is
+// identified by its index (the address shifted right by shift) kept as an
+// unsigned 128 bit value, ipv4 addresses have highBits 0
+//
+// with shift 0 the blocks are the single addresses of the range, splitting
+// halves the remaining indices so also ::/0 splits evenly
+abstract class BlockSpliterator<T> implements Spliterator<T> {
+
+	final boolean ipv6;
+	final int shift;
+
+	private long nextHigh;
+	private long nextLow;
+	private final long lastHigh;
+	private final long lastLow;
+	private boolean done;
+
+	BlockSpliterator(boolean ipv6, int shift, long nextHigh, long nextLow, long lastHigh, long lastLow) {
+		this.ipv6 = ipv6;
+		this.shift = shift;
+		this.nextHigh = nextHigh;
+		this.nextLow = nextLow;
+		this.lastHigh = lastHigh;
+		this.lastLow = lastLow;
+	}
+
+	// the element of the block with the index
+	abstract T block(long indexHigh, long indexLow);
+
+	abstract BlockSpliterator<T> create(long nextHigh, long nextLow, long lastHigh, long lastLow);
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if (done) {
+			return false;
+		}
+		action.accept(block(nextHigh, nextLow));
+		if (nextHigh == lastHigh && nextLow == lastLow) {
+			done = true;
+		} else {
+			nextLow++;
+			if (nextLow == 0l) {
+				nextHigh++;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public BlockSpliterator<T> trySplit() {
+		if (done || nextHigh == lastHigh && nextLow == lastLow) {
+			return null;
+		}
+
+		// the prefix ends at next + (last - next) / 2
+		long low = lastLow - nextLow;
+		long high = lastHigh - nextHigh - (Long.compareUnsigned(lastLow, nextLow) < 0 ? 1 : 0);
+		long halfLow = low >>> 1 | high << 63;
+		long halfHigh = high >>> 1;
+		long midLow = nextLow + halfLow;
+		long midHigh = nextHigh + halfHigh + (Long.compareUnsigned(midLow, nextLow) < 0 ? 1 : 0);
+
+		BlockSpliterator<T> prefix = create(nextHigh, nextLow, midHigh, midLow);
+		nextLow = midLow + 1;
+		nextHigh = nextLow == 0l ? midHigh + 1 : midHigh;
+		return prefix;
+	}
+
+	// Long.MAX_VALUE if the number of blocks does not fit into a long
+	@Override
+	public long estimateSize() {
+		if (done) {
+			return 0l;
+		}
+		long low = lastLow - nextLow;
+		long high = lastHigh - nextHigh - (Long.compareUnsigned(lastLow, nextLow) < 0 ? 1 : 0);
+		if (high != 0l || low < 0 || low == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return low + 1;
+	}
+
+	@Override
+	public int characteristics() {
+		int characteristics = ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+		if (estimateSize() != Long.MAX_VALUE) {
+			characteristics |= SIZED | SUBSIZED;
+		}
+		return characteristics;
+	}
+
+	// bits << shift as 128 bit value, written to result
+	static void shiftLeft(long high, long low, int shift, long[] result) {
+		if (shift == 0) {
+			result[0] = high;
+			result[1] = low;
+		} else if (shift < 64) {
+			result[0] = high << shift | low >>> (64 - shift);
+			result[1] = low << shift;
+		} else if (shift < 128) {
+			result[0] = low << (shift - 64);
+			result[1] = 0l;
+		} else {
+			result[0] = 0l;
+			result[1] = 0l;
+		}
+	}
+
+	static void shiftRight(long high, long low, int shift, long[] result) {
+		if (shift == 0) {
+			result[0] = high;
+			result[1] = low;
+		} else if (shift < 64) {
+			result[0] = high >>> shift;
+			result[1] = low >>> shift | high << (64 - shift);
+		} else if (shift < 128) {
+			result[0] = 0l;
+			result[1] = high >>> (shift - 64);
+		} else {
+			result[0] = 0l;
+			result[1] = 0l;
+		}
+	}
+
+	// the single addresses of a range
+	static final class Addresses extends BlockSpliterator<IpAddress> {
+
+		Addresses(boolean ipv6, long nextHigh, long nextLow, long lastHigh, long lastLow) {
+			super(ipv6, 0, nextHigh, nextLow, lastHigh, lastLow);
+		}
+
+		@Override
+		IpAddress block(long indexHigh, long indexLow) {
+			if (ipv6) {
+				return new Ipv6Address(indexHigh, indexLow);
+			}
+			return Ipv4Address.valueOf(indexLow);
+		}
+
+		@Override
+		Addresses create(long nextHigh, long nextLow, long lastHigh, long lastLow) {
+			return new Addresses(ipv6, nextHigh, nextLow, lastHigh, lastLow);
+		}
+	}
+
+	// the subnets of a prefix length within a range, the first and the last
+	// subnet are cut to the range if it is not aligned
+	static final class Subnets extends BlockSpliterator<IpRange> {
+
+		private final int cidrSuffix;
+		private final long lowerHigh;
+		private final long lowerLow;
+		private final long upperHigh;
+		private final long upperLow;
+
+		Subnets(boolean ipv6, int cidrSuffix, long lowerHigh, long lowerLow, long upperHigh, long upperLow) {
+			this(ipv6, cidrSuffix, lowerHigh, lowerLow, upperHigh, upperLow, index(ipv6, cidrSuffix, lowerHigh,
+					lowerLow), index(ipv6, cidrSuffix, upperHigh, upperLow));
+		}
+
+		private Subnets(boolean ipv6, int cidrSuffix, long lowerHigh, long lowerLow, long upperHigh, long upperLow,
+				long[] first, long[] last) {
+			super(ipv6, (ipv6 ? Ipv6Address.MAX_CIDR_SUFFIX : Ipv4Address.MAX_CIDR_SUFFIX) - cidrSuffix, first[0],
+					first[1], last[0], last[1]);
+			this.cidrSuffix = cidrSuffix;
+			this.lowerHigh = lowerHigh;
+			this.lowerLow = lowerLow;
+			this.upperHigh = upperHigh;
+			this.upperLow = upperLow;
+		}
+
+		private static long[] index(boolean ipv6, int cidrSuffix, long high, long low) {
+			long[] index = new long[2];
+			shiftRight(high, low, (ipv6 ? Ipv6Address.MAX_CIDR_SUFFIX : Ipv4Address.MAX_CIDR_SUFFIX) - cidrSuffix,
+					index);
+			return index;
+		}
+
+		@Override
+		IpRange block(long indexHigh, long indexLow) {
+			long[] bounds = new long[2];
+			shiftLeft(indexHigh, indexLow, shift, bounds);
+			long firstHigh = bounds[0];
+			long firstLow = bounds[1];
+
+			// the last address of the block sets all host bits
+			shiftLeft(0l, 1l, shift, bounds);
+			long lastHigh = firstHigh | (bounds[1] == 0l ? bounds[0] - 1 : bounds[0]);
+			long lastLow = firstLow | bounds[1] - 1;
+			if (shift >= 128) {
+				lastHigh = -1l;
+				lastLow = -1l;
+			}
+
+			boolean cut = false;
+			if (RangeList.compare(firstHigh, firstLow, lowerHigh, lowerLow) < 0) {
+				firstHigh = lowerHigh;
+				firstLow = lowerLow;
+				cut = true;
+			}
+			if (RangeList.compare(lastHigh, lastLow, upperHigh, upperLow) > 0) {
+				lastHigh = upperHigh;
+				lastLow = upperLow;
+				cut = true;
+			}
+
+			if (ipv6) {
+				IpAddress first = new Ipv6Address(firstHigh, firstLow);
+				IpAddress last = new Ipv6Address(lastHigh, lastLow);
+				return cut ? new IpRange(first, last) : new IpRange(first, last, cidrSuffix);
+			}
+			IpAddress first = Ipv4Address.valueOf(firstLow);
+			IpAddress last = Ipv4Address.valueOf(lastLow);
+			return cut ? new IpRange(first, last) : new IpRange(first, last, cidrSuffix);
+		}
+
+		@Override
+		Subnets create(long nextHigh, long nextLow, long lastHigh, long lastLow) {
+			return new Subnets(ipv6, cidrSuffix, lowerHigh, lowerLow, upperHigh, upperLow,
+					new long[] { nextHigh, nextLow }, new long[] { lastHigh, lastLow });
+		}
+	}
+}
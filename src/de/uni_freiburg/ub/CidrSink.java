@@ -0,0 +1,9 @@
+package de.uni_freiburg.ub;
+
+// receives the cidr blocks of a range in ascending order
+// for ipv4 blocks highBits is always zero and lowBits holds the address
+public interface CidrSink {
+
+	void accept(long highBits, long lowBits, int cidrSuffix);
+
+}
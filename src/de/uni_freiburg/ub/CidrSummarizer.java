@@ -0,0 +1,341 @@
+package de.uni_freiburg.ub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// cidr lists for firewalls and similar systems where the number of entries
+// matters. the exact summary is the minimal list of cidr blocks covering
+// exactly the addresses of a collection, adjacent and overlapping ranges are
+// merged before they are split into blocks
+//
+// the lossy summaries trade precision for size, they cover all addresses of
+// the collection and some extra ones. the exact blocks are the leaves of a
+// binary tree whose inner nodes are the smallest common supernets of
+// neighbouring blocks. a greedy pass replaces the subtree of the inner node
+// adding the fewest extra addresses by that node until the number of blocks
+// or the budget of extra addresses is reached
+//
+//   CidrSummarizer summarizer = new CidrSummarizer(collection);
+//   List<String> exact = summarizer.toCidrStrings();
+//   List<String> small = summarizer.toCidrStrings(1000);
+//   List<String> close = summarizer.toCidrStringsWithin(4096);
+public final class CidrSummarizer {
+
+	// the exact blocks sorted by ip version and address, the ipv4 blocks
+	// come first and have highBits 0
+	private int leafCount;
+	private int ipv4LeafCount;
+	private long[] leafHigh = new long[16];
+	private long[] leafLow = new long[16];
+	private int[] leafLength = new int[16];
+
+	public CidrSummarizer(IpRangeCollection collection) {
+		addLeaves(collection.toRangeList(false));
+		ipv4LeafCount = leafCount;
+		addLeaves(collection.toRangeList(true));
+	}
+
+	private void addLeaves(RangeList ranges) {
+		CidrSink sink = new CidrSink() {
+			@Override
+			public void accept(long highBits, long lowBits, int cidrSuffix) {
+				if (leafCount == leafHigh.length) {
+					int capacity = leafCount * 2;
+					leafHigh = Arrays.copyOf(leafHigh, capacity);
+					leafLow = Arrays.copyOf(leafLow, capacity);
+					leafLength = Arrays.copyOf(leafLength, capacity);
+				}
+				leafHigh[leafCount] = highBits;
+				leafLow[leafCount] = lowBits;
+				leafLength[leafCount] = cidrSuffix;
+				leafCount++;
+			}
+		};
+		for (int i = 0; i < ranges.size; i++) {
+			if (ranges.ipv6) {
+				IpRange.toIpv6Cidr(ranges.lowerHigh[i], ranges.lowerLow[i], ranges.upperHigh[i], ranges.upperLow[i],
+						sink);
+			} else {
+				IpRange.toIpv4Cidr(ranges.lowerLow[i], ranges.upperLow[i], sink);
+			}
+		}
+	}
+
+	// the number of blocks of the exact summary
+	public int exactSize() {
+		return leafCount;
+	}
+
+	// the minimal list of cidr blocks covering exactly the collection
+	public List<String> toCidrStrings() {
+		List<String> result = new ArrayList<String>(leafCount);
+		char[] buf = new char[Ipv6Address.PADDED_LENGTH + 4];
+		for (int leaf = 0; leaf < leafCount; leaf++) {
+			result.add(IpRange.toCidrString(leaf >= ipv4LeafCount, leafHigh[leaf], leafLow[leaf], leafLength[leaf], buf));
+		}
+		return result;
+	}
+
+	// at most maxPrefixes blocks covering the collection, a collection with
+	// ipv4 and ipv6 ranges needs at least two blocks
+	public List<String> toCidrStrings(int maxPrefixes) {
+		if (maxPrefixes < 1) {
+			throw new IllegalArgumentException("maxPrefixes must be positive: " + maxPrefixes);
+		}
+		int ipVersions = (ipv4LeafCount > 0 ? 1 : 0) + (leafCount > ipv4LeafCount ? 1 : 0);
+		if (maxPrefixes < ipVersions) {
+			throw new IllegalArgumentException(
+					"maxPrefixes must be at least " + ipVersions + " for ipv4 and ipv6 ranges: " + maxPrefixes);
+		}
+		Tree tree = new Tree();
+		tree.summarize(maxPrefixes, -1l);
+		return tree.toCidrStrings();
+	}
+
+	// as few blocks as possible covering the collection and at most
+	// maxExtraAddresses addresses outside of it
+	public List<String> toCidrStringsWithin(long maxExtraAddresses) {
+		if (maxExtraAddresses < 0) {
+			throw new IllegalArgumentException("maxExtraAddresses must not be negative: " + maxExtraAddresses);
+		}
+		Tree tree = new Tree();
+		tree.summarize(1, maxExtraAddresses);
+		return tree.toCidrStrings();
+	}
+
+	// the inner nodes of the blocks, node i is the smallest common supernet
+	// of the leaves i and i + 1 of the same ip version. together with the
+	// leaves they form a binary tree, a cartesian tree over the prefix
+	// lengths of the nodes. a child is a node or ~leaf
+	//
+	// collapsing a node replaces the blocks below it by its prefix. the
+	// extra addresses of collapsing a node are at least those of any node
+	// below it, so the cheapest node always has two single blocks as
+	// children and adds the gap between them. only these nodes are kept in
+	// the heap, their cost does not change until they are collapsed
+	private final class Tree {
+
+		private final int[] length;
+		private final int[] parent;
+		private final int[] left;
+		private final int[] right;
+		private final boolean[] collapsed;
+		private final int[] roots = new int[2];
+		private int rootCount;
+
+		private int blocks;
+		private long extraHigh;
+		private long extraLow;
+
+		// binary min heap of the nodes ordered by their gap, the gaps are
+		// kept next to the nodes
+		private final int[] heap;
+		private final long[] gapHigh;
+		private final long[] gapLow;
+		private int heapSize;
+
+		private final long[] bits128 = new long[2];
+
+		Tree() {
+			int n = Math.max(leafCount, 1);
+			length = new int[n];
+			parent = new int[n];
+			left = new int[n];
+			right = new int[n];
+			collapsed = new boolean[n];
+			heap = new int[n];
+			gapHigh = new long[n];
+			gapLow = new long[n];
+			blocks = leafCount;
+
+			Arrays.fill(parent, -1);
+			build(0, ipv4LeafCount, Ipv4Address.MAX_CIDR_SUFFIX);
+			build(ipv4LeafCount, leafCount, Ipv6Address.MAX_CIDR_SUFFIX);
+		}
+
+		// builds the nodes between the leaves from..to - 1 of one ip version
+		private void build(int from, int to, int bits) {
+			if (from == to) {
+				return;
+			}
+
+			int[] stack = new int[bits + 1];
+			int depth = 0;
+			for (int node = from; node < to - 1; node++) {
+				length[node] = commonLength(node, node + 1, bits);
+				left[node] = ~node;
+				right[node] = ~(node + 1);
+
+				// the deeper nodes on the stack end at this node and form its
+				// left subtree, the node itself continues the right one
+				int last = -1;
+				while (depth > 0 && length[stack[depth - 1]] > length[node]) {
+					last = stack[--depth];
+				}
+				if (last >= 0) {
+					left[node] = last;
+					parent[last] = node;
+				}
+				if (depth > 0) {
+					right[stack[depth - 1]] = node;
+					parent[node] = stack[depth - 1];
+				}
+				stack[depth++] = node;
+			}
+			roots[rootCount++] = depth > 0 ? stack[0] : ~from;
+
+			for (int node = from; node < to - 1; node++) {
+				if (left[node] < 0 && right[node] < 0) {
+					push(node, bits);
+				}
+			}
+		}
+
+		// the length of the common prefix of two leaves
+		private int commonLength(int a, int b, int bits) {
+			int common;
+			if (leafHigh[a] != leafHigh[b]) {
+				common = Long.numberOfLeadingZeros(leafHigh[a] ^ leafHigh[b]);
+			} else {
+				common = 64 + Long.numberOfLeadingZeros(leafLow[a] ^ leafLow[b]);
+			}
+			if (bits == Ipv4Address.MAX_CIDR_SUFFIX) {
+				common -= 96;
+			}
+			return Math.min(common, Math.min(leafLength[a], leafLength[b]));
+		}
+
+		private int length(int child) {
+			return child < 0 ? leafLength[~child] : length[child];
+		}
+
+		// adds the node to the heap, its gap is the size of its block minus
+		// the sizes of the blocks of its children. computed modulo 2^128
+		// like the size of ::/0
+		private void push(int node, int bits) {
+			long[] size = bits128;
+			blockSize(bits - length[node], size);
+			long high = size[0];
+			long low = size[1];
+			for (int i = 0; i < 2; i++) {
+				blockSize(bits - length(i == 0 ? left[node] : right[node]), size);
+				high -= size[0] + (Long.compareUnsigned(low, size[1]) < 0 ? 1 : 0);
+				low -= size[1];
+			}
+			siftUp(heapSize++, node, high, low);
+		}
+
+		// 2^shift modulo 2^128
+		private void blockSize(int shift, long[] size) {
+			size[0] = shift >= 64 && shift < 128 ? 1l << (shift - 64) : 0l;
+			size[1] = shift < 64 ? 1l << shift : 0l;
+		}
+
+		// collapses the cheapest nodes until there are at most maxBlocks
+		// blocks, with maxExtraAddresses >= 0 the extra addresses are limited
+		// instead
+		void summarize(int maxBlocks, long maxExtraAddresses) {
+			while (heapSize > 0 && blocks > maxBlocks) {
+				int node = heap[0];
+
+				// all other nodes add at least as many extra addresses
+				long low = extraLow + gapLow[0];
+				long high = extraHigh + gapHigh[0] + (Long.compareUnsigned(low, extraLow) < 0 ? 1 : 0);
+				if (maxExtraAddresses >= 0 && (high != 0l || Long.compareUnsigned(low, maxExtraAddresses) > 0)) {
+					break;
+				}
+				extraHigh = high;
+				extraLow = low;
+
+				heapSize--;
+				if (heapSize > 0) {
+					siftDown(heap[heapSize], gapHigh[heapSize], gapLow[heapSize]);
+				}
+				collapsed[node] = true;
+				blocks--;
+
+				// the parent is a candidate once both children are collapsed
+				int p = parent[node];
+				if (p >= 0) {
+					int sibling = left[p] == node ? right[p] : left[p];
+					if (sibling < 0 || collapsed[sibling]) {
+						push(p, node < ipv4LeafCount ? Ipv4Address.MAX_CIDR_SUFFIX : Ipv6Address.MAX_CIDR_SUFFIX);
+					}
+				}
+			}
+		}
+
+		List<String> toCidrStrings() {
+			List<String> result = new ArrayList<String>(blocks);
+			char[] buf = new char[Ipv6Address.PADDED_LENGTH + 4];
+			int[] stack = new int[2 * Ipv6Address.MAX_CIDR_SUFFIX + 2];
+			for (int i = 0; i < rootCount; i++) {
+				int depth = 0;
+				stack[depth++] = roots[i];
+				while (depth > 0) {
+					int child = stack[--depth];
+					if (child < 0) {
+						int leaf = ~child;
+						result.add(IpRange.toCidrString(leaf >= ipv4LeafCount, leafHigh[leaf], leafLow[leaf],
+								leafLength[leaf], buf));
+					} else if (collapsed[child]) {
+						// the leaf with the index of the node is below it
+						boolean ipv6 = child >= ipv4LeafCount;
+						int shift = (ipv6 ? Ipv6Address.MAX_CIDR_SUFFIX : Ipv4Address.MAX_CIDR_SUFFIX) - length[child];
+						BlockSpliterator.shiftRight(leafHigh[child], leafLow[child], shift, bits128);
+						BlockSpliterator.shiftLeft(bits128[0], bits128[1], shift, bits128);
+						result.add(IpRange.toCidrString(ipv6, bits128[0], bits128[1], length[child], buf));
+					} else {
+						stack[depth++] = right[child];
+						stack[depth++] = left[child];
+					}
+				}
+			}
+			return result;
+		}
+
+		private void siftUp(int i, int node, long high, long low) {
+			while (i > 0) {
+				int p = (i - 1) >>> 1;
+				if (RangeList.compare(high, low, gapHigh[p], gapLow[p]) >= 0) {
+					break;
+				}
+				move(p, i);
+				i = p;
+			}
+			heap[i] = node;
+			gapHigh[i] = high;
+			gapLow[i] = low;
+		}
+
+		// moves the node to the root and restores the heap order
+		private void siftDown(int node, long high, long low) {
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize
+						&& RangeList.compare(gapHigh[child + 1], gapLow[child + 1], gapHigh[child], gapLow[child]) < 0) {
+					child++;
+				}
+				if (RangeList.compare(gapHigh[child], gapLow[child], high, low) >= 0) {
+					break;
+				}
+				move(child, i);
+				i = child;
+			}
+			heap[i] = node;
+			gapHigh[i] = high;
+			gapLow[i] = low;
+		}
+
+		private void move(int from, int to) {
+			heap[to] = heap[from];
+			gapHigh[to] = gapHigh[from];
+			gapLow[to] = gapLow[from];
+		}
+	}
+}
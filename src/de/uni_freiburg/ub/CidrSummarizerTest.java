@@ -0,0 +1,118 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CidrSummarizerTest {
+
+	@Test
+	public void testExact() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.128-132.230.25.255"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.26.0/24"));
+		ipRangeCollection.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88fe/128"));
+		ipRangeCollection.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88ff/128"));
+		assertEquals(5, ipRangeCollection.toCidrStrings().size());
+
+		CidrSummarizer summarizer = new CidrSummarizer(ipRangeCollection);
+		assertEquals(3, summarizer.exactSize());
+		assertEquals(Arrays.asList("132.230.25.0/24", "132.230.26.0/24", "4001:4860:4860:0000:0000:0000:0000:88fe/127"),
+				summarizer.toCidrStrings());
+		assertEquals(summarizer.toCidrStrings(), summarizer.toCidrStrings(3));
+		assertEquals(summarizer.toCidrStrings(), summarizer.toCidrStringsWithin(0));
+
+		assertEquals(0, new CidrSummarizer(new IpRangeCollection()).toCidrStrings(1).size());
+	}
+
+	@Test
+	public void testLossy() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("10.0.0.0"));
+		ipRangeCollection.add(IpRange.parseIpRange("10.0.0.2"));
+		ipRangeCollection.add(IpRange.parseIpRange("10.0.0.4"));
+		ipRangeCollection.add(IpRange.parseIpRange("10.0.1.0/24"));
+		ipRangeCollection.add(IpRange.parseIpRange("2001:db8::/48"));
+		ipRangeCollection.add(IpRange.parseIpRange("2001:db8:2::/48"));
+		CidrSummarizer summarizer = new CidrSummarizer(ipRangeCollection);
+		assertEquals(6, summarizer.exactSize());
+
+		// the cheapest merges come first: /30 adds 2, then /29 adds 3 and
+		// /23 adds 248 addresses
+		assertEquals(Arrays.asList("10.0.0.0/30", "10.0.0.4/32", "10.0.1.0/24", "2001:0db8:0000:0000:0000:0000:0000:0000/48",
+				"2001:0db8:0002:0000:0000:0000:0000:0000/48"), summarizer.toCidrStrings(5));
+		assertEquals(Arrays.asList("10.0.0.0/29", "10.0.1.0/24", "2001:0db8:0000:0000:0000:0000:0000:0000/48",
+				"2001:0db8:0002:0000:0000:0000:0000:0000/48"), summarizer.toCidrStrings(4));
+		assertEquals(Arrays.asList("10.0.0.0/23", "2001:0db8:0000:0000:0000:0000:0000:0000/48",
+				"2001:0db8:0002:0000:0000:0000:0000:0000/48"), summarizer.toCidrStrings(3));
+
+		// at least one block per ip version
+		assertEquals(Arrays.asList("10.0.0.0/23", "2001:0db8:0000:0000:0000:0000:0000:0000/46"),
+				summarizer.toCidrStrings(2));
+		try {
+			summarizer.toCidrStrings(1);
+			Assert.fail("IllegalArgumentException should be thrown");
+		} catch (IllegalArgumentException e) {
+		}
+
+		assertEquals(5, summarizer.toCidrStringsWithin(2).size());
+		assertEquals(4, summarizer.toCidrStringsWithin(5).size());
+		assertEquals(4, summarizer.toCidrStringsWithin(252).size());
+		assertEquals(3, summarizer.toCidrStringsWithin(253).size());
+		// merging the ipv6 blocks adds 2^81 addresses
+		assertEquals(3, summarizer.toCidrStringsWithin(Long.MAX_VALUE).size());
+	}
+
+	@Test
+	public void testRandom() throws Exception {
+		Random random = new Random(20);
+		for (int round = 0; round < 20; round++) {
+			IpRangeCollection ipRangeCollection = new IpRangeCollection();
+			for (int i = 0; i < 200; i++) {
+				long lower = (random.nextInt() & 0xFFFFFFFFl) >>> random.nextInt(24);
+				long upper = Math.min(lower + random.nextInt(1 << random.nextInt(16)), 0xFFFFFFFFl);
+				ipRangeCollection.add(new IpRange(new Ipv4Address(lower), new Ipv4Address(upper)));
+			}
+			long size = size(ipRangeCollection);
+			CidrSummarizer summarizer = new CidrSummarizer(ipRangeCollection);
+
+			List<String> exact = summarizer.toCidrStrings();
+			assertEquals(ipRangeCollection.compact().toCidrStrings(), exact);
+			assertEquals(size, size(parse(exact)));
+
+			int maxPrefixes = 1 + random.nextInt(exact.size());
+			IpRangeCollection lossy = parse(summarizer.toCidrStrings(maxPrefixes));
+			assertTrue(lossy.size() <= maxPrefixes);
+			assertEquals(0, ipRangeCollection.subtract(lossy).size());
+
+			long maxExtraAddresses = random.nextInt(1 << 20);
+			List<String> within = summarizer.toCidrStringsWithin(maxExtraAddresses);
+			assertTrue(within.size() <= exact.size());
+			assertEquals(0, ipRangeCollection.subtract(parse(within)).size());
+			assertTrue(size(parse(within)) - size <= maxExtraAddresses);
+		}
+	}
+
+	private static IpRangeCollection parse(List<String> cidrStrings) {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (String s : cidrStrings) {
+			ipRangeCollection.add(IpRange.parseIpRange(s));
+		}
+		return ipRangeCollection;
+	}
+
+	private static long size(IpRangeCollection ipRangeCollection) {
+		long size = 0l;
+		for (IpRange range : ipRangeCollection.compact().ranges()) {
+			size += range.size();
+		}
+		return size;
+	}
+}
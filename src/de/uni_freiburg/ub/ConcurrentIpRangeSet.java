@@ -0,0 +1,267 @@
+package de.uni_freiburg.ub;
+
+import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
+
+// range set for many concurrent readers and occasional writers
+// readers query an immutable, compacted snapshot without any locking, writers
+// are serialized, merge their changes into a new snapshot and publish it with
+// a single volatile write. every published snapshot has a new version
+//
+// changes are applied as deltas with linear merges against the compacted
+// ranges of the current snapshot, the set is never rebuilt from scratch
+public class ConcurrentIpRangeSet {
+
+	private final Object writeLock = new Object();
+	private volatile Snapshot snapshot;
+
+	public ConcurrentIpRangeSet() {
+		snapshot = new Snapshot(new RangeList(false, 1), new RangeList(true, 1), 0l);
+	}
+
+	public ConcurrentIpRangeSet(IpRangeCollection ipRangeCollection) {
+		snapshot = new Snapshot(ipRangeCollection.toRangeList(false), ipRangeCollection.toRangeList(true), 0l);
+	}
+
+	// the current snapshot, a reader that needs a consistent view over several
+	// queries should keep it instead of calling the methods of the set
+	public Snapshot snapshot() {
+		return snapshot;
+	}
+
+	public long version() {
+		return snapshot.version;
+	}
+
+	public boolean contains(IpAddress ipAddr) {
+		return snapshot.contains(ipAddr);
+	}
+
+	public boolean contains(String s) throws InvalidIpAddressException {
+		return snapshot.contains(IpAddress.parseIpAddress(s));
+	}
+
+	public IpRange lookup(IpAddress ipAddr) {
+		return snapshot.lookup(ipAddr);
+	}
+
+	public Snapshot add(IpRange ipRange) {
+		return apply(new Delta().add(ipRange));
+	}
+
+	public Snapshot remove(IpRange ipRange) {
+		return apply(new Delta().remove(ipRange));
+	}
+
+	public Snapshot addAll(IpRangeCollection ipRangeCollection) {
+		return apply(new Delta().addAll(ipRangeCollection));
+	}
+
+	public Snapshot removeAll(IpRangeCollection ipRangeCollection) {
+		return apply(new Delta().removeAll(ipRangeCollection));
+	}
+
+	// publishes the current ranges with the delta applied and returns the new
+	// snapshot, an empty delta publishes nothing
+	public Snapshot apply(Delta delta) {
+		synchronized (writeLock) {
+			if (delta.isEmpty()) {
+				return snapshot;
+			}
+			Snapshot current = snapshot;
+			Snapshot next = new Snapshot(current.ipv4.union(delta.ipv4Added).subtract(delta.ipv4Removed),
+					current.ipv6.union(delta.ipv6Added).subtract(delta.ipv6Removed), current.version + 1);
+			return publish(next);
+		}
+	}
+
+	// as apply(Delta), but only if no other snapshot was published since the
+	// given version, returns null otherwise
+	public Snapshot apply(long expectedVersion, Delta delta) {
+		synchronized (writeLock) {
+			if (snapshot.version != expectedVersion) {
+				return null;
+			}
+			return apply(delta);
+		}
+	}
+
+	// publishes the ranges of the collection as a whole
+	public Snapshot replace(IpRangeCollection ipRangeCollection) {
+		synchronized (writeLock) {
+			Snapshot next = new Snapshot(ipRangeCollection.toRangeList(false), ipRangeCollection.toRangeList(true),
+					snapshot.version + 1);
+			return publish(next);
+		}
+	}
+
+	// called with the write lock held
+	private Snapshot publish(Snapshot next) {
+		snapshot = next;
+		IpMetrics.gauge(IpMetrics.Gauge.COLLECTION_SIZE, next.size());
+		return next;
+	}
+
+	// an immutable, compacted state of the set
+	public static final class Snapshot {
+
+		private final RangeList ipv4;
+		private final RangeList ipv6;
+		private final long version;
+
+		Snapshot(RangeList ipv4, RangeList ipv6, long version) {
+			this.ipv4 = ipv4;
+			this.ipv6 = ipv6;
+			this.version = version;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public boolean containsIpv4(long bits) {
+			return ipv4.indexOf(0l, bits) >= 0;
+		}
+
+		public boolean containsIpv6(long highBits, long lowBits) {
+			return ipv6.indexOf(highBits, lowBits) >= 0;
+		}
+
+		public boolean contains(IpAddress ipAddr) {
+			long start = IpMetrics.start(IpMetrics.Timer.LOOKUP);
+			boolean result;
+			if (ipAddr instanceof Ipv4Address) {
+				result = containsIpv4(((Ipv4Address) ipAddr).longValue());
+			} else {
+				Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+				result = containsIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits());
+			}
+			IpMetrics.stop(IpMetrics.Timer.LOOKUP, start);
+			return result;
+		}
+
+		// returns the (merged) range containing the address or null
+		public IpRange lookup(IpAddress ipAddr) {
+			long start = IpMetrics.start(IpMetrics.Timer.LOOKUP);
+			IpRange result;
+			if (ipAddr instanceof Ipv4Address) {
+				int idx = ipv4.indexOf(0l, ((Ipv4Address) ipAddr).longValue());
+				result = idx < 0 ? null : ipv4.getIpRange(idx);
+			} else {
+				Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+				int idx = ipv6.indexOf(ipv6Addr.highBits(), ipv6Addr.lowBits());
+				result = idx < 0 ? null : ipv6.getIpRange(idx);
+			}
+			IpMetrics.stop(IpMetrics.Timer.LOOKUP, start);
+			return result;
+		}
+
+		public int ipv4Size() {
+			return ipv4.size;
+		}
+
+		public int ipv6Size() {
+			return ipv6.size;
+		}
+
+		public int size() {
+			return ipv4.size + ipv6.size;
+		}
+
+		// a kept compacted copy of the ranges
+		public IpRangeCollection toIpRangeCollection() {
+			return IpRangeCollection.of(ipv4.copy(), ipv6.copy());
+		}
+	}
+
+	// added and removed ranges, applied in the order of the calls. the delta
+	// is kept as a net change: the added and removed ranges never overlap, a
+	// later call wins over an earlier one
+	public static final class Delta {
+
+		private RangeList ipv4Added = new RangeList(false, 4);
+		private RangeList ipv4Removed = new RangeList(false, 4);
+		private RangeList ipv6Added = new RangeList(true, 4);
+		private RangeList ipv6Removed = new RangeList(true, 4);
+
+		// the changes turning one snapshot into another
+		public static Delta between(Snapshot from, Snapshot to) {
+			Delta delta = new Delta();
+			delta.ipv4Added = to.ipv4.subtract(from.ipv4);
+			delta.ipv4Removed = from.ipv4.subtract(to.ipv4);
+			delta.ipv6Added = to.ipv6.subtract(from.ipv6);
+			delta.ipv6Removed = from.ipv6.subtract(to.ipv6);
+			return delta;
+		}
+
+		public Delta add(IpRange ipRange) {
+			RangeList range = toRangeList(ipRange);
+			if (range.ipv6) {
+				ipv6Removed = ipv6Removed.subtract(range);
+				ipv6Added = ipv6Added.union(range);
+			} else {
+				ipv4Removed = ipv4Removed.subtract(range);
+				ipv4Added = ipv4Added.union(range);
+			}
+			return this;
+		}
+
+		public Delta remove(IpRange ipRange) {
+			RangeList range = toRangeList(ipRange);
+			if (range.ipv6) {
+				ipv6Added = ipv6Added.subtract(range);
+				ipv6Removed = ipv6Removed.union(range);
+			} else {
+				ipv4Added = ipv4Added.subtract(range);
+				ipv4Removed = ipv4Removed.union(range);
+			}
+			return this;
+		}
+
+		public Delta addAll(IpRangeCollection ipRangeCollection) {
+			RangeList ipv4 = ipRangeCollection.toRangeList(false);
+			RangeList ipv6 = ipRangeCollection.toRangeList(true);
+			ipv4Removed = ipv4Removed.subtract(ipv4);
+			ipv4Added = ipv4Added.union(ipv4);
+			ipv6Removed = ipv6Removed.subtract(ipv6);
+			ipv6Added = ipv6Added.union(ipv6);
+			return this;
+		}
+
+		public Delta removeAll(IpRangeCollection ipRangeCollection) {
+			RangeList ipv4 = ipRangeCollection.toRangeList(false);
+			RangeList ipv6 = ipRangeCollection.toRangeList(true);
+			ipv4Added = ipv4Added.subtract(ipv4);
+			ipv4Removed = ipv4Removed.union(ipv4);
+			ipv6Added = ipv6Added.subtract(ipv6);
+			ipv6Removed = ipv6Removed.union(ipv6);
+			return this;
+		}
+
+		public boolean isEmpty() {
+			return ipv4Added.size == 0 && ipv4Removed.size == 0 && ipv6Added.size == 0 && ipv6Removed.size == 0;
+		}
+
+		public IpRangeCollection getAdded() {
+			return IpRangeCollection.of(ipv4Added.copy(), ipv6Added.copy());
+		}
+
+		public IpRangeCollection getRemoved() {
+			return IpRangeCollection.of(ipv4Removed.copy(), ipv6Removed.copy());
+		}
+
+		private static RangeList toRangeList(IpRange ipRange) {
+			RangeList range;
+			if (ipRange.lowerLimit instanceof Ipv4Address) {
+				range = new RangeList(false, 1);
+				range.addUnsorted(0l, ((Ipv4Address) ipRange.lowerLimit).longValue(), 0l,
+						((Ipv4Address) ipRange.upperLimit).longValue());
+			} else {
+				Ipv6Address lower = (Ipv6Address) ipRange.lowerLimit;
+				Ipv6Address upper = (Ipv6Address) ipRange.upperLimit;
+				range = new RangeList(true, 1);
+				range.addUnsorted(lower.highBits(), lower.lowBits(), upper.highBits(), upper.lowBits());
+			}
+			return range;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentIpRangeSetTest {
+
+	@Test
+	public void testApply() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.0.0/16"));
+		ipRangeCollection.add(IpRange.parseIpRange("2001:db8::/32"));
+		ConcurrentIpRangeSet set = new ConcurrentIpRangeSet(ipRangeCollection);
+
+		ConcurrentIpRangeSet.Snapshot initial = set.snapshot();
+		assertEquals(0, initial.getVersion());
+		assertEquals(2, initial.size());
+		assertTrue(set.contains("132.230.25.1"));
+
+		ConcurrentIpRangeSet.Delta delta = new ConcurrentIpRangeSet.Delta();
+		delta.remove(IpRange.parseIpRange("132.230.25.0/24"));
+		delta.add(IpRange.parseIpRange("10.0.0.0/8"));
+		delta.remove(IpRange.parseIpRange("10.1.0.0/16"));
+		delta.add(IpRange.parseIpRange("10.1.2.0/24"));
+		delta.remove(IpRange.parseIpRange("2001:db8:1::/48"));
+		ConcurrentIpRangeSet.Snapshot next = set.apply(delta);
+
+		assertEquals(1, next.getVersion());
+		assertSame(next, set.snapshot());
+		assertFalse(set.contains("132.230.25.1"));
+		assertTrue(set.contains("132.230.26.1"));
+		assertTrue(set.contains("10.0.0.1"));
+		assertFalse(set.contains("10.1.1.1"));
+		assertTrue(set.contains("10.1.2.1"));
+		assertFalse(set.contains("2001:db8:1::1"));
+		assertTrue(set.contains("2001:db8:2::1"));
+		assertEquals("132.230.26.0-132.230.255.255",
+				set.lookup(IpAddress.parseIpAddress("132.230.26.1")).toRangeString());
+		assertNull(set.lookup(IpAddress.parseIpAddress("132.230.25.1")));
+
+		// the old snapshot is not affected
+		assertTrue(initial.contains(IpAddress.parseIpAddress("132.230.25.1")));
+		assertFalse(initial.contains(IpAddress.parseIpAddress("10.0.0.1")));
+
+		// empty deltas and outdated versions publish nothing
+		assertSame(next, set.apply(new ConcurrentIpRangeSet.Delta()));
+		assertNull(set.apply(0, new ConcurrentIpRangeSet.Delta().add(IpRange.parseIpRange("1.2.3.4"))));
+		assertEquals(2, set.apply(1, new ConcurrentIpRangeSet.Delta().add(IpRange.parseIpRange("1.2.3.4"))).getVersion());
+
+		// the delta between two snapshots turns one into the other
+		ConcurrentIpRangeSet.Delta between = ConcurrentIpRangeSet.Delta.between(initial, set.snapshot());
+		ConcurrentIpRangeSet copy = new ConcurrentIpRangeSet(ipRangeCollection);
+		copy.apply(between);
+		assertEquals(set.snapshot().toIpRangeCollection().toRangeStrings(),
+				copy.snapshot().toIpRangeCollection().toRangeStrings());
+		assertEquals("[132.230.25.0-132.230.25.255, 2001:0db8:0001:0000:0000:0000:0000:0000-2001:0db8:0001:ffff:ffff:ffff:ffff:ffff]",
+				between.getRemoved().toRangeStrings().toString());
+
+		set.replace(new IpRangeCollection());
+		assertEquals(0, set.snapshot().size());
+		assertEquals(3, set.version());
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		final ConcurrentIpRangeSet set = new ConcurrentIpRangeSet();
+		final IpRange first = IpRange.parseIpRange("10.0.0.0/8");
+		final IpRange second = IpRange.parseIpRange("2001:db8::/32");
+		final IpAddress firstAddr = IpAddress.parseIpAddress("10.1.2.3");
+		final IpAddress secondAddr = IpAddress.parseIpAddress("2001:db8::1");
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicInteger torn = new AtomicInteger();
+
+		// both ranges are always added and removed together, a reader must
+		// never see only one of them in a snapshot
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (!done.get()) {
+						ConcurrentIpRangeSet.Snapshot snapshot = set.snapshot();
+						if (snapshot.contains(firstAddr) != snapshot.contains(secondAddr)) {
+							torn.incrementAndGet();
+						}
+					}
+				}
+			});
+			readers[i].start();
+		}
+
+		long version = set.version();
+		for (int i = 0; i < 2000; i++) {
+			ConcurrentIpRangeSet.Delta delta = new ConcurrentIpRangeSet.Delta();
+			if (i % 2 == 0) {
+				delta.add(first).add(second);
+			} else {
+				delta.remove(first).remove(second);
+			}
+			assertEquals(++version, set.apply(delta).getVersion());
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertEquals(0, torn.get());
+		assertFalse(set.contains(firstAddr));
+	}
+}
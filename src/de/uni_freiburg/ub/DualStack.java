@@ -0,0 +1,117 @@
+package de.uni_freiburg.ub;
+
+// conversions between ipv4 addresses and the ipv6 addresses embedding them
+//
+//   MAPPED       ::ffff:a.b.c.d        (rfc 4291)
+//   COMPATIBLE   ::a.b.c.d             (rfc 4291, deprecated) except :: and ::1
+//   NAT64        64:ff9b::a.b.c.d      (rfc 6052, well-known prefix)
+//   SIX_TO_FOUR  2002:aabb:ccdd::/48   (rfc 3056)
+//
+// a 6to4 address embeds the ipv4 address of the site in bits 16 to 47, all
+// addresses of the /48 map to the same ipv4 address and an ipv4 address maps
+// back to the first address of its /48
+public final class DualStack {
+
+	public enum Embedding {
+		MAPPED, COMPATIBLE, NAT64, SIX_TO_FOUR
+	}
+
+	static final long NAT64_HIGH_BITS = 0x0064FF9B00000000l;
+	static final long SIX_TO_FOUR_PREFIX = 0x2002l;
+
+	private DualStack() {
+	}
+
+	// the embedding of the address or null if it embeds no ipv4 address
+	public static Embedding embeddingOf(long highBits, long lowBits) {
+		if (highBits == 0l) {
+			long prefix = lowBits >>> 32;
+			if (prefix == 0xFFFFl) {
+				return Embedding.MAPPED;
+			}
+			if (prefix == 0l && (lowBits & ~1l) != 0l) {
+				return Embedding.COMPATIBLE;
+			}
+			return null;
+		}
+		if (highBits == NAT64_HIGH_BITS && (lowBits >>> 32) == 0l) {
+			return Embedding.NAT64;
+		}
+		if ((highBits >>> 48) == SIX_TO_FOUR_PREFIX) {
+			return Embedding.SIX_TO_FOUR;
+		}
+		return null;
+	}
+
+	public static Embedding embeddingOf(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv6Address) {
+			Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+			return embeddingOf(ipv6Addr.highBits(), ipv6Addr.lowBits());
+		}
+		return null;
+	}
+
+	// the bits of the embedded ipv4 address or -1
+	public static long toIpv4Bits(long highBits, long lowBits) {
+		Embedding embedding = embeddingOf(highBits, lowBits);
+		if (embedding == null) {
+			return -1l;
+		}
+		if (embedding == Embedding.SIX_TO_FOUR) {
+			return (highBits >>> 16) & RangeList.IPV4_MAX;
+		}
+		return lowBits & RangeList.IPV4_MAX;
+	}
+
+	// the embedded ipv4 address or null
+	public static Ipv4Address toIpv4(Ipv6Address ipAddr) {
+		long bits = toIpv4Bits(ipAddr.highBits(), ipAddr.lowBits());
+		return bits < 0 ? null : Ipv4Address.valueOf(bits);
+	}
+
+	// the embedded ipv4 address of an ipv6 address, any other address is
+	// returned as it is
+	public static IpAddress normalize(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv6Address) {
+			Ipv4Address ipv4Addr = toIpv4((Ipv6Address) ipAddr);
+			if (ipv4Addr != null) {
+				return ipv4Addr;
+			}
+		}
+		return ipAddr;
+	}
+
+	// writes the high and low bits of the ipv6 address embedding the ipv4
+	// address into result[0..1]
+	public static void toIpv6Bits(long bits, Embedding embedding, long[] result) {
+		if (bits < 0 || RangeList.IPV4_MAX < bits) {
+			throw new IllegalArgumentException("not an ipv4 address: " + bits);
+		}
+		switch (embedding) {
+		case MAPPED:
+			result[0] = 0l;
+			result[1] = 0xFFFF00000000l | bits;
+			break;
+		case COMPATIBLE:
+			if (bits <= 1l) {
+				throw new IllegalArgumentException("no ipv4-compatible address for " + bits);
+			}
+			result[0] = 0l;
+			result[1] = bits;
+			break;
+		case NAT64:
+			result[0] = NAT64_HIGH_BITS;
+			result[1] = bits;
+			break;
+		default:
+			result[0] = SIX_TO_FOUR_PREFIX << 48 | bits << 16;
+			result[1] = 0l;
+		}
+	}
+
+	public static Ipv6Address toIpv6(Ipv4Address ipAddr, Embedding embedding) {
+		long[] bits = new long[2];
+		toIpv6Bits(ipAddr.longValue(), embedding, bits);
+		return new Ipv6Address(bits[0], bits[1]);
+	}
+}
@@ -0,0 +1,165 @@
+package de.uni_freiburg.ub;
+
+import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
+
+// immutable range set answering queries for ipv4 addresses and the ipv6
+// addresses embedding them alike (see DualStack), e.g. 132.230.25.150,
+// ::ffff:132.230.25.150 and 64:ff9b::132.230.25.150 are the same address
+//
+// the embedded parts of the ipv6 ranges are moved to the ipv4 ranges when the
+// set is built, so every query is a single binary search. a 6to4 range only
+// covers an ipv4 address if it contains the whole /48 of the address, the
+// rest of a 6to4 range stays an ipv6 range and 6to4 addresses which are not
+// found as ipv4 address are looked up once more as they are
+public class DualStackIpRangeSet {
+
+	private static final String MAPPED_PREFIX = "::ffff:";
+
+	private final RangeList ipv4;
+	private final RangeList ipv6;
+
+	public DualStackIpRangeSet(IpRangeCollection ipRangeCollection) {
+		RangeList ipv6Ranges = ipRangeCollection.toRangeList(true);
+		RangeList embedded = ipv6Ranges.intersect(embeddingBlocks());
+
+		// the ipv4 ranges of the embedded ranges and the ipv6 ranges they
+		// replace
+		RangeList projected = new RangeList(false, embedded.size);
+		RangeList replaced = new RangeList(true, embedded.size);
+		for (int i = 0; i < embedded.size; i++) {
+			long lh = embedded.lowerHigh[i];
+			long ll = embedded.lowerLow[i];
+			long uh = embedded.upperHigh[i];
+			long ul = embedded.upperLow[i];
+			if (DualStack.embeddingOf(lh, ll) != DualStack.Embedding.SIX_TO_FOUR) {
+				projected.addUnsorted(0l, ll & RangeList.IPV4_MAX, 0l, ul & RangeList.IPV4_MAX);
+				replaced.append(lh, ll, uh, ul);
+				continue;
+			}
+
+			// the /48s completely covered by the range
+			long lower = (lh >>> 16) & RangeList.IPV4_MAX;
+			long upper = (uh >>> 16) & RangeList.IPV4_MAX;
+			if ((lh & 0xFFFFl) != 0l || ll != 0l) {
+				lower++;
+			}
+			if ((uh & 0xFFFFl) != 0xFFFFl || ul != -1l) {
+				upper--;
+			}
+			if (lower <= upper) {
+				projected.addUnsorted(0l, lower, 0l, upper);
+				replaced.append(DualStack.SIX_TO_FOUR_PREFIX << 48 | lower << 16, 0l,
+						DualStack.SIX_TO_FOUR_PREFIX << 48 | upper << 16 | 0xFFFFl, -1l);
+			}
+		}
+
+		ipv4 = ipRangeCollection.toRangeList(false).union(projected.compact());
+		ipv6 = ipv6Ranges.subtract(replaced);
+	}
+
+	// the ipv6 blocks embedding ipv4 addresses in ascending order
+	private static RangeList embeddingBlocks() {
+		RangeList blocks = new RangeList(true, 4);
+		blocks.addUnsorted(0l, 2l, 0l, RangeList.IPV4_MAX);
+		blocks.addUnsorted(0l, 0xFFFF00000000l, 0l, 0xFFFFFFFFFFFFl);
+		blocks.addUnsorted(DualStack.NAT64_HIGH_BITS, 0l, DualStack.NAT64_HIGH_BITS, RangeList.IPV4_MAX);
+		blocks.addUnsorted(DualStack.SIX_TO_FOUR_PREFIX << 48, 0l, DualStack.SIX_TO_FOUR_PREFIX << 48 | 0xFFFFFFFFFFFFl,
+				-1l);
+		return blocks;
+	}
+
+	public boolean containsIpv4(long bits) {
+		return ipv4.indexOfIpv4(bits) >= 0;
+	}
+
+	public boolean containsIpv6(long highBits, long lowBits) {
+		long bits = DualStack.toIpv4Bits(highBits, lowBits);
+		if (bits >= 0) {
+			if (ipv4.indexOfIpv4(bits) >= 0) {
+				return true;
+			}
+			if (!isSixToFour(highBits)) {
+				return false;
+			}
+		}
+		return ipv6.indexOf(highBits, lowBits) >= 0;
+	}
+
+	// only parts of 6to4 ranges are left in the ipv6 ranges, all other
+	// embedded addresses are found as ipv4 addresses or not at all
+	private static boolean isSixToFour(long highBits) {
+		return (highBits >>> 48) == DualStack.SIX_TO_FOUR_PREFIX;
+	}
+
+	public boolean contains(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv4Address) {
+			return containsIpv4(((Ipv4Address) ipAddr).longValue());
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return containsIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits());
+	}
+
+	// parses the address without creating an IpAddress
+	public boolean contains(String s) throws InvalidIpAddressException {
+		if (s.indexOf(':') < 0) {
+			long bits = Ipv4Address.parseBits(s);
+			if (bits < 0) {
+				throw new InvalidIpAddressException();
+			}
+			return containsIpv4(bits);
+		}
+
+		// the common ipv4-mapped notation is read in place as ipv4 address
+		if (s.startsWith(MAPPED_PREFIX)) {
+			long bits = Ipv4Address.parseBits(s, MAPPED_PREFIX.length(), s.length() - MAPPED_PREFIX.length());
+			if (bits >= 0) {
+				return containsIpv4(bits);
+			}
+		}
+
+		long[] bits = new long[2];
+		if (Ipv6Address.parseBits(s, bits) != Ipv6Address.VALID) {
+			throw new InvalidIpAddressException();
+		}
+		return containsIpv6(bits[0], bits[1]);
+	}
+
+	// returns the (merged) range containing the address or null, embedded
+	// addresses are found in ipv4 ranges
+	public IpRange lookup(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv4Address) {
+			int idx = ipv4.indexOfIpv4(((Ipv4Address) ipAddr).longValue());
+			return idx < 0 ? null : ipv4.getIpRange(idx);
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		long bits = DualStack.toIpv4Bits(ipv6Addr.highBits(), ipv6Addr.lowBits());
+		if (bits >= 0) {
+			int idx = ipv4.indexOfIpv4(bits);
+			if (idx >= 0) {
+				return ipv4.getIpRange(idx);
+			}
+			if (!isSixToFour(ipv6Addr.highBits())) {
+				return null;
+			}
+		}
+		int idx = ipv6.indexOf(ipv6Addr.highBits(), ipv6Addr.lowBits());
+		return idx < 0 ? null : ipv6.getIpRange(idx);
+	}
+
+	public int ipv4Size() {
+		return ipv4.size;
+	}
+
+	public int ipv6Size() {
+		return ipv6.size;
+	}
+
+	public int size() {
+		return ipv4.size + ipv6.size;
+	}
+
+	// a kept compacted copy of the normalized ranges
+	public IpRangeCollection toIpRangeCollection() {
+		return IpRangeCollection.of(ipv4.copy(), ipv6.copy());
+	}
+}
@@ -0,0 +1,140 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.uni_freiburg.ub.DualStack.Embedding;
+
+public class DualStackIpRangeSetTest {
+
+	@Test
+	public void testContains() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.0.0/16"));
+		ipRangeCollection.add(IpRange.parseIpRange("::ffff:10.0.0.0/104"));
+		ipRangeCollection.add(IpRange.parseIpRange("64:ff9b::192.168.0.0/112"));
+		ipRangeCollection.add(IpRange.parseIpRange("2002:c0a9::/32"));
+		ipRangeCollection.add(IpRange.parseIpRange("2002:c0aa:0101::/64"));
+		ipRangeCollection.add(IpRange.parseIpRange("2001:db8::/32"));
+		DualStackIpRangeSet set = new DualStackIpRangeSet(ipRangeCollection);
+
+		assertTrue(set.contains("132.230.25.150"));
+		assertTrue(set.contains("::ffff:132.230.25.150"));
+		assertTrue(set.contains("::132.230.25.150"));
+		assertTrue(set.contains("64:ff9b::132.230.25.150"));
+		assertTrue(set.contains("2002:84e6:1996:1::1"));
+		assertFalse(set.contains("::ffff:132.231.0.0"));
+
+		assertTrue(set.contains("10.1.2.3"));
+		assertTrue(set.contains("64:ff9b::10.1.2.3"));
+		assertTrue(set.contains("192.168.255.255"));
+		assertTrue(set.contains("::ffff:192.168.0.1"));
+		assertTrue(set.contains("192.169.1.1"));
+		assertTrue(set.contains("2001:db8::1"));
+		assertFalse(set.contains("2001:db9::1"));
+
+		// only a part of the /48 of 192.170.1.1 is in the set
+		assertFalse(set.contains("192.170.1.1"));
+		assertFalse(set.contains("::ffff:192.170.1.1"));
+		assertTrue(set.contains("2002:c0aa:0101::1"));
+		assertFalse(set.contains("2002:c0aa:0101:1::1"));
+
+		assertEquals("10.0.0.0-10.255.255.255",
+				set.lookup(IpAddress.parseIpAddress("::ffff:10.1.2.3")).toRangeString());
+		assertEquals("192.168.0.0-192.169.255.255",
+				set.lookup(IpAddress.parseIpAddress("2002:c0a9:1::")).toRangeString());
+		assertEquals(new Ipv6Address(0x2002C0AA01010000l, 0l),
+				set.lookup(IpAddress.parseIpAddress("2002:c0aa:0101::1")).getLowerLimit());
+		assertNull(set.lookup(IpAddress.parseIpAddress("::ffff:132.231.0.0")));
+
+		assertEquals(3, set.ipv4Size());
+		assertEquals(2, set.ipv6Size());
+		assertEquals(5, set.toIpRangeCollection().size());
+	}
+
+	@Test
+	public void testRandom() throws Exception {
+		Random random = new Random(22);
+		long[] bits = new long[2];
+		for (int round = 0; round < 50; round++) {
+			// ranges around a few ipv4 addresses in all their forms
+			IpRangeCollection ipRangeCollection = new IpRangeCollection();
+			for (int i = 0; i < 10; i++) {
+				long ipv4 = random.nextInt(64);
+				long length = random.nextInt(8);
+				if (random.nextInt(5) == 0) {
+					ipRangeCollection.add(new IpRange(new Ipv4Address(ipv4), new Ipv4Address(ipv4 + length)));
+					continue;
+				}
+				Embedding embedding = Embedding.values()[random.nextInt(4)];
+				DualStack.toIpv6Bits(ipv4 + 2, embedding, bits);
+				Ipv6Address lower = new Ipv6Address(bits[0], bits[1]);
+				long[] offset = { 0l, length };
+				if (embedding == Embedding.SIX_TO_FOUR) {
+					// 6to4 ranges start and end inside or at the bounds of a /48
+					if (random.nextBoolean()) {
+						lower = new Ipv6Address(bits[0] | random.nextInt(0x10000), random.nextLong());
+					}
+					offset[0] = length << 16 | (random.nextBoolean() ? 0xFFFFl : random.nextInt(0x10000));
+					offset[1] = random.nextBoolean() ? -1l : random.nextLong() >>> 1;
+				}
+				ipRangeCollection.add(new IpRange(lower, lower.plus(offset[0], offset[1])));
+			}
+
+			IpRangeIndex index = new IpRangeIndex(ipRangeCollection);
+			DualStackIpRangeSet set = new DualStackIpRangeSet(ipRangeCollection);
+			for (long ipv4 = 0; ipv4 < 80; ipv4++) {
+				boolean expected = containsIpv4(index, ipv4, bits);
+				assertEquals(expected, set.containsIpv4(ipv4));
+				for (Embedding embedding : Embedding.values()) {
+					if (embedding == Embedding.COMPATIBLE && ipv4 <= 1) {
+						continue;
+					}
+					// a 6to4 address may also be part of a range not covering
+					// its whole /48
+					DualStack.toIpv6Bits(ipv4, embedding, bits);
+					assertEquals(expected || index.indexOfIpv6(bits[0], bits[1]) >= 0,
+							set.containsIpv6(bits[0], bits[1]));
+				}
+
+				// addresses inside of a 6to4 /48
+				DualStack.toIpv6Bits(ipv4, Embedding.SIX_TO_FOUR, bits);
+				long high = bits[0] | random.nextInt(0x10000);
+				long low = random.nextLong();
+				assertEquals(expected || index.indexOfIpv6(high, low) >= 0, set.containsIpv6(high, low));
+			}
+		}
+	}
+
+	// an ipv4 address is in the set if it or one of its ipv6 forms is in the
+	// collection, a 6to4 form with its whole /48
+	private static boolean containsIpv4(IpRangeIndex index, long ipv4, long[] bits) {
+		if (index.indexOfIpv4(ipv4) >= 0) {
+			return true;
+		}
+		for (Embedding embedding : Embedding.values()) {
+			if (embedding == Embedding.COMPATIBLE && ipv4 <= 1) {
+				continue;
+			}
+			DualStack.toIpv6Bits(ipv4, embedding, bits);
+			int idx = index.indexOfIpv6(bits[0], bits[1]);
+			if (idx < 0) {
+				continue;
+			}
+			if (embedding != Embedding.SIX_TO_FOUR) {
+				return true;
+			}
+			Ipv6Address upper = (Ipv6Address) index.getIpv6Range(idx).getUpperLimit();
+			if (RangeList.compare(upper.highBits(), upper.lowBits(), bits[0] | 0xFFFFl, -1l) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,71 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.uni_freiburg.ub.DualStack.Embedding;
+
+public class DualStackTest {
+
+	@Test
+	public void testEmbeddingOf() throws Exception {
+		assertEquals(Embedding.MAPPED, DualStack.embeddingOf(IpAddress.parseIpAddress("::ffff:132.230.25.150")));
+		assertEquals(Embedding.COMPATIBLE, DualStack.embeddingOf(IpAddress.parseIpAddress("::132.230.25.150")));
+		assertEquals(Embedding.COMPATIBLE, DualStack.embeddingOf(IpAddress.parseIpAddress("::2")));
+		assertEquals(Embedding.NAT64, DualStack.embeddingOf(IpAddress.parseIpAddress("64:ff9b::132.230.25.150")));
+		assertEquals(Embedding.SIX_TO_FOUR, DualStack.embeddingOf(IpAddress.parseIpAddress("2002:84e6:1996:1::1")));
+
+		assertNull(DualStack.embeddingOf(IpAddress.parseIpAddress("::")));
+		assertNull(DualStack.embeddingOf(IpAddress.parseIpAddress("::1")));
+		assertNull(DualStack.embeddingOf(IpAddress.parseIpAddress("::1:0:0")));
+		assertNull(DualStack.embeddingOf(IpAddress.parseIpAddress("64:ff9b::1:0:0")));
+		assertNull(DualStack.embeddingOf(IpAddress.parseIpAddress("2003::1")));
+		assertNull(DualStack.embeddingOf(IpAddress.parseIpAddress("132.230.25.150")));
+	}
+
+	@Test
+	public void testNormalize() throws Exception {
+		IpAddress ipv4Addr = IpAddress.parseIpAddress("132.230.25.150");
+		assertEquals(ipv4Addr, DualStack.normalize(IpAddress.parseIpAddress("::ffff:132.230.25.150")));
+		assertEquals(ipv4Addr, DualStack.normalize(IpAddress.parseIpAddress("::ffff:84e6:1996")));
+		assertEquals(ipv4Addr, DualStack.normalize(IpAddress.parseIpAddress("::132.230.25.150")));
+		assertEquals(ipv4Addr, DualStack.normalize(IpAddress.parseIpAddress("64:ff9b::132.230.25.150")));
+		assertEquals(ipv4Addr, DualStack.normalize(IpAddress.parseIpAddress("2002:84e6:1996::")));
+		assertEquals(ipv4Addr, DualStack.normalize(IpAddress.parseIpAddress("2002:84e6:1996:ffff::1")));
+
+		assertSame(ipv4Addr, DualStack.normalize(ipv4Addr));
+		IpAddress ipv6Addr = IpAddress.parseIpAddress("2001:db8::1");
+		assertSame(ipv6Addr, DualStack.normalize(ipv6Addr));
+		assertEquals(-1l, DualStack.toIpv4Bits(0l, 1l));
+	}
+
+	@Test
+	public void testToIpv6() throws Exception {
+		Ipv4Address ipv4Addr = (Ipv4Address) IpAddress.parseIpAddress("132.230.25.150");
+		assertEquals("::ffff:132.230.25.150", DualStack.toIpv6(ipv4Addr, Embedding.MAPPED).toCanonicalString());
+		assertEquals("::84e6:1996", DualStack.toIpv6(ipv4Addr, Embedding.COMPATIBLE).toCanonicalString());
+		assertEquals("64:ff9b::84e6:1996", DualStack.toIpv6(ipv4Addr, Embedding.NAT64).toCanonicalString());
+		assertEquals("2002:84e6:1996::", DualStack.toIpv6(ipv4Addr, Embedding.SIX_TO_FOUR).toCanonicalString());
+
+		// the conversions are inverse to each other
+		long[] bits = new long[2];
+		for (Embedding embedding : Embedding.values()) {
+			for (long ipv4 : new long[] { 2l, 0x7F000001l, 0x84E61996l, 0xFFFFFFFFl }) {
+				DualStack.toIpv6Bits(ipv4, embedding, bits);
+				assertEquals(embedding, DualStack.embeddingOf(bits[0], bits[1]));
+				assertEquals(ipv4, DualStack.toIpv4Bits(bits[0], bits[1]));
+			}
+		}
+
+		// ::1 is the loopback address
+		try {
+			DualStack.toIpv6Bits(1l, Embedding.COMPATIBLE, bits);
+			Assert.fail("IllegalArgumentException should be thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
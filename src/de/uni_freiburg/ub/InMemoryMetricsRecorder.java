@@ -0,0 +1,67 @@
+package de.uni_freiburg.ub;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// MetricsRecorder keeping the metrics in memory, the counters scale with many
+// threads, the timers are LatencyHistograms
+//
+//   InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+//   IpMetrics.setRecorder(metrics);
+//   ...
+//   metrics.getCount(IpMetrics.Counter.RANGE_PARSE_FAILURES);
+//   metrics.getHistogram(IpMetrics.Timer.LOOKUP).getValueAtPercentile(99.0);
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+
+	private final LongAdder[] counters = new LongAdder[IpMetrics.Counter.values().length];
+	private final LatencyHistogram[] histograms = new LatencyHistogram[IpMetrics.Timer.values().length];
+	private final AtomicLongArray gauges = new AtomicLongArray(IpMetrics.Gauge.values().length);
+
+	public InMemoryMetricsRecorder() {
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new LongAdder();
+		}
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	@Override
+	public void increment(IpMetrics.Counter counter) {
+		counters[counter.ordinal()].increment();
+	}
+
+	@Override
+	public void recordNanos(IpMetrics.Timer timer, long nanos) {
+		histograms[timer.ordinal()].record(Math.max(nanos, 0l));
+	}
+
+	@Override
+	public void gauge(IpMetrics.Gauge gauge, long value) {
+		gauges.set(gauge.ordinal(), value);
+	}
+
+	public long getCount(IpMetrics.Counter counter) {
+		return counters[counter.ordinal()].sum();
+	}
+
+	public LatencyHistogram getHistogram(IpMetrics.Timer timer) {
+		return histograms[timer.ordinal()];
+	}
+
+	public long getGauge(IpMetrics.Gauge gauge) {
+		return gauges.get(gauge.ordinal());
+	}
+
+	public void reset() {
+		for (LongAdder counter : counters) {
+			counter.reset();
+		}
+		for (LatencyHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		for (int i = 0; i < gauges.length(); i++) {
+			gauges.set(i, 0l);
+		}
+	}
+}
@@ -21,30 +21,63 @@ public class IpAddress implements Comparable<IpAddress>{
 	}
 
 	public static IpAddress parseIpAddress(String str) throws InvalidIpAddressException { 
-		// if str contains only dots's we have a possible ipv4 address
-		boolean isPossibleIpv4Addr = str.contains(".") & !str.contains(":");
-
-		// if str contains a colons's we have a possible ipv6 address
-		boolean isPossilbeIpv6Addr = str.contains(":") & !str.contains(".");
+		return tryParseIpAddress(str).getOrThrow();
+	}
 
-		// if str contains dots AND colons we have a possible ipv4-mapped or
-		// ipv4-compatible ipv6 address
-		boolean isPossilbeEmbeddedIpv4Addr = str.contains(":") & str.contains(".");
+	// same as parseIpAddress but reports invalid input without throwing
+	public static ParseResult<IpAddress> tryParseIpAddress(String str) {
+		ParseResult<IpAddress> result = tryParse(str);
+		IpMetrics.countParse(result, IpMetrics.Counter.ADDRESS_PARSES, IpMetrics.Counter.ADDRESS_PARSE_FAILURES);
+		return result;
+	}
 
-		if (isPossibleIpv4Addr) {
-			return Ipv4Address.parseIpAddress(str);
+	// as tryParseIpAddress without counting the parse, for the range parser
+	static ParseResult<IpAddress> tryParse(String str) {
+		boolean hasDot = false;
+		boolean hasColon = false;
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == '.') {
+				hasDot = true;
+			} else if (c == ':') {
+				hasColon = true;
+			}
 		}
 
-		if (isPossilbeEmbeddedIpv4Addr) {
-			return new Ipv6Address(Long.valueOf("x0FFF"), 0l);
+		// if str contains only dots's we have a possible ipv4 address
+		if (hasDot && !hasColon) {
+			return Ipv4Address.tryParseIpAddress(str);
 		}
 
-		if (isPossilbeIpv6Addr) {
-			return Ipv6Address.parseIpAddress(str);
+		// if str contains a colons's we have a possible ipv6 address, dots
+		// are allowed for ipv4-mapped or ipv4-compatible ipv6 addresses
+		if (hasColon) {
+			return Ipv6Address.tryParseIpAddress(str);
 		}
 		
-		throw new InvalidIpAddressException();
-	}	
+		return ParseResult.invalid(ParseError.INVALID_FORMAT);
+	}
+
+	// returns the decimal cidr suffix or -1 if s is not a number between 0
+	// and maxCidrSuffix
+	protected static int tryParseCidrSuffix(CharSequence s, int maxCidrSuffix) {
+		if (s.length() == 0) {
+			return -1;
+		}
+
+		int cidrSuffix = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || '9' < c) {
+				return -1;
+			}
+			cidrSuffix = cidrSuffix * 10 + (c - '0');
+			if (cidrSuffix > maxCidrSuffix) {
+				return -1;
+			}
+		}
+		return cidrSuffix;
+	}
 	
 	public IpAddress getUpperLimit(int cidrSuffix) {
 		return this.getUpperLimit(cidrSuffix);
@@ -58,6 +91,10 @@ public class IpAddress implements Comparable<IpAddress>{
 		return ipAddress.toString();
 	}
 
+	public StringBuilder appendTo(StringBuilder sb) {
+		return sb.append(toString());
+	}
+
 	public boolean isGreater(IpAddress ipAddr) throws InvalidIpAddressException {
 		if (this.getClass() != ipAddr.getClass()) {
 			throw new InvalidIpAddressException();
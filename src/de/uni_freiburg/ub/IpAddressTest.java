@@ -2,8 +2,12 @@ package de.uni_freiburg.ub;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 //import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.junit.Assert;
 //import org.junit.jupiter.api.Test;
@@ -62,6 +66,97 @@ public class IpAddressTest {
 		assertNumberFormatExceptionIsThrown("2001:4860:4860:0:0:333333:0:8888");
 	}
 
+	@Test
+	public void testParseBits() throws Exception {
+		assertEquals(2229672342l, Ipv4Address.parseBits("132.230.25.150"));
+		assertEquals(4294967295l, Ipv4Address.parseBits("255.255.255.255"));
+		assertEquals(0l, Ipv4Address.parseBits("0.0.0.0"));
+		assertEquals(3232236042l, Ipv4Address.parseBits("192.168.002.10"));
+
+		assertEquals(2229672342l, Ipv4Address.parseBits("ip=132.230.25.150;", 3, 14));
+		assertEquals(2229672342l, Ipv4Address.parseBits("ip=132.230.25.150;".toCharArray(), 3, 14));
+		assertEquals(2229672342l, Ipv4Address.parseBits("ip=132.230.25.150;".getBytes("US-ASCII"), 3, 14));
+
+		assertEquals(Ipv4Address.INVALID_BLOCK, Ipv4Address.parseBits("192.168.2.510"));
+		assertEquals(Ipv4Address.INVALID_BLOCK, Ipv4Address.parseBits("192.168.2.a"));
+		assertEquals(Ipv4Address.INVALID_BLOCK, Ipv4Address.parseBits("192..2.51"));
+		assertEquals(Ipv4Address.INVALID_BLOCK, Ipv4Address.parseBits("192.168.2."));
+		assertEquals(Ipv4Address.INVALID_BLOCK, Ipv4Address.parseBits("192.168.2.99999999999999"));
+		assertEquals(Ipv4Address.INVALID_FORMAT, Ipv4Address.parseBits("132.230.2.510.10"));
+		assertEquals(Ipv4Address.INVALID_FORMAT, Ipv4Address.parseBits("132.230"));
+		assertEquals(Ipv4Address.INVALID_FORMAT, Ipv4Address.parseBits(""));
+	}
+
+	@Test
+	public void testParseIpv6Bits() throws Exception {
+		long[] bits = new long[2];
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("2001:4860:4860::8888", bits));
+		assertEquals(2306204062558715904l, bits[0]);
+		assertEquals(34952l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("2001:4860:4860:0:0:0:0:8888", bits));
+		assertEquals(2306204062558715904l, bits[0]);
+		assertEquals(34952l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("2001:0DB8:85a3::8A2E:0370:7334", bits));
+		assertEquals(2306139570357600256l, bits[0]);
+		assertEquals(151930230829876l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("::", bits));
+		assertEquals(0l, bits[0]);
+		assertEquals(0l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("::1", bits));
+		assertEquals(0l, bits[0]);
+		assertEquals(1l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("ffff::", bits));
+		assertEquals(0xffff000000000000l, bits[0]);
+		assertEquals(0l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("1:2:3:4::", bits));
+		assertEquals(0x0001000200030004l, bits[0]);
+		assertEquals(0l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("::5:6:7:8", bits));
+		assertEquals(0l, bits[0]);
+		assertEquals(0x0005000600070008l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("::2:3:4:5:6:7:8", bits));
+		assertEquals(0x0000000200030004l, bits[0]);
+		assertEquals(0x0005000600070008l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("1:2:3:4:5:6:7::", bits));
+		assertEquals(0x0001000200030004l, bits[0]);
+		assertEquals(0x0005000600070000l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("::ffff:132.230.25.150", bits));
+		assertEquals(0l, bits[0]);
+		assertEquals(0x0000ffff84e61996l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("1:2:3:4:5:6:132.230.25.150", bits));
+		assertEquals(0x0001000200030004l, bits[0]);
+		assertEquals(0x0005000684e61996l, bits[1]);
+
+		assertEquals(Ipv6Address.VALID, Ipv6Address.parseBits("fe80::1%eth0", bits));
+		assertEquals(0xfe80000000000000l, bits[0]);
+		assertEquals(1l, bits[1]);
+
+		assertEquals(Ipv6Address.INVALID_FORMAT, Ipv6Address.parseBits("1:2:3:4:5:6:7", bits));
+		assertEquals(Ipv6Address.INVALID_FORMAT, Ipv6Address.parseBits("1:2:3:4:5:6:7:8:9", bits));
+		assertEquals(Ipv6Address.INVALID_FORMAT, Ipv6Address.parseBits("1::2::3", bits));
+		assertEquals(Ipv6Address.INVALID_FORMAT, Ipv6Address.parseBits(":1::2", bits));
+		assertEquals(Ipv6Address.INVALID_FORMAT, Ipv6Address.parseBits("fe80::1%", bits));
+		assertEquals(Ipv6Address.INVALID_FORMAT, Ipv6Address.parseBits("", bits));
+		assertEquals(Ipv6Address.INVALID_BLOCK, Ipv6Address.parseBits("2001:db8::12345", bits));
+		assertEquals(Ipv6Address.INVALID_BLOCK, Ipv6Address.parseBits("2001:db8::g", bits));
+		assertEquals(Ipv6Address.INVALID_BLOCK, Ipv6Address.parseBits("::ffff:132.230.25.256", bits));
+
+		assertEquals("0000:0000:0000:0000:0000:ffff:84e6:1996",
+				IpAddress.parseIpAddress("::ffff:132.230.25.150").toString());
+	}
+
 	@Test
 	public void testToString() throws Exception {
 		assertEquals("0.0.0.222", new Ipv4Address(222l).toString());
@@ -73,6 +168,30 @@ public class IpAddressTest {
 		assertInvalidIpAddressExceptionIsThrown(-10l);
 	}
 
+	@Test
+	public void testToCanonicalString() throws Exception {
+		assertEquals("2001:4860:4860::8888",
+				((Ipv6Address) IpAddress.parseIpAddress("2001:4860:4860:0000:0000:0000:0000:8888")).toCanonicalString());
+		assertEquals("2001:db8::1", ((Ipv6Address) IpAddress.parseIpAddress("2001:DB8:0:0:0:0:0:1")).toCanonicalString());
+		assertEquals("2001:db8:0:1:1:1:1:1", ((Ipv6Address) IpAddress.parseIpAddress("2001:db8:0:1:1:1:1:1")).toCanonicalString());
+		assertEquals("2001:0:0:1::1", ((Ipv6Address) IpAddress.parseIpAddress("2001:0:0:1:0:0:0:1")).toCanonicalString());
+		assertEquals("2001:db8::1:0:0:1", ((Ipv6Address) IpAddress.parseIpAddress("2001:db8:0:0:1:0:0:1")).toCanonicalString());
+		assertEquals("::", ((Ipv6Address) IpAddress.parseIpAddress("::")).toCanonicalString());
+		assertEquals("::1", ((Ipv6Address) IpAddress.parseIpAddress("0:0:0:0:0:0:0:1")).toCanonicalString());
+		assertEquals("1::", ((Ipv6Address) IpAddress.parseIpAddress("1:0:0:0:0:0:0:0")).toCanonicalString());
+		assertEquals("::ffff:132.230.25.150",
+				((Ipv6Address) IpAddress.parseIpAddress("::ffff:84e6:1996")).toCanonicalString());
+
+		StringBuilder sb = new StringBuilder("[");
+		((Ipv6Address) IpAddress.parseIpAddress("2001:db8:0:0:1:0:0:1")).appendCanonicalTo(sb).append(']');
+		assertEquals("[2001:db8::1:0:0:1]", sb.toString());
+
+		sb = new StringBuilder();
+		IpAddress.parseIpAddress("2001:db8::1").appendTo(sb.append('<')).append('>');
+		IpAddress.parseIpAddress("132.230.5.10").appendTo(sb);
+		assertEquals("<2001:0db8:0000:0000:0000:0000:0000:0001>132.230.5.10", sb.toString());
+	}
+
 	@Test
 	public void testGetUpperLimit() throws Exception {
 
@@ -144,6 +263,14 @@ public class IpAddressTest {
 
 		assertEquals(1, IpAddress.parseIpAddress("2001:4860:4860:0000:0000:0000:0000:8888")
 				.compareTo(IpAddress.parseIpAddress("2000:4860:4860:0000:0000:0000:0000:8888")));
+
+		// ipv4 addresses come first, also in front of the ones embedded in ipv6
+		assertEquals(-1, IpAddress.parseIpAddress("255.255.255.255").compareTo(IpAddress.parseIpAddress("::")));
+		assertEquals(1, IpAddress.parseIpAddress("::ffff:132.230.25.150")
+				.compareTo(IpAddress.parseIpAddress("132.230.25.150")));
+		assertTrue(IpAddress.parseIpAddress("::1").isGreater(IpAddress.parseIpAddress("132.230.25.150")));
+		assertTrue(IpAddress.parseIpAddress("132.230.25.150").isLesserEqual(IpAddress.parseIpAddress("::1")));
+		assertFalse(IpAddress.parseIpAddress("132.230.25.150").isGreaterEqual(IpAddress.parseIpAddress("::1")));
 	}
 
 	@Test
@@ -179,6 +306,127 @@ public class IpAddressTest {
 		assertEquals("000a0002", IpAddress.parseIpAddress("0.10.0.2").toHexString());
 	}
 
+	@Test
+	public void testEqualsAndHashCode() throws Exception {
+		Set<IpAddress> set = new HashSet<IpAddress>();
+		set.add(IpAddress.parseIpAddress("132.230.25.105"));
+		set.add(IpAddress.parseIpAddress("132.230.025.105"));
+		set.add(IpAddress.parseIpAddress("2001:4860:4860::8888"));
+		set.add(IpAddress.parseIpAddress("2001:4860:4860:0000:0000:0000:0000:8888"));
+		set.add(IpAddress.parseIpAddress("::8888"));
+		assertEquals(3, set.size());
+
+		assertTrue(set.contains(new Ipv4Address(0x84e61969l)));
+		assertFalse(IpAddress.parseIpAddress("0.0.0.1").equals(IpAddress.parseIpAddress("::1")));
+	}
+
+	@Test
+	public void testValueOf() throws Exception {
+		assertTrue(Ipv4Address.valueOf(0x84e61900l) == Ipv4Address.valueOf(0x84e61900l));
+		assertTrue(IpAddress.parseIpAddress("132.230.25.105").getLowerLimit(24) == Ipv4Address.valueOf(0x84e61900l));
+		assertEquals(Ipv4Address.valueOf(0x84e61969l), IpAddress.parseIpAddress("132.230.25.104").next());
+		assertInvalidIpAddressExceptionIsThrown(1l << 32);
+	}
+
+	@Test
+	public void testCompareUnsigned() throws Exception {
+		Ipv6Address low = (Ipv6Address) IpAddress.parseIpAddress("::1");
+		Ipv6Address high = (Ipv6Address) IpAddress.parseIpAddress("::ffff:ffff:ffff:ffff");
+		Ipv6Address top = (Ipv6Address) IpAddress.parseIpAddress("ffff::");
+		assertTrue(low.compareTo(high) < 0);
+		assertTrue(high.compareTo(low) > 0);
+		assertTrue(high.compareTo(top) < 0);
+		assertTrue(high.compareTo((IpAddress) top) < 0);
+		assertEquals(0, top.compareTo(IpAddress.parseIpAddress("ffff:0:0:0:0:0:0:0")));
+		assertTrue(top.isGreater(high));
+		assertTrue(high.isLesserEqual(high));
+
+		Ipv4Address a = Ipv4Address.valueOf(1l);
+		Ipv4Address b = Ipv4Address.valueOf(0xFFFFFFFFl);
+		assertTrue(a.compareTo(b) < 0);
+		assertTrue(b.isGreater(a));
+		assertFalse(a.isGreaterEqual(b));
+	}
+
+	@Test
+	public void testArithmetic() throws Exception {
+		Ipv4Address ipv4 = (Ipv4Address) IpAddress.parseIpAddress("132.230.25.105");
+		assertEquals(IpAddress.parseIpAddress("132.230.26.0"), ipv4.plus(151));
+		assertEquals(IpAddress.parseIpAddress("132.230.25.0"), ipv4.minus(105));
+		assertEquals(IpAddress.parseIpAddress("132.230.25.0"), ipv4.plus(-105));
+		assertEquals(IpAddress.parseIpAddress("255.255.255.255"), ipv4.plusSaturated(Long.MAX_VALUE));
+		assertEquals(IpAddress.parseIpAddress("0.0.0.0"), ipv4.minusSaturated(1l << 40));
+		assertEquals(IpAddress.parseIpAddress("255.255.255.255"), ipv4.minusSaturated(Long.MIN_VALUE));
+		assertEquals(151, ipv4.distance(ipv4.plus(151)));
+		assertEquals(-0x84e61969l, ipv4.distance(Ipv4Address.valueOf(0l)));
+		try {
+			ipv4.plus(0xFFFFFFFFl);
+			Assert.fail("InvalidIpAddressException should be thrown");
+		} catch (InvalidIpAddressException e) {
+		}
+
+		// carry and borrow between the low and the high bits
+		Ipv6Address ipv6 = (Ipv6Address) IpAddress.parseIpAddress("2001:db8::ffff:ffff:ffff:fffe");
+		assertEquals(IpAddress.parseIpAddress("2001:db8:0:1::1"), ipv6.plus(3));
+		assertEquals(ipv6, ipv6.plus(3).minus(3));
+		assertEquals(ipv6, ipv6.plus(3).plus(-3));
+		assertEquals(IpAddress.parseIpAddress("2001:db8:0:5::"), ipv6.plus(4l, 2l));
+		assertEquals(IpAddress.parseIpAddress("2001:db7:ffff:fffc::"), ipv6.minus(4l, -2l));
+		assertEquals(-3, ipv6.plus(3).distance(ipv6));
+		assertEquals(1l << 62, ipv6.distance(ipv6.plus(1l << 62)));
+		assertEquals(Long.MIN_VALUE, ipv6.distance(ipv6.plus(Long.MIN_VALUE)));
+
+		Ipv6Address max = new Ipv6Address(-1l, -1l);
+		Ipv6Address min = new Ipv6Address(0l, 0l);
+		assertEquals(max, max.minus(1).plusSaturated(2));
+		assertEquals(max, ipv6.plusSaturated(-1l, 0l));
+		assertEquals(min, ipv6.minusSaturated(Long.MAX_VALUE).minusSaturated(-1l, -1l));
+		assertEquals(Long.MAX_VALUE, min.distanceSaturated(max));
+		assertEquals(Long.MIN_VALUE, max.distanceSaturated(min));
+
+		long[] result = new long[2];
+		assertEquals(-1, max.distance(min, result));
+		assertEquals(-1l, result[0]);
+		assertEquals(-1l, result[1]);
+		try {
+			min.distance(max);
+			Assert.fail("ArithmeticException should be thrown");
+		} catch (ArithmeticException e) {
+		}
+		try {
+			max.plus(1);
+			Assert.fail("InvalidIpAddressException should be thrown");
+		} catch (InvalidIpAddressException e) {
+		}
+		try {
+			min.minus(0l, 1l);
+			Assert.fail("InvalidIpAddressException should be thrown");
+		} catch (InvalidIpAddressException e) {
+		}
+	}
+
+	@Test
+	public void testTryParseIpAddress() throws Exception {
+		ParseResult<IpAddress> result = IpAddress.tryParseIpAddress("132.230.25.105");
+		assertTrue(result.isValid());
+		assertEquals(null, result.getError());
+		assertEquals("132.230.25.105", result.getValue().toString());
+
+		result = IpAddress.tryParseIpAddress("2001:4860:4860::8888");
+		assertTrue(result.isValid());
+		assertEquals("2001:4860:4860:0000:0000:0000:0000:8888", result.getOrThrow().toString());
+
+		assertEquals(ParseError.INVALID_NUMBER, IpAddress.tryParseIpAddress("192.168.2.510").getError());
+		assertEquals(ParseError.INVALID_FORMAT, IpAddress.tryParseIpAddress("132.230.25").getError());
+		assertEquals(ParseError.INVALID_FORMAT, IpAddress.tryParseIpAddress("xyz").getError());
+		assertEquals(ParseError.INVALID_NUMBER, Ipv6Address.tryParseIpAddress("2001:4860:4860::88g8").getError());
+		assertEquals(ParseError.INVALID_FORMAT, Ipv4Address.tryParseIpAddress("2001:4860:4860::8888").getError());
+		assertEquals(null, IpAddress.tryParseIpAddress("xyz").getValue());
+
+		// invalid results are shared
+		assertTrue(IpAddress.tryParseIpAddress("1.2.3") == IpAddress.tryParseIpAddress("xyz"));
+	}
+
 //	workaround for the following method to work with junit4
 //	assertThrows(NumberFormatException.class, () -> {
 //		IpAddress.parseIpAddress("192.168.2.510");
@@ -0,0 +1,183 @@
+package de.uni_freiburg.ub;
+
+import java.util.Arrays;
+
+import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
+
+// bounded cache of the results of contains queries against a
+// ConcurrentIpRangeSet for skewed traffic where a few addresses make most of
+// the queries. the addresses are the keys as primitive bits, a hit needs no
+// parsing into objects and no search
+//
+// the cache is set associative: the hash of an address selects a set of
+// WAYS entries, a new entry replaces an entry of its set chosen by the clock
+// algorithm. every entry has a referenced bit which is set on a hit, the hand
+// of the set skips and clears referenced entries and replaces the first one
+// which was not used since the hand passed it last time
+//
+// the results belong to the snapshot of the set they were computed for, the
+// cache is cleared as soon as the set publishes another snapshot. a cache is
+// not thread safe, every thread needs its own one, e.g.
+//
+//   ThreadLocal<IpLookupCache> caches = new ThreadLocal<IpLookupCache>() {
+//       protected IpLookupCache initialValue() {
+//           return new IpLookupCache(set, 4096);
+//       }
+//   };
+public final class IpLookupCache {
+
+	static final int WAYS = 4;
+
+	private static final byte VALID = 1;
+	private static final byte IPV6 = 2;
+	private static final byte CONTAINED = 4;
+	private static final byte REFERENCED = 8;
+
+	private final ConcurrentIpRangeSet ipRangeSet;
+	private ConcurrentIpRangeSet.Snapshot snapshot;
+
+	private final long[] keyHigh;
+	private final long[] keyLow;
+	private final byte[] flags;
+	private final byte[] hands;
+	private final int setMask;
+
+	private final long[] bits = new long[2];
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	// capacity is rounded up to a power of two of at least WAYS entries
+	public IpLookupCache(ConcurrentIpRangeSet ipRangeSet, int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("capacity out of range: " + capacity);
+		}
+		int sets = Math.max(Integer.highestOneBit(capacity - 1) << 1, WAYS) / WAYS;
+		this.ipRangeSet = ipRangeSet;
+		this.snapshot = ipRangeSet.snapshot();
+		keyHigh = new long[sets * WAYS];
+		keyLow = new long[sets * WAYS];
+		flags = new byte[sets * WAYS];
+		hands = new byte[sets];
+		setMask = sets - 1;
+	}
+
+	public boolean containsIpv4(long bits) {
+		return contains(0l, bits, (byte) 0);
+	}
+
+	public boolean containsIpv6(long highBits, long lowBits) {
+		return contains(highBits, lowBits, IPV6);
+	}
+
+	public boolean contains(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv4Address) {
+			return containsIpv4(((Ipv4Address) ipAddr).longValue());
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return containsIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits());
+	}
+
+	// parses the address into primitive bits, no objects are created
+	public boolean contains(String s) throws InvalidIpAddressException {
+		if (s.indexOf(':') < 0) {
+			long ipv4 = Ipv4Address.parseBits(s);
+			if (ipv4 < 0) {
+				throw new InvalidIpAddressException();
+			}
+			return containsIpv4(ipv4);
+		}
+		if (Ipv6Address.parseBits(s, bits) != Ipv6Address.VALID) {
+			throw new InvalidIpAddressException();
+		}
+		return containsIpv6(bits[0], bits[1]);
+	}
+
+	private boolean contains(long highBits, long lowBits, byte version) {
+		ConcurrentIpRangeSet.Snapshot current = ipRangeSet.snapshot();
+		if (current != snapshot) {
+			clear();
+			snapshot = current;
+		}
+
+		int set = hash(highBits, lowBits) & setMask;
+		int base = set * WAYS;
+		for (int i = base; i < base + WAYS; i++) {
+			byte f = flags[i];
+			if ((f & (VALID | IPV6)) == (VALID | version) && keyLow[i] == lowBits && keyHigh[i] == highBits) {
+				flags[i] = (byte) (f | REFERENCED);
+				hitCount++;
+				return (f & CONTAINED) != 0;
+			}
+		}
+
+		missCount++;
+		boolean contained = version == IPV6 ? current.containsIpv6(highBits, lowBits)
+				: current.containsIpv4(lowBits);
+		int i = victim(set);
+		keyHigh[i] = highBits;
+		keyLow[i] = lowBits;
+		flags[i] = (byte) (VALID | version | (contained ? CONTAINED : 0));
+		return contained;
+	}
+
+	// the entry of the set to replace, an empty one or the next one of the
+	// clock which is not referenced
+	private int victim(int set) {
+		int base = set * WAYS;
+		for (int i = base; i < base + WAYS; i++) {
+			if (flags[i] == 0) {
+				return i;
+			}
+		}
+
+		int hand = hands[set];
+		while ((flags[base + hand] & REFERENCED) != 0) {
+			flags[base + hand] &= ~REFERENCED;
+			hand = (hand + 1) & (WAYS - 1);
+		}
+		hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+		evictionCount++;
+		return base + hand;
+	}
+
+	private static int hash(long highBits, long lowBits) {
+		long h = (highBits * 0xC2B2AE3D27D4EB4Fl ^ lowBits) * 0x9E3779B97F4A7C15l;
+		return (int) (h >>> 32) ^ (int) h;
+	}
+
+	// removes all entries, the statistics are kept
+	public void clear() {
+		Arrays.fill(flags, (byte) 0);
+		Arrays.fill(hands, (byte) 0);
+	}
+
+	public int capacity() {
+		return flags.length;
+	}
+
+	public long hitCount() {
+		return hitCount;
+	}
+
+	public long missCount() {
+		return missCount;
+	}
+
+	public long evictionCount() {
+		return evictionCount;
+	}
+
+	// hits per query, 0 without any query
+	public double hitRate() {
+		long queries = hitCount + missCount;
+		return queries == 0 ? 0.0 : (double) hitCount / queries;
+	}
+
+	public void resetStatistics() {
+		hitCount = 0l;
+		missCount = 0l;
+		evictionCount = 0l;
+	}
+}
@@ -0,0 +1,91 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IpLookupCacheTest {
+
+	@Test
+	public void testContains() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.0.0/16"));
+		ipRangeCollection.add(IpRange.parseIpRange("2001:db8::/32"));
+		ConcurrentIpRangeSet set = new ConcurrentIpRangeSet(ipRangeCollection);
+		IpLookupCache cache = new IpLookupCache(set, 100);
+		assertEquals(128, cache.capacity());
+
+		assertTrue(cache.contains("132.230.25.1"));
+		assertTrue(cache.contains("132.230.25.1"));
+		assertFalse(cache.contains("132.231.25.1"));
+		assertTrue(cache.contains("2001:db8::1"));
+		assertTrue(cache.contains(IpAddress.parseIpAddress("2001:db8::1")));
+		assertFalse(cache.contains("::1"));
+		// the same bits as ipv4 and ipv6 address are different keys
+		assertFalse(cache.containsIpv6(0l, 0x84E61901l));
+		assertEquals(2, cache.hitCount());
+		assertEquals(5, cache.missCount());
+
+		// a new snapshot clears the cache
+		set.remove(IpRange.parseIpRange("132.230.25.0/24"));
+		assertFalse(cache.contains("132.230.25.1"));
+		set.replace(new IpRangeCollection());
+		assertFalse(cache.contains("2001:db8::1"));
+		assertEquals(2, cache.hitCount());
+		assertEquals(7, cache.missCount());
+		assertEquals(2.0 / 9, cache.hitRate(), 1e-9);
+
+		cache.resetStatistics();
+		assertEquals(0.0, cache.hitRate(), 0.0);
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("0.0.0.0-0.0.3.255"));
+		ConcurrentIpRangeSet set = new ConcurrentIpRangeSet(ipRangeCollection);
+		IpLookupCache cache = new IpLookupCache(set, 1);
+		assertEquals(IpLookupCache.WAYS, cache.capacity());
+
+		// a single set, the referenced hot address survives the others
+		cache.containsIpv4(1000l);
+		cache.containsIpv4(1000l);
+		for (long bits = 0; bits < 20; bits++) {
+			cache.containsIpv4(bits);
+			cache.containsIpv4(1000l);
+		}
+		assertEquals(21, cache.hitCount());
+		assertEquals(21, cache.missCount());
+		assertEquals(17, cache.evictionCount());
+	}
+
+	@Test
+	public void testRandom() throws Exception {
+		Random random = new Random(24);
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (int i = 0; i < 50; i++) {
+			long lower = random.nextInt(1 << 12);
+			ipRangeCollection.add(new IpRange(new Ipv4Address(lower), new Ipv4Address(lower + random.nextInt(32))));
+		}
+		ConcurrentIpRangeSet set = new ConcurrentIpRangeSet(ipRangeCollection);
+		IpLookupCache cache = new IpLookupCache(set, 64);
+
+		for (int i = 0; i < 100000; i++) {
+			if (i % 10000 == 0) {
+				long lower = random.nextInt(1 << 12);
+				set.add(new IpRange(new Ipv4Address(lower), new Ipv4Address(lower + random.nextInt(256))));
+			}
+			// skewed, most queries are for a few addresses
+			long bits = random.nextInt(random.nextBoolean() ? 1 << 5 : 1 << 12);
+			assertEquals(set.snapshot().containsIpv4(bits), cache.containsIpv4(bits));
+			long high = random.nextInt(4);
+			assertEquals(set.snapshot().containsIpv6(high, bits), cache.containsIpv6(high, bits));
+		}
+		assertEquals(200000, cache.hitCount() + cache.missCount());
+		assertTrue(cache.hitRate() > 0.1);
+	}
+}
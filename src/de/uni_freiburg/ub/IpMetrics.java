@@ -0,0 +1,114 @@
+package de.uni_freiburg.ub;
+
+// instrumentation of parsing, lookups, compaction and cidr conversion
+// the library reports into the MetricsRecorder set with setRecorder, e.g. an
+// InMemoryMetricsRecorder or an adapter to another metrics system. without a
+// recorder every report is a single field read and an untaken branch, no
+// time is measured and nothing is allocated
+//
+// lookups are too fast to time each of them, only every n-th lookup is timed
+// (see setSampleInterval). every thread counts its own lookups, so sampling
+// does not write to memory shared between threads
+public final class IpMetrics {
+
+	public enum Counter {
+		RANGE_PARSES, RANGE_PARSE_FAILURES, ADDRESS_PARSES, ADDRESS_PARSE_FAILURES
+	}
+
+	public enum Timer {
+		LOOKUP(true), COMPACT(false), CIDR_CONVERSION(false);
+
+		final boolean sampled;
+
+		Timer(boolean sampled) {
+			this.sampled = sampled;
+		}
+	}
+
+	public enum Gauge {
+		// the number of ranges of the last snapshot published by a
+		// ConcurrentIpRangeSet
+		COLLECTION_SIZE
+	}
+
+	// returned by start if the operation is not timed
+	static final long NOT_TIMED = Long.MIN_VALUE;
+
+	private static volatile MetricsRecorder recorder;
+	private static volatile int sampleMask = 1023;
+	private static final ThreadLocal<int[]> sampleCounter = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private IpMetrics() {
+	}
+
+	// null disables the metrics
+	public static void setRecorder(MetricsRecorder metricsRecorder) {
+		recorder = metricsRecorder;
+	}
+
+	public static MetricsRecorder getRecorder() {
+		return recorder;
+	}
+
+	// times every interval-th sampled operation, interval is rounded up to a
+	// power of two
+	public static void setSampleInterval(int interval) {
+		if (interval < 1 || interval > 1 << 30) {
+			throw new IllegalArgumentException("interval out of range: " + interval);
+		}
+		sampleMask = interval == 1 ? 0 : (Integer.highestOneBit(interval - 1) << 1) - 1;
+	}
+
+	public static int getSampleInterval() {
+		return sampleMask + 1;
+	}
+
+	static void increment(Counter counter) {
+		MetricsRecorder r = recorder;
+		if (r != null) {
+			r.increment(counter);
+		}
+	}
+
+	// counts a parse and its failure
+	static void countParse(ParseResult<?> result, Counter parses, Counter failures) {
+		MetricsRecorder r = recorder;
+		if (r != null) {
+			r.increment(parses);
+			if (!result.isValid()) {
+				r.increment(failures);
+			}
+		}
+	}
+
+	static void gauge(Gauge gauge, long value) {
+		MetricsRecorder r = recorder;
+		if (r != null) {
+			r.gauge(gauge, value);
+		}
+	}
+
+	// the start time of an operation to pass to stop, NOT_TIMED if the
+	// operation is not timed
+	static long start(Timer timer) {
+		if (recorder == null || (timer.sampled && (++sampleCounter.get()[0] & sampleMask) != 0)) {
+			return NOT_TIMED;
+		}
+		return System.nanoTime();
+	}
+
+	static void stop(Timer timer, long start) {
+		if (start != NOT_TIMED) {
+			long nanos = System.nanoTime() - start;
+			MetricsRecorder r = recorder;
+			if (r != null) {
+				r.recordNanos(timer, nanos);
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class IpMetricsTest {
+
+	@After
+	public void tearDown() {
+		IpMetrics.setRecorder(null);
+		IpMetrics.setSampleInterval(1024);
+	}
+
+	@Test
+	public void testRecorder() throws Exception {
+		InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+		IpMetrics.setRecorder(metrics);
+		IpMetrics.setSampleInterval(1);
+
+		IpRange.tryParseIpRange("132.230.25.0/24");
+		IpRange.tryParseIpRange("132.230.25.0/33");
+		IpRange.parseIpRange("132.230.26.0-132.230.26.255");
+		IpAddress.tryParseIpAddress("132.230.25.1");
+		IpAddress.tryParseIpAddress("2001:db8::x");
+		assertEquals(3, metrics.getCount(IpMetrics.Counter.RANGE_PARSES));
+		assertEquals(1, metrics.getCount(IpMetrics.Counter.RANGE_PARSE_FAILURES));
+		assertEquals(2, metrics.getCount(IpMetrics.Counter.ADDRESS_PARSES));
+		assertEquals(1, metrics.getCount(IpMetrics.Counter.ADDRESS_PARSE_FAILURES));
+
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0/24"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.26.0/24"));
+		ipRangeCollection.add(IpRange.parseIpRange("2001:db8::/32"));
+		ipRangeCollection.compact();
+		ipRangeCollection.toCidrStrings();
+		assertEquals(1, metrics.getHistogram(IpMetrics.Timer.COMPACT).getCount());
+		// only published snapshots are reported
+		assertEquals(0, metrics.getGauge(IpMetrics.Gauge.COLLECTION_SIZE));
+		assertEquals(1, metrics.getHistogram(IpMetrics.Timer.CIDR_CONVERSION).getCount());
+
+		IpRangeIndex index = new IpRangeIndex(ipRangeCollection);
+		ConcurrentIpRangeSet set = new ConcurrentIpRangeSet(ipRangeCollection);
+		for (int i = 0; i < 10; i++) {
+			index.contains(IpAddress.parseIpAddress("132.230.25.1"));
+			set.contains(IpAddress.parseIpAddress("2001:db8::1"));
+		}
+		assertEquals(20, metrics.getHistogram(IpMetrics.Timer.LOOKUP).getCount());
+
+		// only every 4th lookup is timed
+		IpMetrics.setSampleInterval(3);
+		assertEquals(4, IpMetrics.getSampleInterval());
+		for (int i = 0; i < 100; i++) {
+			index.contains(IpAddress.parseIpAddress("132.230.25.1"));
+		}
+		assertEquals(45, metrics.getHistogram(IpMetrics.Timer.LOOKUP).getCount());
+
+		set.add(IpRange.parseIpRange("10.0.0.0/8"));
+		assertEquals(3, metrics.getGauge(IpMetrics.Gauge.COLLECTION_SIZE));
+		set.remove(IpRange.parseIpRange("132.230.0.0/16"));
+		assertEquals(2, metrics.getGauge(IpMetrics.Gauge.COLLECTION_SIZE));
+		new IpRangeCollection().compact();
+		assertEquals(2, metrics.getGauge(IpMetrics.Gauge.COLLECTION_SIZE));
+		set.replace(new IpRangeCollection());
+		assertEquals(0, metrics.getGauge(IpMetrics.Gauge.COLLECTION_SIZE));
+
+		metrics.reset();
+		assertEquals(0, metrics.getCount(IpMetrics.Counter.RANGE_PARSES));
+		assertEquals(0, metrics.getHistogram(IpMetrics.Timer.LOOKUP).getCount());
+	}
+
+	@Test
+	public void testAdapter() throws Exception {
+		// an adapter only overrides what it needs
+		final List<String> events = new ArrayList<String>();
+		IpMetrics.setRecorder(new MetricsRecorder() {
+			@Override
+			public void increment(IpMetrics.Counter counter) {
+				events.add(counter.name());
+			}
+		});
+		assertTrue(IpMetrics.getRecorder() != null);
+		IpRange.tryParseIpRange("132.230.25.0/33");
+		new IpRangeCollection().compact();
+		assertEquals("[RANGE_PARSES, RANGE_PARSE_FAILURES]", events.toString());
+
+		IpMetrics.setRecorder(null);
+		assertNull(IpMetrics.getRecorder());
+		IpRange.tryParseIpRange("132.230.25.0/33");
+		assertEquals(2, events.size());
+	}
+}
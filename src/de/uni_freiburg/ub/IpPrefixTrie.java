@@ -0,0 +1,557 @@
+package de.uni_freiburg.ub;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
+
+// path compressed binary trie (patricia trie) mapping ipv4 and ipv6 prefixes
+// to values, a longest prefix match walks at most one node per stored prefix
+// length and does not create any objects
+//
+// keys are handled as 128 bit values (highBits, lowBits), ipv4 prefixes are
+// stored left aligned (bits << 32) in a trie of their own
+public class IpPrefixTrie<V> implements Iterable<IpPrefixTrie.Entry<V>> {
+
+	private static final class Node<V> {
+		final long highBits;
+		final long lowBits;
+		final int length;
+		Node<V> zero;
+		Node<V> one;
+		boolean hasValue;
+		V value;
+
+		Node(long highBits, long lowBits, int length) {
+			this.highBits = highBits;
+			this.lowBits = lowBits;
+			this.length = length;
+		}
+
+		Node<V> child(int bit) {
+			return bit == 0 ? zero : one;
+		}
+
+		void setChild(int bit, Node<V> node) {
+			if (bit == 0) {
+				zero = node;
+			} else {
+				one = node;
+			}
+		}
+	}
+
+	// a prefix and its value
+	public static final class Entry<V> {
+		private final boolean ipv6;
+		private final long highBits;
+		private final long lowBits;
+		private final int cidrSuffix;
+		private final V value;
+
+		private Entry(boolean ipv6, Node<V> node) {
+			this.ipv6 = ipv6;
+			this.highBits = ipv6 ? node.highBits : 0l;
+			this.lowBits = ipv6 ? node.lowBits : node.highBits >>> 32;
+			this.cidrSuffix = node.length;
+			this.value = node.value;
+		}
+
+		public boolean isIpv6() {
+			return ipv6;
+		}
+
+		// the first address of the prefix, for ipv4 highBits is 0
+		public long highBits() {
+			return highBits;
+		}
+
+		public long lowBits() {
+			return lowBits;
+		}
+
+		public int getCidrSuffix() {
+			return cidrSuffix;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public IpAddress getIpAddress() {
+			return ipv6 ? new Ipv6Address(highBits, lowBits) : new Ipv4Address(lowBits);
+		}
+
+		public IpRange getIpRange() {
+			IpAddress ipAddr = getIpAddress();
+			return new IpRange(ipAddr, ipAddr.getUpperLimit(cidrSuffix), cidrSuffix);
+		}
+
+		public String toString() {
+			return getIpAddress().appendTo(new StringBuilder()).append('/').append(cidrSuffix).append('=')
+					.append(value).toString();
+		}
+	}
+
+	// the roots have the prefix length 0 and are never removed
+	private final Node<V> ipv4Root = new Node<V>(0l, 0l, 0);
+	private final Node<V> ipv6Root = new Node<V>(0l, 0l, 0);
+	private int size;
+
+	// adds or replaces the value of a prefix and returns the previous value,
+	// host bits behind the prefix are ignored
+	public V put(IpAddress ipAddr, int cidrSuffix, V value) {
+		if (ipAddr instanceof Ipv4Address) {
+			return putIpv4(((Ipv4Address) ipAddr).longValue(), cidrSuffix, value);
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return putIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits(), cidrSuffix, value);
+	}
+
+	public V putIpv4(long bits, int cidrSuffix, V value) {
+		checkIpv4(bits, cidrSuffix);
+		return put(ipv4Root, bits << 32, 0l, cidrSuffix, value);
+	}
+
+	public V putIpv6(long highBits, long lowBits, int cidrSuffix, V value) {
+		checkCidrSuffix(cidrSuffix, 128);
+		return put(ipv6Root, highBits, lowBits, cidrSuffix, value);
+	}
+
+	// adds the cidr blocks covering the range with the same value, returns
+	// the number of blocks
+	public int putAll(IpRange ipRange, final V value) {
+		final boolean ipv6 = ipRange.lowerLimit instanceof Ipv6Address;
+		return ipRange.toCidr(new CidrSink() {
+			@Override
+			public void accept(long highBits, long lowBits, int cidrSuffix) {
+				if (ipv6) {
+					put(ipv6Root, highBits, lowBits, cidrSuffix, value);
+				} else {
+					put(ipv4Root, lowBits << 32, 0l, cidrSuffix, value);
+				}
+			}
+		});
+	}
+
+	private V put(Node<V> root, long highBits, long lowBits, int length, V value) {
+		highBits &= highMask(length);
+		lowBits &= lowMask(length);
+
+		Node<V> parent = null;
+		Node<V> node = root;
+		while (true) {
+			int common = commonPrefixLength(node.highBits, node.lowBits, highBits, lowBits,
+					Math.min(node.length, length));
+
+			if (common < node.length) {
+				// the key branches off inside the path of node
+				Node<V> split = new Node<V>(highBits & highMask(common), lowBits & lowMask(common), common);
+				split.setChild(bit(node.highBits, node.lowBits, common), node);
+				parent.setChild(bit(highBits, lowBits, parent.length), split);
+				size++;
+				if (common == length) {
+					split.hasValue = true;
+					split.value = value;
+				} else {
+					Node<V> leaf = new Node<V>(highBits, lowBits, length);
+					leaf.hasValue = true;
+					leaf.value = value;
+					split.setChild(bit(highBits, lowBits, common), leaf);
+				}
+				return null;
+			}
+
+			if (node.length == length) {
+				V previous = node.value;
+				if (!node.hasValue) {
+					node.hasValue = true;
+					size++;
+				}
+				node.value = value;
+				return previous;
+			}
+
+			int direction = bit(highBits, lowBits, node.length);
+			Node<V> child = node.child(direction);
+			if (child == null) {
+				Node<V> leaf = new Node<V>(highBits, lowBits, length);
+				leaf.hasValue = true;
+				leaf.value = value;
+				node.setChild(direction, leaf);
+				size++;
+				return null;
+			}
+
+			parent = node;
+			node = child;
+		}
+	}
+
+	// returns the value stored for exactly this prefix or null
+	public V get(IpAddress ipAddr, int cidrSuffix) {
+		Node<V> node = find(ipAddr, cidrSuffix);
+		return node == null ? null : node.value;
+	}
+
+	public V getIpv4(long bits, int cidrSuffix) {
+		checkIpv4(bits, cidrSuffix);
+		Node<V> node = find(ipv4Root, bits << 32, 0l, cidrSuffix);
+		return node == null ? null : node.value;
+	}
+
+	public V getIpv6(long highBits, long lowBits, int cidrSuffix) {
+		checkCidrSuffix(cidrSuffix, 128);
+		Node<V> node = find(ipv6Root, highBits, lowBits, cidrSuffix);
+		return node == null ? null : node.value;
+	}
+
+	public boolean containsPrefix(IpAddress ipAddr, int cidrSuffix) {
+		return find(ipAddr, cidrSuffix) != null;
+	}
+
+	private Node<V> find(IpAddress ipAddr, int cidrSuffix) {
+		if (ipAddr instanceof Ipv4Address) {
+			long bits = ((Ipv4Address) ipAddr).longValue();
+			checkIpv4(bits, cidrSuffix);
+			return find(ipv4Root, bits << 32, 0l, cidrSuffix);
+		}
+		checkCidrSuffix(cidrSuffix, 128);
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return find(ipv6Root, ipv6Addr.highBits(), ipv6Addr.lowBits(), cidrSuffix);
+	}
+
+	private static <V> Node<V> find(Node<V> root, long highBits, long lowBits, int length) {
+		highBits &= highMask(length);
+		lowBits &= lowMask(length);
+
+		Node<V> node = root;
+		while (node != null && node.length <= length) {
+			if (!matches(node, highBits, lowBits)) {
+				return null;
+			}
+			if (node.length == length) {
+				return node.hasValue ? node : null;
+			}
+			node = node.child(bit(highBits, lowBits, node.length));
+		}
+		return null;
+	}
+
+	// removes a prefix and returns its value
+	public V remove(IpAddress ipAddr, int cidrSuffix) {
+		if (ipAddr instanceof Ipv4Address) {
+			return removeIpv4(((Ipv4Address) ipAddr).longValue(), cidrSuffix);
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return removeIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits(), cidrSuffix);
+	}
+
+	public V removeIpv4(long bits, int cidrSuffix) {
+		checkIpv4(bits, cidrSuffix);
+		return remove(ipv4Root, bits << 32, 0l, cidrSuffix);
+	}
+
+	public V removeIpv6(long highBits, long lowBits, int cidrSuffix) {
+		checkCidrSuffix(cidrSuffix, 128);
+		return remove(ipv6Root, highBits, lowBits, cidrSuffix);
+	}
+
+	private V remove(Node<V> root, long highBits, long lowBits, int length) {
+		highBits &= highMask(length);
+		lowBits &= lowMask(length);
+
+		Node<V> grandParent = null;
+		Node<V> parent = null;
+		Node<V> node = root;
+		while (node != null && node.length < length) {
+			if (!matches(node, highBits, lowBits)) {
+				return null;
+			}
+			grandParent = parent;
+			parent = node;
+			node = node.child(bit(highBits, lowBits, node.length));
+		}
+
+		if (node == null || node.length != length || !matches(node, highBits, lowBits) || !node.hasValue) {
+			return null;
+		}
+
+		V previous = node.value;
+		node.hasValue = false;
+		node.value = null;
+		size--;
+
+		if (node == root) {
+			return previous;
+		}
+
+		// nodes without value are only kept as branching points
+		if (node.zero != null && node.one != null) {
+			return previous;
+		}
+		Node<V> replacement = node.zero != null ? node.zero : node.one;
+		parent.setChild(bit(highBits, lowBits, parent.length), replacement);
+
+		if (replacement == null && parent != root && !parent.hasValue) {
+			// the parent lost a branch and only has one child left
+			Node<V> sibling = parent.zero != null ? parent.zero : parent.one;
+			grandParent.setChild(bit(highBits, lowBits, grandParent.length), sibling);
+		}
+
+		return previous;
+	}
+
+	// returns the value of the longest prefix containing the address or null
+	public V longestMatch(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv4Address) {
+			return longestMatchIpv4(((Ipv4Address) ipAddr).longValue());
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return longestMatchIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits());
+	}
+
+	public V longestMatchIpv4(long bits) {
+		Node<V> node = longestMatch(ipv4Root, bits << 32, 0l, 32);
+		return node == null ? null : node.value;
+	}
+
+	public V longestMatchIpv6(long highBits, long lowBits) {
+		Node<V> node = longestMatch(ipv6Root, highBits, lowBits, 128);
+		return node == null ? null : node.value;
+	}
+
+	// returns the entry of the longest prefix containing the address or null
+	public Entry<V> longestMatchEntry(IpAddress ipAddr) {
+		boolean ipv6 = ipAddr instanceof Ipv6Address;
+		Node<V> node;
+		if (ipv6) {
+			node = longestMatch(ipv6Root, ((Ipv6Address) ipAddr).highBits(), ((Ipv6Address) ipAddr).lowBits(), 128);
+		} else {
+			node = longestMatch(ipv4Root, ((Ipv4Address) ipAddr).longValue() << 32, 0l, 32);
+		}
+		return node == null ? null : new Entry<V>(ipv6, node);
+	}
+
+	private static <V> Node<V> longestMatch(Node<V> root, long highBits, long lowBits, int length) {
+		Node<V> match = null;
+		Node<V> node = root;
+		while (node != null && matches(node, highBits, lowBits)) {
+			if (node.hasValue) {
+				match = node;
+			}
+			if (node.length == length) {
+				break;
+			}
+			node = node.child(bit(highBits, lowBits, node.length));
+		}
+		return match;
+	}
+
+	// returns all prefixes containing the address, shortest prefix first
+	public List<Entry<V>> allMatches(IpAddress ipAddr) {
+		boolean ipv6 = ipAddr instanceof Ipv6Address;
+		long highBits;
+		long lowBits;
+		int length;
+		Node<V> node;
+		if (ipv6) {
+			highBits = ((Ipv6Address) ipAddr).highBits();
+			lowBits = ((Ipv6Address) ipAddr).lowBits();
+			length = 128;
+			node = ipv6Root;
+		} else {
+			highBits = ((Ipv4Address) ipAddr).longValue() << 32;
+			lowBits = 0l;
+			length = 32;
+			node = ipv4Root;
+		}
+
+		List<Entry<V>> result = new ArrayList<Entry<V>>();
+		while (node != null && matches(node, highBits, lowBits)) {
+			if (node.hasValue) {
+				result.add(new Entry<V>(ipv6, node));
+			}
+			if (node.length == length) {
+				break;
+			}
+			node = node.child(bit(highBits, lowBits, node.length));
+		}
+		return result;
+	}
+
+	// all stored prefixes inside the given prefix (including itself) in
+	// address order, a shorter prefix comes before the prefixes it contains
+	public Iterable<Entry<V>> subPrefixes(IpAddress ipAddr, int cidrSuffix) {
+		final boolean ipv6 = ipAddr instanceof Ipv6Address;
+		long highBits;
+		long lowBits;
+		Node<V> node;
+		if (ipv6) {
+			checkCidrSuffix(cidrSuffix, 128);
+			highBits = ((Ipv6Address) ipAddr).highBits() & highMask(cidrSuffix);
+			lowBits = ((Ipv6Address) ipAddr).lowBits() & lowMask(cidrSuffix);
+			node = ipv6Root;
+		} else {
+			checkCidrSuffix(cidrSuffix, 32);
+			highBits = (((Ipv4Address) ipAddr).longValue() << 32) & highMask(cidrSuffix);
+			lowBits = 0l;
+			node = ipv4Root;
+		}
+
+		// the first node on the path whose prefix is at least as long
+		while (node != null && node.length < cidrSuffix) {
+			if (!matches(node, highBits, lowBits)) {
+				node = null;
+				break;
+			}
+			node = node.child(bit(highBits, lowBits, node.length));
+		}
+		if (node != null && ((node.highBits & highMask(cidrSuffix)) != highBits
+				|| (node.lowBits & lowMask(cidrSuffix)) != lowBits)) {
+			node = null;
+		}
+
+		final Node<V> start = node;
+		return new Iterable<Entry<V>>() {
+			@Override
+			public Iterator<Entry<V>> iterator() {
+				return new EntryIterator<V>(ipv6 ? null : start, ipv6 ? start : null);
+			}
+		};
+	}
+
+	// all prefixes, ipv4 before ipv6, each in address order
+	@Override
+	public Iterator<Entry<V>> iterator() {
+		return new EntryIterator<V>(ipv4Root, ipv6Root);
+	}
+
+	private static final class EntryIterator<V> implements Iterator<Entry<V>> {
+		private final Deque<Node<V>> stack = new ArrayDeque<Node<V>>();
+		private final Node<V> ipv6Root;
+		private boolean ipv6;
+		private Node<V> next;
+
+		EntryIterator(Node<V> ipv4Root, Node<V> ipv6Root) {
+			this.ipv6Root = ipv6Root;
+			if (ipv4Root != null) {
+				stack.push(ipv4Root);
+			} else if (ipv6Root != null) {
+				stack.push(ipv6Root);
+				ipv6 = true;
+			}
+			advance();
+		}
+
+		// pre-order walk, the zero branch before the one branch
+		private void advance() {
+			next = null;
+			while (next == null) {
+				if (stack.isEmpty()) {
+					if (ipv6 || ipv6Root == null) {
+						return;
+					}
+					ipv6 = true;
+					stack.push(ipv6Root);
+				}
+				Node<V> node = stack.pop();
+				if (node.one != null) {
+					stack.push(node.one);
+				}
+				if (node.zero != null) {
+					stack.push(node.zero);
+				}
+				if (node.hasValue) {
+					next = node;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Entry<V> next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Entry<V> entry = new Entry<V>(ipv6, next);
+			advance();
+			return entry;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		clear(ipv4Root);
+		clear(ipv6Root);
+		size = 0;
+	}
+
+	private static void clear(Node<?> root) {
+		root.zero = null;
+		root.one = null;
+		root.hasValue = false;
+		root.value = null;
+	}
+
+	private static void checkIpv4(long bits, int cidrSuffix) {
+		if (bits < 0l || bits > 0xFFFFFFFFl) {
+			throw new InvalidIpAddressException();
+		}
+		checkCidrSuffix(cidrSuffix, 32);
+	}
+
+	private static void checkCidrSuffix(int cidrSuffix, int maxCidrSuffix) {
+		if (cidrSuffix < 0 || cidrSuffix > maxCidrSuffix) {
+			throw new IllegalArgumentException("invalid cidr suffix " + cidrSuffix);
+		}
+	}
+
+	// true if the address (highBits, lowBits) starts with the prefix of node
+	private static boolean matches(Node<?> node, long highBits, long lowBits) {
+		return (highBits & highMask(node.length)) == node.highBits && (lowBits & lowMask(node.length)) == node.lowBits;
+	}
+
+	private static long highMask(int length) {
+		if (length >= 64) {
+			return -1l;
+		}
+		return length == 0 ? 0l : -1l << (64 - length);
+	}
+
+	private static long lowMask(int length) {
+		if (length <= 64) {
+			return 0l;
+		}
+		return -1l << (128 - length);
+	}
+
+	// the bit at position index counted from the most significant bit
+	private static int bit(long highBits, long lowBits, int index) {
+		if (index < 64) {
+			return (int) (highBits >>> (63 - index)) & 1;
+		}
+		return (int) (lowBits >>> (127 - index)) & 1;
+	}
+
+	private static int commonPrefixLength(long high1, long low1, long high2, long low2, int max) {
+		long diff = high1 ^ high2;
+		int common = diff != 0l ? Long.numberOfLeadingZeros(diff) : 64 + Long.numberOfLeadingZeros(low1 ^ low2);
+		return Math.min(common, max);
+	}
+}
@@ -0,0 +1,97 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class IpPrefixTrieTest {
+
+	private static IpAddress ip(String s) {
+		return IpAddress.parseIpAddress(s);
+	}
+
+	@Test
+	public void testLongestMatch() throws Exception {
+		IpPrefixTrie<String> trie = new IpPrefixTrie<String>();
+		trie.put(ip("132.230.0.0"), 16, "uni");
+		trie.put(ip("132.230.25.0"), 24, "ub");
+		trie.put(ip("132.230.25.128"), 25, "ub-wifi");
+		trie.put(ip("2001:4860:4860::"), 48, "v6");
+		trie.put(ip("2001:4860:4860::8888"), 128, "v6-host");
+
+		assertEquals(5, trie.size());
+		assertEquals("ub", trie.longestMatch(ip("132.230.25.17")));
+		assertEquals("ub-wifi", trie.longestMatch(ip("132.230.25.200")));
+		assertEquals("uni", trie.longestMatch(ip("132.230.26.1")));
+		assertNull(trie.longestMatch(ip("132.231.25.17")));
+		assertEquals("v6-host", trie.longestMatch(ip("2001:4860:4860::8888")));
+		assertEquals("v6", trie.longestMatch(ip("2001:4860:4860::8889")));
+		assertNull(trie.longestMatch(ip("2001:4860:4861::8888")));
+
+		// host bits behind the prefix are ignored
+		assertEquals("ub", trie.put(ip("132.230.25.99"), 24, "ub2"));
+		assertEquals("ub2", trie.get(ip("132.230.25.0"), 24));
+		assertNull(trie.get(ip("132.230.25.0"), 23));
+
+		assertEquals("132.230.25.128/25=ub-wifi", trie.longestMatchEntry(ip("132.230.25.200")).toString());
+	}
+
+	@Test
+	public void testAllMatches() throws Exception {
+		IpPrefixTrie<Integer> trie = new IpPrefixTrie<Integer>();
+		trie.put(ip("0.0.0.0"), 0, 0);
+		trie.put(ip("132.230.0.0"), 16, 16);
+		trie.put(ip("132.230.25.0"), 24, 24);
+		trie.put(ip("132.230.25.1"), 32, 32);
+
+		List<Integer> values = new ArrayList<Integer>();
+		for (IpPrefixTrie.Entry<Integer> entry : trie.allMatches(ip("132.230.25.1"))) {
+			values.add(entry.getValue());
+		}
+		assertEquals("[0, 16, 24, 32]", values.toString());
+		assertEquals(2, trie.allMatches(ip("132.230.26.1")).size());
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		IpPrefixTrie<String> trie = new IpPrefixTrie<String>();
+		trie.put(ip("10.0.0.0"), 8, "a");
+		trie.put(ip("10.1.0.0"), 16, "b");
+		trie.put(ip("10.2.0.0"), 16, "c");
+
+		assertEquals("a", trie.remove(ip("10.0.0.0"), 8));
+		assertNull(trie.remove(ip("10.0.0.0"), 8));
+		assertEquals(2, trie.size());
+		assertNull(trie.longestMatch(ip("10.3.0.1")));
+		assertEquals("b", trie.longestMatch(ip("10.1.0.1")));
+
+		assertEquals("b", trie.remove(ip("10.1.0.0"), 16));
+		assertEquals("c", trie.longestMatch(ip("10.2.0.1")));
+		assertEquals(1, trie.size());
+	}
+
+	@Test
+	public void testIteration() throws Exception {
+		IpPrefixTrie<String> trie = new IpPrefixTrie<String>();
+		trie.putAll(IpRange.parseIpRange("132.230.25.0-132.230.25.130"), "a");
+		trie.put(ip("2001:4860:4860::"), 48, "b");
+		trie.put(ip("10.0.0.0"), 8, "c");
+
+		List<String> prefixes = new ArrayList<String>();
+		for (IpPrefixTrie.Entry<String> entry : trie) {
+			prefixes.add(entry.toString());
+		}
+		assertEquals("[10.0.0.0/8=c, 132.230.25.0/25=a, 132.230.25.128/31=a, 132.230.25.130/32=a, "
+				+ "2001:4860:4860:0000:0000:0000:0000:0000/48=b]", prefixes.toString());
+
+		prefixes.clear();
+		for (IpPrefixTrie.Entry<String> entry : trie.subPrefixes(ip("132.230.25.128"), 30)) {
+			prefixes.add(entry.getIpRange().toRangeString());
+		}
+		assertEquals("[132.230.25.128-132.230.25.129, 132.230.25.130-132.230.25.130]", prefixes.toString());
+	}
+}
@@ -1,11 +1,15 @@
 package de.uni_freiburg.ub;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-
-import org.apache.commons.lang3.StringUtils;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import de.uni_freiburg.ub.Exception.InvalidBlockException;
 import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
@@ -19,7 +23,9 @@ public class IpRange {
 	protected String inputString = "";
 
 	public IpRange(IpAddress lowerLimit, IpAddress upperLimit) {
-		if (lowerLimit.isGreater(upperLimit)) {
+		// both limits have the same ip version, ipv4 and ipv6 addresses are
+		// comparable but do not form a range
+		if (lowerLimit.getClass() != upperLimit.getClass() || lowerLimit.isGreater(upperLimit)) {
 			throw new InvalidRangeException();
 		}
 
@@ -38,39 +44,122 @@ public class IpRange {
 	}
 
 	public static IpRange parseIpRange(String s) throws InvalidRangeException {
+		return tryParseIpRange(s).getOrThrow();
+	}
+
+	// same as parseIpRange but reports invalid input without throwing, the
+	// errors map to the exceptions of parseIpRange (see ParseError)
+	public static ParseResult<IpRange> tryParseIpRange(String s) {
+		ParseResult<IpRange> result = tryParse(s);
+		IpMetrics.countParse(result, IpMetrics.Counter.RANGE_PARSES, IpMetrics.Counter.RANGE_PARSE_FAILURES);
+		return result;
+	}
+
+	private static ParseResult<IpRange> tryParse(String s) {
 		// remove all withspace characters
-		s = StringUtils.removeAll(s, "\\s");
+		s = removeWhitespace(s);
+
+		// the common notations are read in a single pass, see IpRangeParser
+		long[] bounds = new long[4];
+		int version = IpRangeParser.parse(s, 0, s.length(), bounds);
+		if (version == IpRangeParser.IPV4) {
+			return ParseResult.valid(new IpRange(Ipv4Address.valueOf(bounds[1]), Ipv4Address.valueOf(bounds[3]), s));
+		}
+		if (version == IpRangeParser.IPV6) {
+			return ParseResult.valid(new IpRange(new Ipv6Address(bounds[0], bounds[1]),
+					new Ipv6Address(bounds[2], bounds[3]), s));
+		}
+		return tryParseSplit(s);
+	}
 
+	// the characters matched by \s
+	static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+	}
+
+	private static String removeWhitespace(String s) {
+		int i = 0;
+		while (i < s.length() && !isWhitespace(s.charAt(i))) {
+			i++;
+		}
+		if (i == s.length()) {
+			return s;
+		}
+
+		StringBuilder sb = new StringBuilder(s.length());
+		sb.append(s, 0, i);
+		for (; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (!isWhitespace(c)) {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	// the notations split into their parts, also handles the input rejected
+	// by IpRangeParser and reports why it is invalid
+	private static ParseResult<IpRange> tryParseSplit(String s) {
 		// handle cidr notation
 		String[] parts = s.split("/");
 		if (parts.length == 2) {
-			IpAddress ipAddr = IpAddress.parseIpAddress(parts[0]);
-			short cidrSuffix = ipAddr.parseCidrSuffix(parts[1]);
-			return new IpRange(ipAddr.getLowerLimit(cidrSuffix), ipAddr.getUpperLimit(cidrSuffix), s);
+			ParseResult<IpAddress> ipAddr = IpAddress.tryParse(parts[0]);
+			if (!ipAddr.isValid()) {
+				return ParseResult.invalid(ipAddr.getError());
+			}
+
+			IpAddress addr = ipAddr.getValue();
+			int maxCidrSuffix = addr instanceof Ipv4Address ? Ipv4Address.MAX_CIDR_SUFFIX : Ipv6Address.MAX_CIDR_SUFFIX;
+			int cidrSuffix = IpAddress.tryParseCidrSuffix(parts[1], maxCidrSuffix);
+			if (cidrSuffix < 0) {
+				return ParseResult.invalid(ParseError.INVALID_NUMBER);
+			}
+			return ParseResult.valid(new IpRange(addr.getLowerLimit(cidrSuffix), addr.getUpperLimit(cidrSuffix), s));
 		}
 
 		// handle formats like: 132.230.250.234 - 132.230.250.255
+		// if a limit is no address the input may still be a range like
+		// 132.230.250.10-20, but a block out of range is an error
 		String[] limits = s.split("-");
 		if (limits.length == 2) {
-			try {
-				IpAddress lowerLimit = IpAddress.parseIpAddress(limits[0]);
-				IpAddress upperLimit = IpAddress.parseIpAddress(limits[1]);
-				return new IpRange(lowerLimit, upperLimit, s);
-			} catch (InvalidIpAddressException e) {
-				// TODO Auto-generated catch block
-				// e.printStackTrace();
+			ParseResult<IpAddress> lowerLimit = IpAddress.tryParse(limits[0]);
+			if (lowerLimit.getError() == ParseError.INVALID_NUMBER) {
+				return ParseResult.invalid(ParseError.INVALID_NUMBER);
+			}
+			if (lowerLimit.isValid()) {
+				ParseResult<IpAddress> upperLimit = IpAddress.tryParse(limits[1]);
+				if (upperLimit.getError() == ParseError.INVALID_NUMBER) {
+					return ParseResult.invalid(ParseError.INVALID_NUMBER);
+				}
+				if (upperLimit.isValid()) {
+					return tryCreate(lowerLimit.getValue(), upperLimit.getValue(), s);
+				}
 			}
 		}
 
-		try {
-			IpRange result = getRange(s);
-			return result;
-		} catch (InvalidBlockException e) {
-			throw new InvalidRangeException();
+		ParseResult<IpRange> result = tryGetRange(s);
+		if (result.getError() == ParseError.INVALID_BLOCKS) {
+			return ParseResult.invalid(ParseError.INVALID_RANGE);
+		}
+		return result;
+	}
+
+	private static ParseResult<IpRange> tryCreate(IpAddress lowerLimit, IpAddress upperLimit, String s) {
+		if (lowerLimit.getClass() != upperLimit.getClass() || lowerLimit.isGreater(upperLimit)) {
+			return ParseResult.invalid(ParseError.INVALID_RANGE);
 		}
+		return ParseResult.valid(new IpRange(lowerLimit, upperLimit, s));
 	}
 
 	protected static String[] getBlocks(String ipAddr) throws InvalidBlockException, InvalidRangeException {
+		ParseResult<String[]> blocks = tryGetBlocks(ipAddr);
+		if (blocks.getError() == ParseError.INVALID_BLOCKS) {
+			throw new InvalidBlockException();
+		}
+		return blocks.getOrThrow();
+	}
+
+	protected static ParseResult<String[]> tryGetBlocks(String ipAddr) {
 		String[] blocks = ipAddr.split("\\.");
  
 		String blockA = "";
@@ -86,7 +175,7 @@ public class IpRange {
 				blockC = blocks[2];
 				blockD = "*";
 			} else {
-				throw new InvalidBlockException();
+				return ParseResult.invalid(ParseError.INVALID_BLOCKS);
 			}
 			break;
 		case 4:
@@ -98,274 +187,416 @@ public class IpRange {
 			}
 			break;
 		default:
-			throw new InvalidRangeException();
+			return ParseResult.invalid(ParseError.INVALID_RANGE);
 		}
 
-		short value = Short.parseShort(blockA);
-		if (value < 0 || 255 < value) {
-			throw new NumberFormatException();
+		// block A and B must be numbers, block C and D may also be a
+		// wildcard or a range of numbers
+		if (!isNumber(parseBlock(blockA)) || !isNumber(parseBlock(blockB)) || parseBlock(blockC) < 0
+				|| parseBlock(blockD) < 0) {
+			return ParseResult.invalid(ParseError.INVALID_NUMBER);
 		}
 
-		value = Short.parseShort(blockB);
-		if (value < 0 || 255 < value) {
-			throw new NumberFormatException();
+		return ParseResult.valid(new String[] { blockA, blockB, blockC, blockD });
+	}
+
+	protected static IpRange getRange(String s) throws InvalidBlockException, InvalidRangeException {
+		ParseResult<IpRange> result = tryGetRange(s);
+		if (result.getError() == ParseError.INVALID_BLOCKS) {
+			throw new InvalidBlockException();
 		}
+		return result.getOrThrow();
+	}
 
-		boolean moreChecksNeeded = true;
-		String[] parts = blockC.split("-");
-		if (parts.length == 2) {
-			short highC = Short.parseShort(parts[1]);
-			short lowC = Short.parseShort(parts[0]);
-			if (!(0 <= lowC && lowC < highC && highC <= 255)) {
-				throw new NumberFormatException();
+	protected static ParseResult<IpRange> tryGetRange(String s) {
+
+		if (s.contains(":")) {
+			ParseResult<IpAddress> ipAddr = IpAddress.tryParse(s);
+			if (!ipAddr.isValid()) {
+				return ParseResult.invalid(ipAddr.getError());
 			}
-			moreChecksNeeded = false;
+			return ParseResult.valid(new IpRange(ipAddr.getValue(), ipAddr.getValue(), s));
 		}
+		
+		ParseResult<String[]> result = tryGetBlocks(s);
+		if (!result.isValid()) {
+			return ParseResult.invalid(result.getError());
+		}
+
+		String[] blocks = result.getValue();
+		long blockA = parseBlock(blocks[0]) & 0xFF;
+		long blockB = parseBlock(blocks[1]) & 0xFF;
 
-		if (moreChecksNeeded && blockC.equals("*")) {
-			moreChecksNeeded = false;
+		// allowed formats for blockC and blockD:
+		// * number between 0 and 255,
+		// Examples: 213, 234, 1, 99
+		// * wildcard *
+		// Examples: *
+		// * two numbers between 0 and 255 separated by "-", first number must be
+		// smaller than the second number
+		// Examples: 132-232, 232-255, 1-58
+		// if blockC is no number blockD must be a wildcard
+		int blockC = parseBlock(blocks[2]);
+		int blockD = parseBlock(blocks[3]);
+		if (!isNumber(blockC) && !blocks[3].equals("*")) {
+			return ParseResult.invalid(ParseError.INVALID_BLOCKS);
 		}
 
-		if (moreChecksNeeded) {
-			value = Short.parseShort(blockC);
-			if (value < 0 || 255 < value) {
-				throw new NumberFormatException();
-			}
+		long prefix = blockA << 24 | blockB << 16;
+		long lower = prefix | (blockC >>> 8) << 8 | blockD >>> 8;
+		long upper = prefix | (blockC & 0xFF) << 8 | blockD & 0xFF;
+
+		return ParseResult.valid(new IpRange(new Ipv4Address(lower), new Ipv4Address(upper), s));
+	}
+
+	// parses a block of a range in dotted notation, returns the lowest and the
+	// highest value of the block as (low << 8 | high) or -1 if it is invalid
+	private static int parseBlock(String block) {
+		if (block.equals("*")) {
+			return 0xFF;
 		}
 
-		moreChecksNeeded = true;
-		parts = blockD.split("-");
-		if (parts.length == 2) {
-			short highD = Short.parseShort(parts[1]);
-			short lowD = Short.parseShort(parts[0]);
-			if (!(0 <= lowD && lowD < highD && highD <= 255)) {
-				throw new NumberFormatException();
-			}
-			moreChecksNeeded = false;
+		int dash = block.indexOf('-');
+		if (dash < 0) {
+			int value = parseOctet(block, 0, block.length());
+			return value < 0 ? -1 : value << 8 | value;
+		}
+
+		int low = parseOctet(block, 0, dash);
+		int high = parseOctet(block, dash + 1, block.length());
+		if (low < 0 || high < 0 || low >= high) {
+			return -1;
 		}
+		return low << 8 | high;
+	}
+
+	private static boolean isNumber(int block) {
+		return block >= 0 && block >>> 8 == (block & 0xFF);
+	}
 
-		if (moreChecksNeeded && blockD.equals("*")) {
-			moreChecksNeeded = false;
+	private static int parseOctet(String s, int from, int to) {
+		if (from == to) {
+			return -1;
 		}
 
-		if (moreChecksNeeded) {
-			value = Short.parseShort(blockD);
-			if (value < 0 || 255 < value) {
-				throw new NumberFormatException();
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || '9' < c) {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+			if (value > 255) {
+				return -1;
 			}
 		}
+		return value;
+	}
 
-		return new String[] { blockA, blockB, blockC, blockD };
+	public String toRangeString() throws InvalidIpAddressException {
+		return appendTo(new StringBuilder()).toString();
 	}
 
-	protected static IpRange getRange(String s) throws InvalidBlockException, InvalidRangeException {
+	public IpAddress getLowerLimit() throws InvalidIpAddressException {
+		return this.lowerLimit;
+	}
 
-		if (s.contains(":")) {
-			IpAddress ipAddr = IpAddress.parseIpAddress(s);
-			return new IpRange(ipAddr, ipAddr, s);
+	public IpAddress getUpperLimit() throws InvalidIpAddressException {
+		return this.upperLimit;
+	}
+
+	// the offset of the upper limit from the lower limit, i.e. the number of
+	// addresses - 1, as unsigned 128 bit value in result[0] (high bits) and
+	// result[1] (low bits). unlike the number of addresses it always fits
+	public void maxOffset(long[] result) {
+		if (lowerLimit instanceof Ipv4Address) {
+			result[0] = 0l;
+			result[1] = ((Ipv4Address) lowerLimit).distance((Ipv4Address) upperLimit);
+		} else {
+			((Ipv6Address) lowerLimit).distance((Ipv6Address) upperLimit, result);
 		}
-		
-		String[] blocks = getBlocks(s);
-		short blockA = Short.parseShort(blocks[0]);
-		short blockB = Short.parseShort(blocks[1]);
-		
-		// allowed formats for blockC:
-		// * number between 0 and 255,
-		// Examples: 213, 234, 1, 99
-		// * wildcard *
-		// Examples: *
-		// * two numbers between 0 and 255 separated by "-", first number must be
-		// smaller or equal than the second number
-		// Examples: 132-232, 232-255, 1-58
+	}
 
-		Short blockC = null;
-		try {
-			blockC = Short.parseShort(blocks[2]);
-			if (blockC < 0 || 255 < blockC) {
-				throw new NumberFormatException();
-			}
-		} catch (Exception e) {
+	// the number of addresses of the range, throws ArithmeticException if it
+	// does not fit into a long
+	public long size() {
+		long[] maxOffset = new long[2];
+		maxOffset(maxOffset);
+		if (maxOffset[0] != 0l || maxOffset[1] < 0 || maxOffset[1] == Long.MAX_VALUE) {
+			throw new ArithmeticException("size does not fit into a long");
 		}
+		return maxOffset[1] + 1;
+	}
 
-		Short highC = null;
-		Short lowC = null;
-		if (blocks[2].equals("*")) {
-			highC = 255;
-			lowC = 0;
+	// as size, but Long.MAX_VALUE for larger ranges
+	public long sizeSaturated() {
+		long[] maxOffset = new long[2];
+		maxOffset(maxOffset);
+		if (maxOffset[0] != 0l || maxOffset[1] < 0 || maxOffset[1] == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
 		}
+		return maxOffset[1] + 1;
+	}
 
-		try {
-			String[] parts = blocks[2].split("-");
-			if (parts.length == 2) {
-				highC = Short.parseShort(parts[1]);
-				lowC = Short.parseShort(parts[0]);
-				if (!(0 <= lowC && lowC < highC && highC <= 255)) {
-					throw new NumberFormatException();
-				}
-			}
-		} catch (Exception e) {
+	// the address at the offset from the lower limit, throws
+	// IndexOutOfBoundsException if it is not part of the range
+	public IpAddress addressAt(long offset) {
+		if (offset < 0) {
+			throw new IndexOutOfBoundsException(Long.toString(offset));
 		}
+		return addressAt(0l, offset);
+	}
 
-		// handle block D
-		Short blockD = null;
-		try {
-			blockD = Short.parseShort(blocks[3]);
-			if (0 < blockD || blockC > 255) {
-				throw new NumberFormatException();
+	// the offset is an unsigned 128 bit value
+	public IpAddress addressAt(long highOffset, long lowOffset) {
+		if (lowerLimit instanceof Ipv4Address) {
+			long bits = ((Ipv4Address) lowerLimit).longValue();
+			long upper = ((Ipv4Address) upperLimit).longValue();
+			if (highOffset != 0l || lowOffset < 0 || lowOffset > upper - bits) {
+				throw new IndexOutOfBoundsException(Long.toUnsignedString(lowOffset));
 			}
-		} catch (Exception e) {
+			return Ipv4Address.valueOf(bits + lowOffset);
 		}
 
-		Short highD = null;
-		Short lowD = null;
-		if (blocks[3].equals("*")) {
-			highD = 255;
-			lowD = 0;
+		long[] maxOffset = new long[2];
+		maxOffset(maxOffset);
+		if (RangeList.compare(highOffset, lowOffset, maxOffset[0], maxOffset[1]) > 0) {
+			throw new IndexOutOfBoundsException(Long.toUnsignedString(lowOffset));
 		}
+		return ((Ipv6Address) lowerLimit).plus(highOffset, lowOffset);
+	}
 
-		try {
-			String[] parts = blocks[3].split("-");
-			if (parts.length == 2) {
-				highD = Short.parseShort(parts[1]);
-				lowD = Short.parseShort(parts[0]);
-				if (!(0 <= lowD && lowD < highD && highD <= 255)) {
-					throw new NumberFormatException();
-				}
+	// walks over the addresses without creating objects
+	public AddressCursor cursor() {
+		if (lowerLimit instanceof Ipv4Address) {
+			return new AddressCursor(false, 0l, ((Ipv4Address) lowerLimit).longValue(), 0l,
+					((Ipv4Address) upperLimit).longValue());
+		}
+		Ipv6Address lower = (Ipv6Address) lowerLimit;
+		Ipv6Address upper = (Ipv6Address) upperLimit;
+		return new AddressCursor(true, lower.highBits(), lower.lowBits(), upper.highBits(), upper.lowBits());
+	}
+
+	// the addresses of an ipv4 range as unsigned bits
+	public PrimitiveIterator.OfLong ipv4Iterator() {
+		final long last = ipv4Bits(upperLimit);
+		final long first = ipv4Bits(lowerLimit);
+		return new PrimitiveIterator.OfLong() {
+			private long next = first;
+
+			@Override
+			public boolean hasNext() {
+				return next <= last;
 			}
-		} catch (Exception e) {
-		}
-
-		String resA = String.valueOf(blockA);
-		String resB = String.valueOf(blockB);
-		String resHighC = "";
-		String resLowC = "";
-		String resHighD = "";
-		String resLowD = "";
-
-		if (blockC == null) {
-			if (blocks[3].equals("*")) {
-				resHighC = String.valueOf(highC);
-				resLowC = String.valueOf(lowC);
-				resHighD = "255";
-				resLowD = "0";
-			} else
-				throw new InvalidBlockException();
-		}
-
-		if (blockC != null) {
-			resHighC = String.valueOf(blockC);
-			resLowC = String.valueOf(blockC);
-			if (blockD == null) {
-				resHighD = String.valueOf(highD);
-				resLowD = String.valueOf(lowD);
-			} else {
-				resHighD = String.valueOf(blockD);
-				resLowD = String.valueOf(blockD);
+
+			@Override
+			public long nextLong() {
+				if (next > last) {
+					throw new NoSuchElementException();
+				}
+				return next++;
 			}
-		}
+		};
+	}
 
-		String end = String.valueOf(resA) + "." + String.valueOf(resB) + "." + String.valueOf(resHighC) + "."
-				+ String.valueOf(resHighD);
+	public Spliterator.OfLong ipv4Spliterator() {
+		return new Ipv4Spliterator(ipv4Bits(lowerLimit), ipv4Bits(upperLimit));
+	}
 
-		String start = String.valueOf(resA) + "." + String.valueOf(resB) + "." + String.valueOf(resLowC) + "."
-				+ String.valueOf(resLowD);
+	public LongStream ipv4Stream() {
+		return StreamSupport.longStream(ipv4Spliterator(), false);
+	}
 
-		try {
-			IpAddress lower = IpAddress.parseIpAddress(start);
-			IpAddress upper = IpAddress.parseIpAddress(end);
-			return new IpRange(lower, upper, s);
-		} catch (InvalidIpAddressException e) {
-			throw new InvalidRangeException();
+	private static long ipv4Bits(IpAddress ipAddr) {
+		if (!(ipAddr instanceof Ipv4Address)) {
+			throw new IllegalStateException("not an ipv4 range");
 		}
+		return ((Ipv4Address) ipAddr).longValue();
 	}
 
-	public String toRangeString() throws InvalidIpAddressException {
-		String lower = lowerLimit.toString();
-		String upper = upperLimit.toString();
-		String ipRange = lower + "-" + upper;
-
-		return ipRange;
+	// the addresses of the range of either ip version, splits evenly also
+	// for ranges with more than Long.MAX_VALUE addresses
+	public Spliterator<IpAddress> addressSpliterator() {
+		if (lowerLimit instanceof Ipv4Address) {
+			return new BlockSpliterator.Addresses(false, 0l, ((Ipv4Address) lowerLimit).longValue(), 0l,
+					((Ipv4Address) upperLimit).longValue());
+		}
+		Ipv6Address lower = (Ipv6Address) lowerLimit;
+		Ipv6Address upper = (Ipv6Address) upperLimit;
+		return new BlockSpliterator.Addresses(true, lower.highBits(), lower.lowBits(), upper.highBits(),
+				upper.lowBits());
 	}
 
-	public IpAddress getLowerLimit() throws InvalidIpAddressException {
-		return this.lowerLimit;
+	public Stream<IpAddress> addressStream() {
+		return StreamSupport.stream(addressSpliterator(), false);
 	}
 
-	public IpAddress getUpperLimit() throws InvalidIpAddressException {
-		return this.upperLimit;
+	// the subnets with the cidr suffix within the range, e.g. all /24 of a
+	// /16. if the range is not aligned to the subnets the first and the last
+	// one only cover the part inside the range
+	public Spliterator<IpRange> subnetSpliterator(int cidrSuffix) {
+		if (lowerLimit instanceof Ipv4Address) {
+			if (cidrSuffix < 0 || Ipv4Address.MAX_CIDR_SUFFIX < cidrSuffix) {
+				throw new IllegalArgumentException("invalid cidr suffix " + cidrSuffix);
+			}
+			return new BlockSpliterator.Subnets(false, cidrSuffix, 0l, ((Ipv4Address) lowerLimit).longValue(), 0l,
+					((Ipv4Address) upperLimit).longValue());
+		}
+		if (cidrSuffix < 0 || Ipv6Address.MAX_CIDR_SUFFIX < cidrSuffix) {
+			throw new IllegalArgumentException("invalid cidr suffix " + cidrSuffix);
+		}
+		Ipv6Address lower = (Ipv6Address) lowerLimit;
+		Ipv6Address upper = (Ipv6Address) upperLimit;
+		return new BlockSpliterator.Subnets(true, cidrSuffix, lower.highBits(), lower.lowBits(), upper.highBits(),
+				upper.lowBits());
 	}
 
-	public List<String> toCidr() {
+	public Iterator<IpRange> subnets(int cidrSuffix) {
+		return Spliterators.iterator(subnetSpliterator(cidrSuffix));
+	}
 
-		List<String> result = new LinkedList<String>();
+	public Stream<IpRange> subnetStream(int cidrSuffix) {
+		return StreamSupport.stream(subnetSpliterator(cidrSuffix), false);
+	}
 
-		Map<IpAddress, IpRange> cidrRanges = getCidr(lowerLimit, this.upperLimit);
+	public List<String> toCidr() {
 
-		for (IpRange cidrRange : cidrRanges.values()) {
-			try {
-				result.add(cidrRange.getLowerLimit().toString() + "/" + (cidrRange.cidrSuffix+1));
-			} catch (InvalidIpAddressException e) {
+		final List<String> result = new LinkedList<String>();
+		final char[] buf = new char[Ipv6Address.PADDED_LENGTH + 4];
+		final boolean isIpv6 = lowerLimit instanceof Ipv6Address;
 
+		toCidr(new CidrSink() {
+			@Override
+			public void accept(long highBits, long lowBits, int cidrSuffix) {
+				result.add(toCidrString(isIpv6, highBits, lowBits, cidrSuffix, buf));
 			}
-		}
+		});
 
 		return result;
 	}
 
-	private static Map<IpAddress, IpRange> getCidr(IpAddress lowerAddr, IpAddress upperAddr) {
-		return getCidr(0, lowerAddr, upperAddr, new TreeMap<IpAddress, IpRange>());
+	// formats a cidr block using buf, which holds at least
+	// Ipv6Address.PADDED_LENGTH + 4 characters
+	static String toCidrString(boolean ipv6, long highBits, long lowBits, int cidrSuffix, char[] buf) {
+		int end;
+		if (ipv6) {
+			end = Ipv6Address.format(highBits, lowBits, buf, 0);
+		} else {
+			end = Ipv4Address.format(lowBits, buf, 0);
+		}
+		buf[end++] = '/';
+		if (cidrSuffix >= 100) {
+			buf[end++] = (char) ('0' + cidrSuffix / 100);
+		}
+		if (cidrSuffix >= 10) {
+			buf[end++] = (char) ('0' + (cidrSuffix / 10) % 10);
+		}
+		buf[end++] = (char) ('0' + cidrSuffix % 10);
+		return new String(buf, 0, end);
 	}
 
-	private static Map<IpAddress, IpRange> getCidr(int n, IpAddress lower, IpAddress upper,
-			Map<IpAddress, IpRange> allRanges) {
-		if (lower.isGreater(upper)) {
-			return allRanges;
+	// emits the cidr blocks covering this range in ascending order, returns
+	// the number of blocks which is at most 64 for ipv4 and 256 for ipv6
+	public int toCidr(CidrSink sink) {
+		if (lowerLimit instanceof Ipv4Address) {
+			return toIpv4Cidr(((Ipv4Address) lowerLimit).longValue(), ((Ipv4Address) upperLimit).longValue(), sink);
 		}
-		
-		IpAddress highBlockLower = (upper.getLowerLimit(n));
-		IpAddress highBlockUpper = (highBlockLower.getUpperLimit(n+1));
-		
-		IpAddress midBlockUpper = (lower.getUpperLimit(n));
-		IpAddress midBlockLower = (midBlockUpper.getLowerLimit(n+1));
 
-		IpAddress lowBlockLower = (lower.getLowerLimit(n));
-		IpAddress lowBlockUpper = (lowBlockLower.getUpperLimit(n+1));
+		Ipv6Address lower = (Ipv6Address) lowerLimit;
+		Ipv6Address upper = (Ipv6Address) upperLimit;
+		return toIpv6Cidr(lower.highBits(), lower.lowBits(), upper.highBits(), upper.lowBits(), sink);
+	}
 
-		IpAddress resultUpperLimit = null;
-		IpAddress resultLowerLimit = null;
-		if (upper.isGreaterEqual(highBlockUpper) && highBlockLower.isGreaterEqual(lower)) {
-			resultLowerLimit = highBlockLower;
-			resultUpperLimit = highBlockUpper;
-		}
+	public static int toIpv4Cidr(long lower, long upper, CidrSink sink) {
+		int count = 0;
 
-		if (upper.isGreaterEqual(midBlockUpper) && midBlockLower.isGreaterEqual(lower)) {
-			resultLowerLimit = midBlockLower;
-			resultUpperLimit = midBlockUpper;
-		}
-		
-		if (upper.isGreaterEqual(lowBlockUpper) && lowBlockLower.isGreaterEqual(lower)) {
-			resultLowerLimit = lowBlockLower;
-			resultUpperLimit = lowBlockUpper;
+		while (lower <= upper) {
+			// the largest block starting at lower ...
+			int alignment = lower == 0l ? 32 : Math.min(32, Long.numberOfTrailingZeros(lower));
+			// ... that does not exceed upper
+			int fit = 63 - Long.numberOfLeadingZeros(upper - lower + 1);
+			int n = Math.min(alignment, fit);
+
+			sink.accept(0l, lower, 32 - n);
+			count++;
+
+			lower += 1l << n;
 		}
 
-		if (resultUpperLimit == null & resultLowerLimit == null) {
-			allRanges = IpRange.getCidr(n + 1, lower, upper, allRanges);
-		} else {
-			try {
-				allRanges = IpRange.getCidr(n, lower, resultLowerLimit.prev(), allRanges);
-				allRanges = IpRange.getCidr(n, resultUpperLimit.next(), upper, allRanges);
-			} catch (InvalidIpAddressException e) {
-				// noting to do
+		return count;
+	}
+
+	public static int toIpv6Cidr(long lowerHigh, long lowerLow, long upperHigh, long upperLow, CidrSink sink) {
+		int count = 0;
+
+		while (true) {
+			int alignment;
+			if (lowerLow != 0l) {
+				alignment = Long.numberOfTrailingZeros(lowerLow);
+			} else if (lowerHigh != 0l) {
+				alignment = 64 + Long.numberOfTrailingZeros(lowerHigh);
+			} else {
+				alignment = 128;
+			}
+
+			// number of addresses from lower to upper (upper - lower + 1)
+			long sizeLow = upperLow - lowerLow;
+			long sizeHigh = upperHigh - lowerHigh - (Long.compareUnsigned(upperLow, lowerLow) < 0 ? 1 : 0);
+			sizeLow++;
+			if (sizeLow == 0l) {
+				sizeHigh++;
+			}
+
+			int fit;
+			if (sizeHigh != 0l) {
+				fit = 127 - Long.numberOfLeadingZeros(sizeHigh);
+			} else if (sizeLow != 0l) {
+				fit = 63 - Long.numberOfLeadingZeros(sizeLow);
+			} else {
+				// the range covers the whole address space
+				fit = 128;
+			}
+
+			int n = Math.min(alignment, fit);
+
+			sink.accept(lowerHigh, lowerLow, 128 - n);
+			count++;
+
+			if (n == 128) {
+				break;
+			}
+
+			// lower += 2^n
+			if (n >= 64) {
+				lowerHigh += 1l << (n - 64);
+			} else {
+				long next = lowerLow + (1l << n);
+				if (Long.compareUnsigned(next, lowerLow) < 0) {
+					lowerHigh++;
+				}
+				lowerLow = next;
+			}
+
+			// stop at the end of the address space or behind upper
+			if (lowerHigh == 0l && lowerLow == 0l) {
+				break;
+			}
+			if (Long.compareUnsigned(lowerHigh, upperHigh) > 0
+					|| (lowerHigh == upperHigh && Long.compareUnsigned(lowerLow, upperLow) > 0)) {
+				break;
 			}
-			IpRange cidrRange = new IpRange(resultLowerLimit, resultUpperLimit, n);
-			allRanges.put(resultLowerLimit, cidrRange);
 		}
 
-		return allRanges;
+		return count;
 	}
 	
+	public StringBuilder appendTo(StringBuilder sb) {
+		lowerLimit.appendTo(sb).append('-');
+		return upperLimit.appendTo(sb);
+	}
+
 	public String toString() {
-		return lowerLimit.toString() +"-"+upperLimit.toString();
+		return appendTo(new StringBuilder()).toString();
 	}
 	
 	public String toInputString() {
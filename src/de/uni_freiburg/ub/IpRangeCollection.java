@@ -1,6 +1,6 @@
 package de.uni_freiburg.ub;
 
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -11,71 +11,146 @@ public class IpRangeCollection {
 
 	List<IpRange> ipRangeCollection;
 
+	// only used if the collection is kept compacted on every add
+	private RangeList ipv4Ranges;
+	private RangeList ipv6Ranges;
+	private boolean modified = false;
+
 	public IpRangeCollection() {
-		this.ipRangeCollection = new LinkedList<IpRange>();
+		this.ipRangeCollection = new ArrayList<IpRange>();
 	}
 
-	public IpRangeCollection add(IpRange ipRange) throws InvalidIpAddressException {
-		this.ipRangeCollection.add(ipRange);
-		return this;
+	// if keepCompacted is set, every added range is merged into the sorted
+	// and compacted ranges of the collection right away
+	public IpRangeCollection(boolean keepCompacted) {
+		this();
+		if (keepCompacted) {
+			ipv4Ranges = new RangeList(false, 16);
+			ipv6Ranges = new RangeList(true, 16);
+		}
 	}
 
-	public IpRangeCollection compact() throws InvalidIpAddressException, InvalidRangeException {
+	// a kept compacted collection over the given compacted lists
+	static IpRangeCollection of(RangeList ipv4Ranges, RangeList ipv6Ranges) {
 		IpRangeCollection result = new IpRangeCollection();
-		IpRange currentRange;
-
-		ipRangeCollection.sort(new Comparator<IpRange>() {
-			@Override
-			public int compare(IpRange o1, IpRange o2) {
-				return o1.getLowerLimit().compareTo(o2.lowerLimit);
-			}
-		});
+		result.ipv4Ranges = ipv4Ranges;
+		result.ipv6Ranges = ipv6Ranges;
+		result.modified = true;
+		return result;
+	}
 
-		if (ipRangeCollection.isEmpty()) {
+	public IpRangeCollection add(IpRange ipRange) throws InvalidIpAddressException {
+		if (ipv4Ranges == null) {
+			this.ipRangeCollection.add(ipRange);
 			return this;
+		}
+
+		if (ipRange.lowerLimit instanceof Ipv4Address) {
+			ipv4Ranges.insert(0l, ((Ipv4Address) ipRange.lowerLimit).longValue(), 0l,
+					((Ipv4Address) ipRange.upperLimit).longValue());
 		} else {
-			IpRange lowestRange = ipRangeCollection.get(0);
-			currentRange = lowestRange;
+			Ipv6Address lower = (Ipv6Address) ipRange.lowerLimit;
+			Ipv6Address upper = (Ipv6Address) ipRange.upperLimit;
+			ipv6Ranges.insert(lower.highBits(), lower.lowBits(), upper.highBits(), upper.lowBits());
 		}
+		modified = true;
+		return this;
+	}
+
+	public boolean isKeptCompacted() {
+		return ipv4Ranges != null;
+	}
+
+	public int size() {
+		return ranges().size();
+	}
 
-		// the ranges in ipRangeCollection are sorted by their lowerLimits !!
-		for (IpRange range : ipRangeCollection) {
-			if (currentRange.upperLimit.next().isGreaterEqual(range.lowerLimit)) {
-				// the ranges are overlapping or touching each other
-				if (range.upperLimit.isLesserEqual(currentRange.upperLimit)) {
-					// range is a real subrange of currentRange
-				} else {
-					// range extends currentRange
-					currentRange.upperLimit = range.upperLimit;
-				}
-			} else {
-				// there is a gap between range and current range
-				// => currentRange has max size
-				result.add(new IpRange(currentRange.lowerLimit, currentRange.upperLimit));
-				// walk on with range as new current range
-				currentRange = range;
-			}
+	// the ranges of the collection, in keep compacted mode they are created
+	// from the primitive bounds after a modification
+	List<IpRange> ranges() {
+		if (modified) {
+			ipRangeCollection.clear();
+			ipv4Ranges.addTo(ipRangeCollection);
+			ipv6Ranges.addTo(ipRangeCollection);
+			modified = false;
 		}
+		return ipRangeCollection;
+	}
 
-		result.add(new IpRange(currentRange.lowerLimit, currentRange.upperLimit));
+	// returns a new collection with all overlapping or touching ranges
+	// merged, sorted by ip version and lower limit, the ranges of this
+	// collection are not modified
+	public IpRangeCollection compact() throws InvalidIpAddressException, InvalidRangeException {
+		long start = IpMetrics.start(IpMetrics.Timer.COMPACT);
+		IpRangeCollection result = new IpRangeCollection();
+		toRangeList(false).addTo(result.ipRangeCollection);
+		toRangeList(true).addTo(result.ipRangeCollection);
+		IpMetrics.stop(IpMetrics.Timer.COMPACT, start);
+		return result;
+	}
+
+	// set operations, the results are new compacted collections
+	public IpRangeCollection union(IpRangeCollection other) {
+		IpRangeCollection result = new IpRangeCollection();
+		toRangeList(false).union(other.toRangeList(false)).addTo(result.ipRangeCollection);
+		toRangeList(true).union(other.toRangeList(true)).addTo(result.ipRangeCollection);
+		return result;
+	}
+
+	public IpRangeCollection intersect(IpRangeCollection other) {
+		IpRangeCollection result = new IpRangeCollection();
+		toRangeList(false).intersect(other.toRangeList(false)).addTo(result.ipRangeCollection);
+		toRangeList(true).intersect(other.toRangeList(true)).addTo(result.ipRangeCollection);
+		return result;
+	}
+
+	public IpRangeCollection subtract(IpRangeCollection other) {
+		IpRangeCollection result = new IpRangeCollection();
+		toRangeList(false).subtract(other.toRangeList(false)).addTo(result.ipRangeCollection);
+		toRangeList(true).subtract(other.toRangeList(true)).addTo(result.ipRangeCollection);
+		return result;
+	}
+
+	// all addresses of the ip version ("v4" or "v6", see IpRange.getIpVersion)
+	// not contained in this collection
+	public IpRangeCollection complement(String ipVersion) {
+		boolean ipv6;
+		if ("v4".equals(ipVersion)) {
+			ipv6 = false;
+		} else if ("v6".equals(ipVersion)) {
+			ipv6 = true;
+		} else {
+			throw new IllegalArgumentException(ipVersion);
+		}
 
+		IpRangeCollection result = new IpRangeCollection();
+		toRangeList(ipv6).complement().addTo(result.ipRangeCollection);
 		return result;
 	}
 
+	RangeList toRangeList(boolean ipv6) {
+		if (ipv4Ranges != null) {
+			return (ipv6 ? ipv6Ranges : ipv4Ranges).copy();
+		}
+		return RangeList.of(ipRangeCollection, ipv6);
+	}
+
 	public List<String> toCidrStrings() {
+		long start = IpMetrics.start(IpMetrics.Timer.CIDR_CONVERSION);
 		List<String> cidr = new LinkedList<String>();
 
-		for (IpRange ipRange : ipRangeCollection) {
+		for (IpRange ipRange : ranges()) {
 			cidr.addAll(ipRange.toCidr());
 		}
+		IpMetrics.stop(IpMetrics.Timer.CIDR_CONVERSION, start);
 		return cidr;
 	}
 	
 	public List<String> toRangeStrings() {
 		List<String> ranges = new LinkedList<String>();
 		
-		for (IpRange ipRange : ipRangeCollection) {
-			ranges.add(ipRange.lowerLimit.toString() + "-" + ipRange.upperLimit.toString());
+		for (IpRange ipRange : ranges()) {
+			ranges.add(ipRange.toRangeString());
 		}
 		return ranges;
 	}
@@ -83,7 +158,7 @@ public class IpRangeCollection {
 	public List<String> toInputStrings() {
 		List<String> ranges = new LinkedList<String>();
 		
-		for (IpRange ipRange : ipRangeCollection) {
+		for (IpRange ipRange : ranges()) {
 			ranges.add(ipRange.toInputString());
 		}
 		return ranges;
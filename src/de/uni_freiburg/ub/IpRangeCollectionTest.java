@@ -1,6 +1,7 @@
 package de.uni_freiburg.ub;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 //import org.junit.jupiter.api.Test;
 
@@ -91,6 +92,129 @@ public class IpRangeCollectionTest {
 		assertArrayEquals(new String[] {"132.230.25.0/25", "132.230.26.128/25", "132.230.30.0/25", "132.230.30.128/31", "132.230.30.130/32"}, ipRangeCollection.compact().toCidrStrings().toArray());
 	}
 
+	@Test
+	public void testCompactKeepsInput() throws Exception {
+		IpRange first = IpRange.parseIpRange("132.230.25.0-132.230.25.127");
+		IpRange second = IpRange.parseIpRange("132.230.25.100-132.230.25.255");
+
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(second);
+		ipRangeCollection.add(first);
+		ipRangeCollection.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88fe/127"));
+
+		assertArrayEquals(new String[] { "132.230.25.0-132.230.25.255",
+				"4001:4860:4860:0000:0000:0000:0000:88fe-4001:4860:4860:0000:0000:0000:0000:88ff" },
+				ipRangeCollection.compact().toRangeStrings().toArray());
+
+		assertEquals("132.230.25.0-132.230.25.127", first.toRangeString());
+		assertEquals("132.230.25.100-132.230.25.255", second.toRangeString());
+		assertEquals(3, ipRangeCollection.size());
+
+		assertEquals(0, new IpRangeCollection().compact().size());
+	}
+
+	@Test
+	public void testKeepCompacted() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection(true);
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.30.0-132.230.30.130"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipRangeCollection.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88fe/128"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.27.*"));
+		assertArrayEquals(new String[] { "132.230.25.0-132.230.25.127", "132.230.27.0-132.230.27.255",
+				"132.230.30.0-132.230.30.130",
+				"4001:4860:4860:0000:0000:0000:0000:88fe-4001:4860:4860:0000:0000:0000:0000:88fe" },
+				ipRangeCollection.toRangeStrings().toArray());
+
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.128-132.230.27.10"));
+		ipRangeCollection.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88ff/128"));
+		assertArrayEquals(new String[] { "132.230.25.0-132.230.27.255", "132.230.30.0-132.230.30.130",
+				"4001:4860:4860:0000:0000:0000:0000:88fe-4001:4860:4860:0000:0000:0000:0000:88ff" },
+				ipRangeCollection.toRangeStrings().toArray());
+
+		ipRangeCollection.add(IpRange.parseIpRange("132.0.0.0/8"));
+		assertArrayEquals(new String[] { "132.0.0.0/8", "4001:4860:4860:0000:0000:0000:0000:88fe/127" },
+				ipRangeCollection.toCidrStrings().toArray());
+		assertEquals(2, ipRangeCollection.size());
+	}
+
+	@Test
+	public void testUnion() throws Exception {
+		IpRangeCollection a = new IpRangeCollection();
+		a.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		a.add(IpRange.parseIpRange("132.230.30.0-132.230.30.130"));
+		a.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88fe/127"));
+
+		IpRangeCollection b = new IpRangeCollection();
+		b.add(IpRange.parseIpRange("132.230.25.128-132.230.25.255"));
+		b.add(IpRange.parseIpRange("132.230.30.100-132.230.31.0"));
+		b.add(IpRange.parseIpRange("10.0.0.0/8"));
+		b.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:8900/128"));
+
+		assertArrayEquals(new String[] { "10.0.0.0-10.255.255.255", "132.230.25.0-132.230.25.255",
+				"132.230.30.0-132.230.31.0",
+				"4001:4860:4860:0000:0000:0000:0000:88fe-4001:4860:4860:0000:0000:0000:0000:8900" },
+				a.union(b).toRangeStrings().toArray());
+	}
+
+	@Test
+	public void testIntersect() throws Exception {
+		IpRangeCollection a = new IpRangeCollection();
+		a.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		a.add(IpRange.parseIpRange("132.230.30.0-132.230.30.130"));
+		a.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:0/64"));
+
+		IpRangeCollection b = new IpRangeCollection();
+		b.add(IpRange.parseIpRange("132.230.25.100-132.230.30.0"));
+		b.add(IpRange.parseIpRange("132.230.30.100-132.230.30.110"));
+		b.add(IpRange.parseIpRange("132.230.30.120-132.230.31.0"));
+		b.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:8900/120"));
+
+		assertArrayEquals(new String[] { "132.230.25.100-132.230.25.127", "132.230.30.0-132.230.30.0",
+				"132.230.30.100-132.230.30.110", "132.230.30.120-132.230.30.130",
+				"4001:4860:4860:0000:0000:0000:0000:8900-4001:4860:4860:0000:0000:0000:0000:89ff" },
+				a.intersect(b).toRangeStrings().toArray());
+	}
+
+	@Test
+	public void testSubtract() throws Exception {
+		IpRangeCollection a = new IpRangeCollection();
+		a.add(IpRange.parseIpRange("132.230.0.0/16"));
+		a.add(IpRange.parseIpRange("134.0.0.0/24"));
+		a.add(IpRange.parseIpRange("134.0.1.0/24"));
+
+		IpRangeCollection b = new IpRangeCollection();
+		b.add(IpRange.parseIpRange("132.229.0.0-132.230.0.255"));
+		b.add(IpRange.parseIpRange("132.230.25.*"));
+		b.add(IpRange.parseIpRange("132.230.30.5"));
+		b.add(IpRange.parseIpRange("132.230.255.0-134.0.0.10"));
+
+		assertArrayEquals(new String[] { "132.230.1.0-132.230.24.255", "132.230.26.0-132.230.30.4",
+				"132.230.30.6-132.230.254.255", "134.0.0.11-134.0.1.255" },
+				a.subtract(b).toRangeStrings().toArray());
+
+		assertArrayEquals(new String[] {}, a.subtract(a).toRangeStrings().toArray());
+	}
+
+	@Test
+	public void testComplement() throws Exception {
+		IpRangeCollection a = new IpRangeCollection();
+		a.add(IpRange.parseIpRange("0.0.0.0/8"));
+		a.add(IpRange.parseIpRange("132.230.0.0/16"));
+
+		assertArrayEquals(new String[] { "1.0.0.0-132.229.255.255", "132.231.0.0-255.255.255.255" },
+				a.complement("v4").toRangeStrings().toArray());
+		assertArrayEquals(new String[] { "0.0.0.0-255.255.255.255" },
+				new IpRangeCollection().complement("v4").toRangeStrings().toArray());
+
+		a.add(IpRange.parseIpRange("8000::/1"));
+		assertArrayEquals(
+				new String[] { "0000:0000:0000:0000:0000:0000:0000:0000-7fff:ffff:ffff:ffff:ffff:ffff:ffff:ffff" },
+				a.complement("v6").toRangeStrings().toArray());
+		assertArrayEquals(
+				new String[] { "8000:0000:0000:0000:0000:0000:0000:0000-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff" },
+				a.complement("v6").complement("v6").toRangeStrings().toArray());
+	}
+
 	@Test
 	public void testToRangeString() throws Exception {
 		IpRangeCollection ipRangeCollection = new IpRangeCollection();
@@ -0,0 +1,364 @@
+package de.uni_freiburg.ub;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+import de.uni_freiburg.ub.Exception.InvalidFormatException;
+
+// binary file of a compacted IpRangeCollection which is queried directly on
+// the memory mapped file, opening the file does not create any objects per
+// range
+//
+// layout (big endian):
+// header, 24 bytes
+//   int   magic "IPRC"
+//   short version
+//   short flags, FLAG_PAYLOAD if the payload column is present
+//   int   number of ipv4 ranges
+//   int   number of ipv6 ranges
+//   int   crc32 of all bytes behind the header
+//   int   reserved, 0
+// ipv4 ranges sorted by lower limit, 8 bytes each
+//   int   lower limit, int upper limit (unsigned)
+// ipv6 ranges sorted by lower limit, 32 bytes each
+//   long  lower high bits, long lower low bits, long upper high bits,
+//   long  upper low bits (unsigned)
+// payload column, optional, 4 bytes per range in the order of the ranges
+//   int   payload
+public class IpRangeFile {
+
+	public static final int MAGIC = 0x49505243;
+	public static final short VERSION = 1;
+	public static final short FLAG_PAYLOAD = 1;
+
+	static final int HEADER_SIZE = 24;
+	private static final int IPV4_SIZE = 8;
+	private static final int IPV6_SIZE = 32;
+
+	private final ByteBuffer buffer;
+	private final int ipv4Size;
+	private final int ipv6Size;
+	private final int ipv6Offset;
+	private final int payloadOffset;
+
+	private IpRangeFile(ByteBuffer buffer, int ipv4Size, int ipv6Size, boolean hasPayloads) {
+		this.buffer = buffer;
+		this.ipv4Size = ipv4Size;
+		this.ipv6Size = ipv6Size;
+		this.ipv6Offset = HEADER_SIZE + ipv4Size * IPV4_SIZE;
+		this.payloadOffset = hasPayloads ? ipv6Offset + ipv6Size * IPV6_SIZE : -1;
+	}
+
+	public static void write(IpRangeCollection ipRangeCollection, Path path) throws IOException {
+		write(ipRangeCollection, null, path);
+	}
+
+	// writes the compacted ranges of the collection, if payload is given
+	// it is called for every compacted range
+	public static void write(IpRangeCollection ipRangeCollection, ToIntFunction<IpRange> payload, Path path)
+			throws IOException {
+		RangeList ipv4Ranges = ipRangeCollection.toRangeList(false).compact();
+		RangeList ipv6Ranges = ipRangeCollection.toRangeList(true).compact();
+
+		// the file is written next to the target and moved over it, readers
+		// which still have the old file mapped keep seeing the old file and
+		// a failed write never leaves a partial file at the path
+		Path absolute = path.toAbsolutePath();
+		Path dir = absolute.getParent();
+		Path tmp = null;
+		try {
+			FileChannel channel = null;
+			while (channel == null) {
+				tmp = dir.resolve("." + absolute.getFileName() + "."
+						+ Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 1) + ".tmp");
+				try {
+					channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				} catch (FileAlreadyExistsException e) {
+				}
+			}
+			try {
+				write(ipv4Ranges, ipv6Ranges, payload, channel);
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+
+			// a new file has the default permissions, a replaced file keeps
+			// its permissions
+			PosixFileAttributeView target = Files.getFileAttributeView(absolute, PosixFileAttributeView.class);
+			if (target != null && Files.exists(absolute)) {
+				Files.getFileAttributeView(tmp, PosixFileAttributeView.class)
+						.setPermissions(target.readAttributes().permissions());
+			}
+
+			Files.move(tmp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			tmp = null;
+			forceDirectory(dir);
+		} finally {
+			if (tmp != null) {
+				Files.deleteIfExists(tmp);
+			}
+		}
+	}
+
+	// makes the rename durable, directories can not be opened on all
+	// platforms, there the rename is left to the file system
+	private static void forceDirectory(Path dir) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(dir, StandardOpenOption.READ);
+		} catch (IOException e) {
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void write(RangeList ipv4Ranges, RangeList ipv6Ranges, ToIntFunction<IpRange> payload,
+			FileChannel channel) throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer out = ByteBuffer.allocateDirect(1 << 16);
+
+		channel.position(HEADER_SIZE);
+
+		for (int i = 0; i < ipv4Ranges.size; i++) {
+			flushIfFull(out, IPV4_SIZE, channel, crc);
+			out.putInt((int) ipv4Ranges.lowerLow[i]);
+			out.putInt((int) ipv4Ranges.upperLow[i]);
+		}
+		for (int i = 0; i < ipv6Ranges.size; i++) {
+			flushIfFull(out, IPV6_SIZE, channel, crc);
+			out.putLong(ipv6Ranges.lowerHigh[i]);
+			out.putLong(ipv6Ranges.lowerLow[i]);
+			out.putLong(ipv6Ranges.upperHigh[i]);
+			out.putLong(ipv6Ranges.upperLow[i]);
+		}
+		if (payload != null) {
+			for (RangeList ranges : new RangeList[] { ipv4Ranges, ipv6Ranges }) {
+				for (int i = 0; i < ranges.size; i++) {
+					flushIfFull(out, 4, channel, crc);
+					out.putInt(payload.applyAsInt(ranges.getIpRange(i)));
+				}
+			}
+		}
+		flushIfFull(out, out.capacity(), channel, crc);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort(payload != null ? FLAG_PAYLOAD : 0);
+		header.putInt(ipv4Ranges.size);
+		header.putInt(ipv6Ranges.size);
+		header.putInt((int) crc.getValue());
+		header.putInt(0);
+		header.flip();
+		channel.position(0);
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+	}
+
+	// writes the buffer if there is no room for the next bytes
+	private static void flushIfFull(ByteBuffer out, int bytes, FileChannel channel, CRC32 crc) throws IOException {
+		if (out.remaining() >= bytes) {
+			return;
+		}
+		out.flip();
+		crc.update(out.duplicate());
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	public static IpRangeFile open(Path path) throws IOException, InvalidFormatException {
+		return open(path, true);
+	}
+
+	// maps the file, verifying the checksum reads the whole file, without
+	// it only the pages touched by queries are loaded
+	public static IpRangeFile open(Path path, boolean verifyChecksum) throws IOException, InvalidFormatException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new InvalidFormatException();
+			}
+			return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), verifyChecksum);
+		}
+	}
+
+	// reads the format from a buffer starting at its position
+	public static IpRangeFile wrap(ByteBuffer buffer, boolean verifyChecksum) throws InvalidFormatException {
+		ByteBuffer data = buffer.slice();
+		if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getShort(4) != VERSION) {
+			throw new InvalidFormatException();
+		}
+
+		boolean hasPayloads = (data.getShort(6) & FLAG_PAYLOAD) != 0;
+		long ipv4Size = data.getInt(8);
+		long ipv6Size = data.getInt(12);
+		long size = HEADER_SIZE + ipv4Size * IPV4_SIZE + ipv6Size * IPV6_SIZE
+				+ (hasPayloads ? (ipv4Size + ipv6Size) * 4 : 0);
+		if (ipv4Size < 0 || ipv6Size < 0 || size != data.limit()) {
+			throw new InvalidFormatException();
+		}
+
+		if (verifyChecksum) {
+			ByteBuffer body = data.duplicate();
+			body.position(HEADER_SIZE);
+			CRC32 crc = new CRC32();
+			crc.update(body);
+			if ((int) crc.getValue() != data.getInt(16)) {
+				throw new InvalidFormatException();
+			}
+		}
+
+		return new IpRangeFile(data, (int) ipv4Size, (int) ipv6Size, hasPayloads);
+	}
+
+	// returns the position of the range containing the address or -1
+	public int indexOfIpv4(long bits) {
+		int low = 0;
+		int high = ipv4Size - 1;
+
+		// find the last range whose lower limit is lesser or equal than bits
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (ipv4Lower(mid) <= bits) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (high >= 0 && bits <= ipv4Upper(high)) {
+			return high;
+		}
+		return -1;
+	}
+
+	// returns the position of the range containing the address or -1, the
+	// ipv6 ranges follow the ipv4 ranges
+	public int indexOfIpv6(long highBits, long lowBits) {
+		int low = 0;
+		int high = ipv6Size - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int offset = ipv6Offset + mid * IPV6_SIZE;
+			if (RangeList.compare(buffer.getLong(offset), buffer.getLong(offset + 8), highBits, lowBits) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (high >= 0) {
+			int offset = ipv6Offset + high * IPV6_SIZE;
+			if (RangeList.compare(highBits, lowBits, buffer.getLong(offset + 16), buffer.getLong(offset + 24)) <= 0) {
+				return ipv4Size + high;
+			}
+		}
+		return -1;
+	}
+
+	public int indexOf(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv4Address) {
+			return indexOfIpv4(((Ipv4Address) ipAddr).longValue());
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return indexOfIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits());
+	}
+
+	public boolean contains(IpAddress ipAddr) {
+		return indexOf(ipAddr) >= 0;
+	}
+
+	public boolean containsIpv4(long bits) {
+		return indexOfIpv4(bits) >= 0;
+	}
+
+	public boolean containsIpv6(long highBits, long lowBits) {
+		return indexOfIpv6(highBits, lowBits) >= 0;
+	}
+
+	// returns the range containing the address or null
+	public IpRange lookup(IpAddress ipAddr) {
+		int idx = indexOf(ipAddr);
+		return idx < 0 ? null : getIpRange(idx);
+	}
+
+	// returns the payload of the range containing the address or
+	// defaultValue
+	public int lookupPayload(IpAddress ipAddr, int defaultValue) {
+		int idx = indexOf(ipAddr);
+		return idx < 0 ? defaultValue : getPayload(idx);
+	}
+
+	public IpRange getIpRange(int idx) {
+		if (idx < ipv4Size) {
+			return new IpRange(new Ipv4Address(ipv4Lower(idx)), new Ipv4Address(ipv4Upper(idx)));
+		}
+		int offset = ipv6Offset + (idx - ipv4Size) * IPV6_SIZE;
+		return new IpRange(new Ipv6Address(buffer.getLong(offset), buffer.getLong(offset + 8)),
+				new Ipv6Address(buffer.getLong(offset + 16), buffer.getLong(offset + 24)));
+	}
+
+	public int getPayload(int idx) {
+		if (payloadOffset < 0) {
+			throw new IllegalStateException("the file has no payload column");
+		}
+		return buffer.getInt(payloadOffset + idx * 4);
+	}
+
+	public boolean hasPayloads() {
+		return payloadOffset >= 0;
+	}
+
+	public int ipv4Size() {
+		return ipv4Size;
+	}
+
+	public int ipv6Size() {
+		return ipv6Size;
+	}
+
+	public int size() {
+		return ipv4Size + ipv6Size;
+	}
+
+	// reads all ranges into a kept compacted collection
+	public IpRangeCollection toIpRangeCollection() {
+		RangeList ipv4Ranges = new RangeList(false, ipv4Size);
+		for (int i = 0; i < ipv4Size; i++) {
+			ipv4Ranges.addUnsorted(0l, ipv4Lower(i), 0l, ipv4Upper(i));
+		}
+		RangeList ipv6Ranges = new RangeList(true, ipv6Size);
+		for (int i = 0; i < ipv6Size; i++) {
+			int offset = ipv6Offset + i * IPV6_SIZE;
+			ipv6Ranges.addUnsorted(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+					buffer.getLong(offset + 24));
+		}
+		return IpRangeCollection.of(ipv4Ranges, ipv6Ranges);
+	}
+
+	private long ipv4Lower(int idx) {
+		return buffer.getInt(HEADER_SIZE + idx * IPV4_SIZE) & 0xFFFFFFFFl;
+	}
+
+	private long ipv4Upper(int idx) {
+		return buffer.getInt(HEADER_SIZE + idx * IPV4_SIZE + 4) & 0xFFFFFFFFl;
+	}
+}
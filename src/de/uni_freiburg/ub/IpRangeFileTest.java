@@ -0,0 +1,161 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.function.ToIntFunction;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import de.uni_freiburg.ub.Exception.InvalidFormatException;
+
+public class IpRangeFileTest {
+
+	private static IpRangeCollection ranges() {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.30.*"));
+		ipRangeCollection.add(IpRange.parseIpRange("10.0.0.0/8"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.100-132.230.25.200"));
+		ipRangeCollection.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88fe/127"));
+		ipRangeCollection.add(IpRange.parseIpRange("ffff::/16"));
+		return ipRangeCollection;
+	}
+
+	@Test
+	public void testWriteAndOpen() throws Exception {
+		Path path = Files.createTempFile("ranges", ".iprc");
+		try {
+			IpRangeFile.write(ranges(), new ToIntFunction<IpRange>() {
+				@Override
+				public int applyAsInt(IpRange range) {
+					return range.toRangeString().length();
+				}
+			}, path);
+
+			IpRangeFile file = IpRangeFile.open(path);
+			assertEquals(3, file.ipv4Size());
+			assertEquals(2, file.ipv6Size());
+			assertTrue(file.hasPayloads());
+			assertEquals(24 + 3 * 8 + 2 * 32 + 5 * 4, Files.size(path));
+
+			assertTrue(file.contains(IpAddress.parseIpAddress("132.230.25.200")));
+			assertFalse(file.contains(IpAddress.parseIpAddress("132.230.25.201")));
+			assertTrue(file.containsIpv4(0x0A000000l));
+			assertFalse(file.containsIpv4(0xFFFFFFFFl));
+			assertTrue(file.contains(IpAddress.parseIpAddress("4001:4860:4860::88ff")));
+			assertTrue(file.contains(IpAddress.parseIpAddress("ffff:ffff::1")));
+			assertFalse(file.contains(IpAddress.parseIpAddress("fffe:ffff::1")));
+
+			assertEquals("132.230.25.0-132.230.25.200",
+					file.lookup(IpAddress.parseIpAddress("132.230.25.7")).toRangeString());
+			assertNull(file.lookup(IpAddress.parseIpAddress("::1")));
+			assertEquals("132.230.25.0-132.230.25.200".length(),
+					file.lookupPayload(IpAddress.parseIpAddress("132.230.25.7"), -1));
+			assertEquals(-1, file.lookupPayload(IpAddress.parseIpAddress("::1"), -1));
+
+			assertEquals(ranges().compact().toRangeStrings(), file.toIpRangeCollection().toRangeStrings());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testRewriteWhileMapped() throws Exception {
+		Path dir = Files.createTempDirectory("ranges");
+		Path path = dir.resolve("ranges.iprc");
+		try {
+			IpRangeFile.write(ranges(), path);
+			IpRangeFile file = IpRangeFile.open(path);
+
+			// the mapped file is replaced, not truncated under the reader
+			IpRangeCollection smaller = new IpRangeCollection();
+			smaller.add(IpRange.parseIpRange("192.168.0.0/16"));
+			IpRangeFile.write(smaller, path);
+			assertEquals(5, file.size());
+			assertTrue(file.contains(IpAddress.parseIpAddress("ffff:ffff::1")));
+			assertEquals(ranges().compact().toRangeStrings(), file.toIpRangeCollection().toRangeStrings());
+
+			IpRangeFile reloaded = IpRangeFile.open(path);
+			assertEquals(1, reloaded.size());
+			assertTrue(reloaded.contains(IpAddress.parseIpAddress("192.168.1.1")));
+
+			// no temporary files are left behind
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+				int count = 0;
+				for (Path p : files) {
+					assertEquals(path, p);
+					count++;
+				}
+				assertEquals(1, count);
+			}
+		} finally {
+			Files.deleteIfExists(path);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testRewriteKeepsPermissions() throws Exception {
+		Path dir = Files.createTempDirectory("ranges");
+		Assume.assumeTrue(Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null);
+		Path path = dir.resolve("ranges.iprc");
+		Path other = dir.resolve("other");
+		try {
+			// a new file gets the default permissions like any other new file
+			IpRangeFile.write(ranges(), path);
+			Files.createFile(other);
+			assertEquals(Files.getPosixFilePermissions(other), Files.getPosixFilePermissions(path));
+
+			for (String permissions : new String[] { "rw-r--r--", "rw-r-----", "rw-rw-r--" }) {
+				Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+				IpRangeFile.write(ranges(), path);
+				assertEquals(permissions, PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+			}
+		} finally {
+			Files.deleteIfExists(path);
+			Files.deleteIfExists(other);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testInvalidFile() throws Exception {
+		Path path = Files.createTempFile("ranges", ".iprc");
+		try {
+			IpRangeFile.write(ranges(), path);
+			byte[] bytes = Files.readAllBytes(path);
+			assertFalse(IpRangeFile.wrap(ByteBuffer.wrap(bytes), true).hasPayloads());
+
+			// a flipped bit in the ranges is only found with the checksum
+			bytes[30] ^= 1;
+			IpRangeFile.wrap(ByteBuffer.wrap(bytes), false);
+			assertInvalidFormatExceptionIsThrown(bytes);
+
+			bytes[30] ^= 1;
+			bytes[0] = 0;
+			assertInvalidFormatExceptionIsThrown(bytes);
+			assertInvalidFormatExceptionIsThrown(new byte[10]);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private void assertInvalidFormatExceptionIsThrown(byte[] bytes) {
+		try {
+			IpRangeFile.wrap(ByteBuffer.wrap(bytes), true);
+			Assert.fail("InvalidFormatException should be thrown");
+		} catch (InvalidFormatException e) {
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package de.uni_freiburg.ub;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
+
+// frozen, query optimized view of an IpRangeCollection
+// overlapping and touching ranges are merged, the bounds are kept in sorted
+// primitive arrays so that a lookup is a binary search without allocation
+public class IpRangeIndex {
+
+	private static final Comparator<IpRange> LOWER_LIMIT_ORDER = new Comparator<IpRange>() {
+		@Override
+		public int compare(IpRange o1, IpRange o2) {
+			return o1.lowerLimit.compareTo(o2.lowerLimit);
+		}
+	};
+
+	private long[] ipv4Lower;
+	private long[] ipv4Upper;
+	private IpRange[] ipv4Ranges;
+	private int ipv4Size;
+
+	private long[] ipv6LowerHigh;
+	private long[] ipv6LowerLow;
+	private long[] ipv6UpperHigh;
+	private long[] ipv6UpperLow;
+	private IpRange[] ipv6Ranges;
+	private int ipv6Size;
+
+	public IpRangeIndex(IpRangeCollection ipRangeCollection) {
+		List<IpRange> ipv4 = new ArrayList<IpRange>();
+		List<IpRange> ipv6 = new ArrayList<IpRange>();
+
+		for (IpRange range : ipRangeCollection.ranges()) {
+			if (range.lowerLimit instanceof Ipv4Address) {
+				ipv4.add(range);
+			} else {
+				ipv6.add(range);
+			}
+		}
+
+		ipv4.sort(LOWER_LIMIT_ORDER);
+		ipv6.sort(LOWER_LIMIT_ORDER);
+
+		buildIpv4(ipv4);
+		buildIpv6(ipv6);
+	}
+
+	private void buildIpv4(List<IpRange> sorted) {
+		ipv4Lower = new long[sorted.size()];
+		ipv4Upper = new long[sorted.size()];
+
+		// the ranges are sorted by their lower limits, so a range either
+		// extends the last merged range or starts a new one
+		int n = -1;
+		for (IpRange range : sorted) {
+			long lower = ((Ipv4Address) range.lowerLimit).longValue();
+			long upper = ((Ipv4Address) range.upperLimit).longValue();
+			if (n >= 0 && lower <= ipv4Upper[n] + 1) {
+				if (upper > ipv4Upper[n]) {
+					ipv4Upper[n] = upper;
+				}
+			} else {
+				n++;
+				ipv4Lower[n] = lower;
+				ipv4Upper[n] = upper;
+			}
+		}
+		ipv4Size = n + 1;
+
+		ipv4Ranges = new IpRange[ipv4Size];
+		for (int i = 0; i < ipv4Size; i++) {
+			ipv4Ranges[i] = new IpRange(new Ipv4Address(ipv4Lower[i]), new Ipv4Address(ipv4Upper[i]));
+		}
+	}
+
+	private void buildIpv6(List<IpRange> sorted) {
+		ipv6LowerHigh = new long[sorted.size()];
+		ipv6LowerLow = new long[sorted.size()];
+		ipv6UpperHigh = new long[sorted.size()];
+		ipv6UpperLow = new long[sorted.size()];
+
+		int n = -1;
+		for (IpRange range : sorted) {
+			Ipv6Address lowerLimit = (Ipv6Address) range.lowerLimit;
+			Ipv6Address upperLimit = (Ipv6Address) range.upperLimit;
+			long lowerHigh = lowerLimit.highBits();
+			long lowerLow = lowerLimit.lowBits();
+			long upperHigh = upperLimit.highBits();
+			long upperLow = upperLimit.lowBits();
+
+			if (n >= 0 && isAdjacentOrOverlapping(ipv6UpperHigh[n], ipv6UpperLow[n], lowerHigh, lowerLow)) {
+				if (compare(upperHigh, upperLow, ipv6UpperHigh[n], ipv6UpperLow[n]) > 0) {
+					ipv6UpperHigh[n] = upperHigh;
+					ipv6UpperLow[n] = upperLow;
+				}
+			} else {
+				n++;
+				ipv6LowerHigh[n] = lowerHigh;
+				ipv6LowerLow[n] = lowerLow;
+				ipv6UpperHigh[n] = upperHigh;
+				ipv6UpperLow[n] = upperLow;
+			}
+		}
+		ipv6Size = n + 1;
+
+		ipv6Ranges = new IpRange[ipv6Size];
+		for (int i = 0; i < ipv6Size; i++) {
+			ipv6Ranges[i] = new IpRange(new Ipv6Address(ipv6LowerHigh[i], ipv6LowerLow[i]),
+					new Ipv6Address(ipv6UpperHigh[i], ipv6UpperLow[i]));
+		}
+	}
+
+	// true if the range starting at (lowerHigh, lowerLow) overlaps or touches
+	// a range ending at (upperHigh, upperLow)
+	private static boolean isAdjacentOrOverlapping(long upperHigh, long upperLow, long lowerHigh, long lowerLow) {
+		if (compare(lowerHigh, lowerLow, upperHigh, upperLow) <= 0) {
+			return true;
+		}
+		if (upperLow == -1l) {
+			return lowerLow == 0l && lowerHigh == upperHigh + 1;
+		}
+		return lowerHigh == upperHigh && lowerLow == upperLow + 1;
+	}
+
+	private static int compare(long high1, long low1, long high2, long low2) {
+		if (high1 == high2) {
+			return Long.compareUnsigned(low1, low2);
+		}
+		return Long.compareUnsigned(high1, high2);
+	}
+
+	// returns the position of the range containing the address or -1
+	public int indexOfIpv4(long bits) {
+		int low = 0;
+		int high = ipv4Size - 1;
+
+		// find the last range whose lower limit is lesser or equal than bits
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (ipv4Lower[mid] <= bits) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (high >= 0 && bits <= ipv4Upper[high]) {
+			return high;
+		}
+		return -1;
+	}
+
+	// returns the position of the range containing the address or -1
+	public int indexOfIpv6(long highBits, long lowBits) {
+		int low = 0;
+		int high = ipv6Size - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (compare(ipv6LowerHigh[mid], ipv6LowerLow[mid], highBits, lowBits) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (high >= 0 && compare(highBits, lowBits, ipv6UpperHigh[high], ipv6UpperLow[high]) <= 0) {
+			return high;
+		}
+		return -1;
+	}
+
+	// returns the position of the range containing each address or -1, the
+	// addresses are unsigned ipv4 bits. the batch is sorted and merged with
+	// the ranges instead of searching every address on its own
+	public int[] indexOfIpv4(int[] addresses) {
+		int[] result = new int[addresses.length];
+		BatchLookup.joinIpv4(ipv4Lower, ipv4Upper, ipv4Size, addresses, 0, addresses.length, result);
+		return result;
+	}
+
+	// as indexOfIpv4(int[]), chunks of the batch are classified in the pool
+	public int[] indexOfIpv4(final int[] addresses, ForkJoinPool pool) {
+		final int[] result = new int[addresses.length];
+		BatchLookup.invoke(pool, addresses.length, new BatchLookup.Join() {
+			@Override
+			public void join(int from, int to) {
+				BatchLookup.joinIpv4(ipv4Lower, ipv4Upper, ipv4Size, addresses, from, to, result);
+			}
+		});
+		return result;
+	}
+
+	// returns the position of the range containing each address or -1, the
+	// addresses are given as pairs of high and low bits
+	public int[] indexOfIpv6(long[] addresses) {
+		checkIpv6Batch(addresses);
+		int[] result = new int[addresses.length / 2];
+		BatchLookup.joinIpv6(ipv6LowerHigh, ipv6LowerLow, ipv6UpperHigh, ipv6UpperLow, ipv6Size, addresses, 0,
+				result.length, result);
+		return result;
+	}
+
+	public int[] indexOfIpv6(final long[] addresses, ForkJoinPool pool) {
+		checkIpv6Batch(addresses);
+		final int[] result = new int[addresses.length / 2];
+		BatchLookup.invoke(pool, result.length, new BatchLookup.Join() {
+			@Override
+			public void join(int from, int to) {
+				BatchLookup.joinIpv6(ipv6LowerHigh, ipv6LowerLow, ipv6UpperHigh, ipv6UpperLow, ipv6Size, addresses,
+						from, to, result);
+			}
+		});
+		return result;
+	}
+
+	private static void checkIpv6Batch(long[] addresses) {
+		if (addresses.length % 2 != 0) {
+			throw new IllegalArgumentException("ipv6 addresses need pairs of high and low bits");
+		}
+	}
+
+	// bit i is set if the i-th address is contained
+	public BitSet containsIpv4(int[] addresses) {
+		return toBitSet(indexOfIpv4(addresses));
+	}
+
+	public BitSet containsIpv4(int[] addresses, ForkJoinPool pool) {
+		return toBitSet(indexOfIpv4(addresses, pool));
+	}
+
+	public BitSet containsIpv6(long[] addresses) {
+		return toBitSet(indexOfIpv6(addresses));
+	}
+
+	public BitSet containsIpv6(long[] addresses, ForkJoinPool pool) {
+		return toBitSet(indexOfIpv6(addresses, pool));
+	}
+
+	private static BitSet toBitSet(int[] indices) {
+		BitSet bits = new BitSet(indices.length);
+		for (int i = 0; i < indices.length; i++) {
+			if (indices[i] >= 0) {
+				bits.set(i);
+			}
+		}
+		return bits;
+	}
+
+	public boolean contains(IpAddress ipAddr) {
+		return lookup(ipAddr) != null;
+	}
+
+	public boolean contains(String s) throws InvalidIpAddressException {
+		return contains(IpAddress.parseIpAddress(s));
+	}
+
+	// returns the (merged) range containing the address or null
+	public IpRange lookup(IpAddress ipAddr) {
+		long start = IpMetrics.start(IpMetrics.Timer.LOOKUP);
+		IpRange result;
+		if (ipAddr instanceof Ipv4Address) {
+			int idx = indexOfIpv4(((Ipv4Address) ipAddr).longValue());
+			result = idx < 0 ? null : ipv4Ranges[idx];
+		} else {
+			Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+			int idx = indexOfIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits());
+			result = idx < 0 ? null : ipv6Ranges[idx];
+		}
+		IpMetrics.stop(IpMetrics.Timer.LOOKUP, start);
+		return result;
+	}
+
+	public IpRange lookup(String s) throws InvalidIpAddressException {
+		return lookup(IpAddress.parseIpAddress(s));
+	}
+
+	public IpRange getIpv4Range(int idx) {
+		return ipv4Ranges[idx];
+	}
+
+	public IpRange getIpv6Range(int idx) {
+		return ipv6Ranges[idx];
+	}
+
+	public int ipv4Size() {
+		return ipv4Size;
+	}
+
+	public int ipv6Size() {
+		return ipv6Size;
+	}
+
+	public int size() {
+		return ipv4Size + ipv6Size;
+	}
+}
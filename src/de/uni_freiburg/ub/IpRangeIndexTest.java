@@ -0,0 +1,127 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class IpRangeIndexTest {
+
+	@Test
+	public void testContains() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.30.*"));
+		ipRangeCollection.add(IpRange.parseIpRange("10.0.0.0/8"));
+		ipRangeCollection.add(IpRange.parseIpRange("4001:4860:4860:0:0:0:0:88fe/127"));
+
+		IpRangeIndex index = new IpRangeIndex(ipRangeCollection);
+
+		assertTrue(index.contains("132.230.25.0"));
+		assertTrue(index.contains("132.230.25.127"));
+		assertFalse(index.contains("132.230.25.128"));
+		assertTrue(index.contains("132.230.30.17"));
+		assertTrue(index.contains("10.255.255.255"));
+		assertFalse(index.contains("9.255.255.255"));
+		assertFalse(index.contains("255.255.255.255"));
+		assertFalse(index.contains("0.0.0.0"));
+
+		assertTrue(index.contains("4001:4860:4860:0:0:0:0:88fe"));
+		assertTrue(index.contains("4001:4860:4860:0:0:0:0:88ff"));
+		assertFalse(index.contains("4001:4860:4860:0:0:0:0:88fd"));
+		assertFalse(index.contains("ffff:4860:4860:0:0:0:0:88fe"));
+	}
+
+	@Test
+	public void testLookup() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.128-132.230.25.255"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.10-132.230.26.37"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.30.*"));
+		ipRangeCollection.add(IpRange.parseIpRange("8001:4860:4860:0:0:0:0:0/64"));
+		ipRangeCollection.add(IpRange.parseIpRange("8001:4860:4860:1:0:0:0:0/64"));
+
+		IpRangeIndex index = new IpRangeIndex(ipRangeCollection);
+
+		assertEquals(2, index.ipv4Size());
+		assertEquals(1, index.ipv6Size());
+		assertEquals("132.230.25.0-132.230.26.37", index.lookup("132.230.26.1").toRangeString());
+		assertEquals("132.230.30.0-132.230.30.255", index.lookup("132.230.30.1").toRangeString());
+		assertNull(index.lookup("132.230.26.38"));
+		assertEquals("8001:4860:4860:0000:0000:0000:0000:0000-8001:4860:4860:0001:ffff:ffff:ffff:ffff",
+				index.lookup("8001:4860:4860:1:0:0:0:1").toRangeString());
+	}
+
+	@Test
+	public void testBatchLookup() throws Exception {
+		Random random = new Random(7);
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		for (int i = 0; i < 2000; i++) {
+			long lower = random.nextLong() & 0xFFFFFFFFl;
+			long upper = Math.min(0xFFFFFFFFl, lower + random.nextInt(1 << 20));
+			ipRangeCollection.add(new IpRange(new Ipv4Address(lower), new Ipv4Address(upper)));
+		}
+		ipRangeCollection.add(IpRange.parseIpRange("0.0.0.0"));
+		ipRangeCollection.add(IpRange.parseIpRange("255.255.255.255"));
+		for (int i = 0; i < 200; i++) {
+			long high = random.nextLong();
+			ipRangeCollection.add(new IpRange(new Ipv6Address(high, 0l), new Ipv6Address(high, random.nextLong())));
+		}
+		ipRangeCollection.add(IpRange.parseIpRange("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+		IpRangeIndex index = new IpRangeIndex(ipRangeCollection);
+
+		// more addresses than fit into one chunk, with duplicates and hits
+		int[] ipv4 = new int[150000];
+		long[] ipv6 = new long[2 * 150000];
+		for (int i = 0; i < ipv4.length; i++) {
+			IpRange range = index.getIpv4Range(random.nextInt(index.ipv4Size()));
+			ipv4[i] = i % 3 == 0 ? random.nextInt() : (int) ((Ipv4Address) range.getLowerLimit()).longValue();
+			range = index.getIpv6Range(random.nextInt(index.ipv6Size()));
+			ipv6[2 * i] = i % 3 == 0 ? random.nextLong() : ((Ipv6Address) range.getLowerLimit()).highBits();
+			ipv6[2 * i + 1] = random.nextLong();
+		}
+		ipv4[0] = 0;
+		ipv4[1] = -1;
+		ipv6[0] = -1l;
+		ipv6[1] = -1l;
+		ipv6[2] = ipv6[4];
+		ipv6[3] = ipv6[5];
+
+		int[] expectedIpv4 = new int[ipv4.length];
+		int[] expectedIpv6 = new int[ipv4.length];
+		BitSet expectedBits = new BitSet();
+		int hits = 0;
+		for (int i = 0; i < ipv4.length; i++) {
+			expectedIpv4[i] = index.indexOfIpv4(ipv4[i] & 0xFFFFFFFFl);
+			expectedIpv6[i] = index.indexOfIpv6(ipv6[2 * i], ipv6[2 * i + 1]);
+			if (expectedIpv4[i] >= 0) {
+				expectedBits.set(i);
+			}
+			if (expectedIpv6[i] >= 0) {
+				hits++;
+			}
+		}
+
+		assertTrue(hits > ipv4.length / 4);
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		assertArrayEquals(expectedIpv4, index.indexOfIpv4(ipv4));
+		assertArrayEquals(expectedIpv4, index.indexOfIpv4(ipv4, pool));
+		assertArrayEquals(expectedIpv6, index.indexOfIpv6(ipv6));
+		assertArrayEquals(expectedIpv6, index.indexOfIpv6(ipv6, pool));
+		assertEquals(expectedBits, index.containsIpv4(ipv4));
+		pool.shutdown();
+
+		assertArrayEquals(new int[] { index.ipv4Size() - 1, 0 }, index.indexOfIpv4(new int[] { -1, 0 }));
+		assertEquals(0, index.indexOfIpv4(new int[0]).length);
+		assertArrayEquals(new int[] { -1 }, new IpRangeIndex(new IpRangeCollection()).indexOfIpv4(new int[] { 5 }));
+	}
+}
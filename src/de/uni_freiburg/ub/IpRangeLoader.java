@@ -0,0 +1,369 @@
+package de.uni_freiburg.ub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// bulk loader for files with one range per line in any format accepted by
+// IpRange.parseIpRange
+//
+// the input is split into chunks at line boundaries which are parsed in
+// parallel into sorted and compacted runs of primitive bounds, the runs are
+// merged into a kept compacted IpRangeCollection
+//
+// the common formats are parsed directly from the bytes, only unusual input
+// (like whitespace inside a range) and invalid lines are turned into a String
+// and passed to IpRange
+//
+// empty lines and lines starting with '#' are skipped
+public class IpRangeLoader {
+
+	// files up to this size are read, larger files are memory mapped
+	private static final long MAP_THRESHOLD = 1 << 20;
+	// largest part of a file which is mapped at once
+	private static final long MAX_SEGMENT = 1 << 30;
+	private static final int MIN_CHUNK_SIZE = 1 << 16;
+	private static final int MAX_CHUNK_SIZE = 1 << 24;
+
+	private final ForkJoinPool pool;
+
+	public IpRangeLoader() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public IpRangeLoader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	// throws the exception of IpRange.parseIpRange for the first invalid line
+	public IpRangeCollection load(Path path) throws IOException {
+		return load(path, null);
+	}
+
+	public IpRangeCollection load(Path path, ParseErrorListener listener) throws IOException {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size <= MAP_THRESHOLD) {
+				ByteBuffer buffer = ByteBuffer.allocate((int) size);
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				}
+				buffer.flip();
+				parse(buffer, chunks);
+			} else {
+				long position = 0;
+				while (position < size) {
+					long length = Math.min(size - position, MAX_SEGMENT);
+					ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+					// a segment ends behind its last line break
+					int end = (int) length;
+					if (position + length < size) {
+						end = lastLineBreak(buffer, end) + 1;
+						if (end == 0) {
+							throw new IOException("line at byte " + position + " exceeds " + MAX_SEGMENT + " bytes");
+						}
+					}
+					buffer.limit(end);
+					parse(buffer, chunks);
+					position += end;
+				}
+			}
+		}
+
+		return merge(chunks, listener);
+	}
+
+	public IpRangeCollection load(InputStream in) throws IOException {
+		return load(in, null);
+	}
+
+	// reads the stream up to its end, the stream is not closed
+	public IpRangeCollection load(InputStream in, ParseErrorListener listener) throws IOException {
+		ReadableByteChannel channel = Channels.newChannel(in);
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		while (channel.read(buffer) >= 0) {
+			if (!buffer.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+		buffer.flip();
+		return load(buffer, listener);
+	}
+
+	// parses the remaining bytes of the buffer, its position is not changed
+	public IpRangeCollection load(ByteBuffer buffer, ParseErrorListener listener) {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		parse(buffer.slice(), chunks);
+		return merge(chunks, listener);
+	}
+
+	private static int lastLineBreak(ByteBuffer buffer, int end) {
+		for (int i = end - 1; i >= 0; i--) {
+			if (buffer.get(i) == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void parse(ByteBuffer buffer, List<Chunk> chunks) {
+		int end = buffer.limit();
+		int chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, end / (pool.getParallelism() * 4)));
+
+		final List<Chunk> tasks = new ArrayList<Chunk>();
+		int start = 0;
+		while (start < end) {
+			int chunkEnd = start + chunkSize;
+			if (chunkEnd >= end) {
+				chunkEnd = end;
+			} else {
+				while (chunkEnd < end && buffer.get(chunkEnd - 1) != '\n') {
+					chunkEnd++;
+				}
+			}
+			tasks.add(new Chunk(buffer, start, chunkEnd));
+			start = chunkEnd;
+		}
+
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		chunks.addAll(tasks);
+	}
+
+	private IpRangeCollection merge(List<Chunk> chunks, ParseErrorListener listener) {
+		// report the errors in the order of the lines
+		long firstLine = 1;
+		for (Chunk chunk : chunks) {
+			for (int i = 0; i < chunk.errorCount; i++) {
+				if (listener == null) {
+					throw chunk.errors.get(i).toException();
+				}
+				listener.onError(firstLine + chunk.errorLines[i], chunk.errorStrings.get(i), chunk.errors.get(i));
+			}
+			firstLine += chunk.lineCount;
+		}
+
+		RangeList ipv4Ranges = pool.invoke(new Merge(chunks, false, 0, chunks.size()));
+		RangeList ipv6Ranges = pool.invoke(new Merge(chunks, true, 0, chunks.size()));
+		return IpRangeCollection.of(ipv4Ranges, ipv6Ranges);
+	}
+
+	// pairwise union of the runs of the chunks from..to
+	private static final class Merge extends RecursiveTask<RangeList> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Chunk> chunks;
+		private final boolean ipv6;
+		private final int from;
+		private final int to;
+
+		Merge(List<Chunk> chunks, boolean ipv6, int from, int to) {
+			this.chunks = chunks;
+			this.ipv6 = ipv6;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected RangeList compute() {
+			if (to - from == 0) {
+				return new RangeList(ipv6, 1);
+			}
+			if (to - from == 1) {
+				Chunk chunk = chunks.get(from);
+				return ipv6 ? chunk.ipv6Ranges : chunk.ipv4Ranges;
+			}
+
+			int mid = (from + to) >>> 1;
+			Merge left = new Merge(chunks, ipv6, from, mid);
+			left.fork();
+			RangeList right = new Merge(chunks, ipv6, mid, to).compute();
+			return left.join().union(right);
+		}
+	}
+
+	// read only view of ascii bytes, the parsers address lines by offset
+	private static final class ByteSequence implements CharSequence {
+		private final byte[] bytes;
+
+		ByteSequence(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int length() {
+			return bytes.length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (bytes[index] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString(start, end);
+		}
+
+		String toString(int start, int end) {
+			char[] chars = new char[end - start];
+			for (int i = start; i < end; i++) {
+				chars[i - start] = (char) (bytes[i] & 0xFF);
+			}
+			return new String(chars);
+		}
+
+		@Override
+		public String toString() {
+			return toString(0, bytes.length);
+		}
+	}
+
+	private static final class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final ByteBuffer buffer;
+		private final int start;
+		private final int end;
+		private final long[] bounds = new long[4];
+		private byte[] bytes;
+		private ByteSequence s;
+
+		// ipv4 ranges are collected packed as lower << 32 | upper
+		private long[] ipv4Packed = new long[64];
+		private int ipv4Count;
+
+		RangeList ipv4Ranges;
+		RangeList ipv6Ranges;
+		long lineCount;
+
+		// line numbers relative to the chunk and the errors
+		long[] errorLines = new long[0];
+		List<String> errorStrings = new ArrayList<String>();
+		List<ParseError> errors = new ArrayList<ParseError>();
+		int errorCount;
+
+		Chunk(ByteBuffer buffer, int start, int end) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			// heap buffers are parsed in place, mapped chunks are copied
+			int from;
+			int to;
+			if (buffer.hasArray()) {
+				bytes = buffer.array();
+				from = buffer.arrayOffset() + start;
+				to = buffer.arrayOffset() + end;
+			} else {
+				bytes = new byte[end - start];
+				ByteBuffer view = buffer.duplicate();
+				view.position(start);
+				view.get(bytes);
+				from = 0;
+				to = bytes.length;
+			}
+			s = new ByteSequence(bytes);
+
+			ipv6Ranges = new RangeList(true, 16);
+
+			int lineStart = from;
+			while (lineStart < to) {
+				int lineEnd = lineStart;
+				while (lineEnd < to && bytes[lineEnd] != '\n') {
+					lineEnd++;
+				}
+				parseLine(lineStart, lineEnd);
+				lineCount++;
+				lineStart = lineEnd + 1;
+			}
+
+			// the runs are kept until the merge, so they are trimmed
+			ipv4Ranges = RangeList.ofIpv4(ipv4Packed, ipv4Count);
+			ipv6Ranges = ipv6Ranges.compact().trimToSize();
+			ipv4Packed = null;
+			bytes = null;
+			s = null;
+		}
+
+		private void parseLine(int from, int to) {
+			while (from < to && IpRange.isWhitespace(s.charAt(from))) {
+				from++;
+			}
+			while (to > from && IpRange.isWhitespace(s.charAt(to - 1))) {
+				to--;
+			}
+			if (from == to || s.charAt(from) == '#') {
+				return;
+			}
+
+			int version = IpRangeParser.parse(s, from, to, bounds);
+			if (version == IpRangeParser.IPV4) {
+				addIpv4(bounds[1], bounds[3]);
+			} else if (version == IpRangeParser.IPV6) {
+				ipv6Ranges.addUnsorted(bounds[0], bounds[1], bounds[2], bounds[3]);
+			} else {
+				String line = s.toString(from, to);
+				ParseResult<IpRange> result = IpRange.tryParseIpRange(line);
+				if (result.isValid()) {
+					add(result.getValue());
+				} else {
+					addError(line, result.getError());
+				}
+			}
+		}
+
+		private void add(IpRange range) {
+			if (range.lowerLimit instanceof Ipv4Address) {
+				addIpv4(((Ipv4Address) range.lowerLimit).longValue(), ((Ipv4Address) range.upperLimit).longValue());
+			} else {
+				Ipv6Address lower = (Ipv6Address) range.lowerLimit;
+				Ipv6Address upper = (Ipv6Address) range.upperLimit;
+				ipv6Ranges.addUnsorted(lower.highBits(), lower.lowBits(), upper.highBits(), upper.lowBits());
+			}
+		}
+
+		private void addIpv4(long lower, long upper) {
+			if (ipv4Count == ipv4Packed.length) {
+				ipv4Packed = Arrays.copyOf(ipv4Packed, ipv4Count * 2);
+			}
+			ipv4Packed[ipv4Count++] = lower << 32 | upper;
+		}
+
+		private void addError(String line, ParseError error) {
+			if (errorCount == errorLines.length) {
+				long[] larger = new long[errorCount * 2 + 1];
+				System.arraycopy(errorLines, 0, larger, 0, errorCount);
+				errorLines = larger;
+			}
+			errorLines[errorCount++] = lineCount;
+			errorStrings.add(line);
+			errors.add(error);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IpRangeLoaderTest {
+
+	@Test
+	public void testLoad() throws Exception {
+		String input = "# allowlist\n"
+				+ "132.230.25.0/24\n"
+				+ "  132.230.26.0 - 132.230.26.255\r\n"
+				+ "\n"
+				+ "132.230.27.*\n"
+				+ "132.230.30-31.*\n"
+				+ "132.230.25.0/33\n"
+				+ "2001:4860:4860::8888\n"
+				+ "2001:4860:4860::8889-2001:4860:4860::88ff\n"
+				+ "132.230.10.17-132.230.10.10\n"
+				+ "10.0.0.1";
+
+		final List<String> errors = new ArrayList<String>();
+		IpRangeCollection ipRangeCollection = new IpRangeLoader().load(
+				new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII)), new ParseErrorListener() {
+					@Override
+					public void onError(long lineNumber, String line, ParseError error) {
+						errors.add(lineNumber + " " + line + " " + error);
+					}
+				});
+
+		assertEquals("[7 132.230.25.0/33 INVALID_NUMBER, 10 132.230.10.17-132.230.10.10 INVALID_RANGE]",
+				errors.toString());
+		assertEquals("[10.0.0.1-10.0.0.1, 132.230.25.0-132.230.27.255, 132.230.30.0-132.230.31.255, "
+				+ "2001:4860:4860:0000:0000:0000:0000:8888-2001:4860:4860:0000:0000:0000:0000:88ff]",
+				ipRangeCollection.toRangeStrings().toString());
+		assertEquals(true, ipRangeCollection.isKeptCompacted());
+	}
+
+	@Test
+	public void testLoadFile() throws Exception {
+		// large enough to be memory mapped and parsed in several chunks
+		Random random = new Random(1);
+		StringBuilder sb = new StringBuilder();
+		IpRangeCollection expected = new IpRangeCollection();
+		for (int i = 0; i < 100000; i++) {
+			long lower = random.nextLong() & 0xFFFFFFFFl;
+			String line;
+			if (i % 2 == 0) {
+				line = new Ipv4Address(lower).toString() + "/" + (16 + random.nextInt(17));
+			} else {
+				long upper = Math.min(0xFFFFFFFFl, lower + random.nextInt(1 << 16));
+				line = new Ipv4Address(lower).toString() + "-" + new Ipv4Address(upper).toString();
+			}
+			expected.add(IpRange.parseIpRange(line));
+			sb.append(line).append('\n');
+		}
+
+		Path path = Files.createTempFile("ranges", ".txt");
+		try {
+			Files.write(path, sb.toString().getBytes(StandardCharsets.US_ASCII));
+			IpRangeCollection ipRangeCollection = new IpRangeLoader().load(path);
+			assertEquals(expected.compact().toRangeStrings(), ipRangeCollection.toRangeStrings());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testInvalidLineIsThrown() throws IOException {
+		try {
+			new IpRangeLoader().load(new ByteArrayInputStream("132.230.25.0/24\n132.230.10.117-21\n".getBytes()));
+			Assert.fail("NumberFormatException should be thrown");
+		} catch (NumberFormatException e) {
+		}
+	}
+}
@@ -0,0 +1,359 @@
+package de.uni_freiburg.ub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.function.BinaryOperator;
+
+// maps ip ranges to values, the ranges may overlap. the ranges are split into
+// disjoint segments, the value of a segment is chosen by the merge policy
+// from the values of all ranges covering it:
+// * FIRST_WINS, the value put first
+// * LAST_WINS, the value put last (the default)
+// * COMBINE, the values combined in the order they were put
+// neighbouring segments with equal values are merged
+//
+// the segments are kept in sorted primitive arrays so that a lookup is a
+// binary search, they are rebuilt on the first query after a put. the map
+// is not thread safe while it is modified
+public class IpRangeMap<V> implements Iterable<IpRangeMap.Entry<V>> {
+
+	public enum MergePolicy {
+		FIRST_WINS, LAST_WINS, COMBINE
+	}
+
+	// a segment and its value
+	public static final class Entry<V> {
+		private final IpRange ipRange;
+		private final V value;
+
+		private Entry(IpRange ipRange, V value) {
+			this.ipRange = ipRange;
+			this.value = value;
+		}
+
+		public IpRange getIpRange() {
+			return ipRange;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return ipRange.appendTo(new StringBuilder()).append('=').append(value).toString();
+		}
+	}
+
+	private final MergePolicy policy;
+	private final BinaryOperator<V> combiner;
+
+	// the ranges in the order they were put
+	private final RangeList ipv4Inputs = new RangeList(false, 16);
+	private final RangeList ipv6Inputs = new RangeList(true, 16);
+	private final List<V> ipv4InputValues = new ArrayList<V>();
+	private final List<V> ipv6InputValues = new ArrayList<V>();
+
+	private RangeList ipv4Segments;
+	private RangeList ipv6Segments;
+	private Object[] ipv4Values;
+	private Object[] ipv6Values;
+	private boolean modified = true;
+
+	public IpRangeMap() {
+		this(MergePolicy.LAST_WINS);
+	}
+
+	public IpRangeMap(MergePolicy policy) {
+		if (policy == MergePolicy.COMBINE) {
+			throw new IllegalArgumentException("COMBINE needs a combiner");
+		}
+		this.policy = policy;
+		this.combiner = null;
+	}
+
+	// values of overlapping ranges are combined in the order they were put
+	public IpRangeMap(BinaryOperator<V> combiner) {
+		this.policy = MergePolicy.COMBINE;
+		this.combiner = combiner;
+	}
+
+	public MergePolicy getMergePolicy() {
+		return policy;
+	}
+
+	public IpRangeMap<V> put(IpRange ipRange, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("null values are not supported");
+		}
+
+		if (ipRange.lowerLimit instanceof Ipv4Address) {
+			ipv4Inputs.addUnsorted(0l, ((Ipv4Address) ipRange.lowerLimit).longValue(), 0l,
+					((Ipv4Address) ipRange.upperLimit).longValue());
+			ipv4InputValues.add(value);
+		} else {
+			Ipv6Address lower = (Ipv6Address) ipRange.lowerLimit;
+			Ipv6Address upper = (Ipv6Address) ipRange.upperLimit;
+			ipv6Inputs.addUnsorted(lower.highBits(), lower.lowBits(), upper.highBits(), upper.lowBits());
+			ipv6InputValues.add(value);
+		}
+		modified = true;
+		return this;
+	}
+
+	// the value of the segment containing the address or null
+	public V get(IpAddress ipAddr) {
+		if (ipAddr instanceof Ipv4Address) {
+			return getIpv4(((Ipv4Address) ipAddr).longValue());
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
+		return getIpv6(ipv6Addr.highBits(), ipv6Addr.lowBits());
+	}
+
+	@SuppressWarnings("unchecked")
+	public V getIpv4(long bits) {
+		build();
+		int idx = ipv4Segments.indexOf(0l, bits);
+		return idx < 0 ? null : (V) ipv4Values[idx];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V getIpv6(long highBits, long lowBits) {
+		build();
+		int idx = ipv6Segments.indexOf(highBits, lowBits);
+		return idx < 0 ? null : (V) ipv6Values[idx];
+	}
+
+	// the segment containing the address and its value or null
+	public Entry<V> getEntry(IpAddress ipAddr) {
+		build();
+		boolean ipv6 = ipAddr instanceof Ipv6Address;
+		RangeList segments = ipv6 ? ipv6Segments : ipv4Segments;
+		int idx;
+		if (ipv6) {
+			idx = segments.indexOf(((Ipv6Address) ipAddr).highBits(), ((Ipv6Address) ipAddr).lowBits());
+		} else {
+			idx = segments.indexOf(0l, ((Ipv4Address) ipAddr).longValue());
+		}
+		return idx < 0 ? null : entry(segments, ipv6 ? ipv6Values : ipv4Values, idx);
+	}
+
+	// the segments overlapping the range in ascending order, the segments are
+	// not cut to the range
+	public Iterable<Entry<V>> entries(IpRange ipRange) {
+		build();
+		final boolean ipv6 = ipRange.lowerLimit instanceof Ipv6Address;
+		final RangeList segments = ipv6 ? ipv6Segments : ipv4Segments;
+		long lowerHigh = 0l;
+		long lowerLow;
+		final long upperHigh;
+		final long upperLow;
+		if (ipv6) {
+			lowerHigh = ((Ipv6Address) ipRange.lowerLimit).highBits();
+			lowerLow = ((Ipv6Address) ipRange.lowerLimit).lowBits();
+			upperHigh = ((Ipv6Address) ipRange.upperLimit).highBits();
+			upperLow = ((Ipv6Address) ipRange.upperLimit).lowBits();
+		} else {
+			lowerLow = ((Ipv4Address) ipRange.lowerLimit).longValue();
+			upperHigh = 0l;
+			upperLow = ((Ipv4Address) ipRange.upperLimit).longValue();
+		}
+
+		// the first segment not ending before the range
+		int low = 0;
+		int high = segments.size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (RangeList.compare(segments.upperHigh[mid], segments.upperLow[mid], lowerHigh, lowerLow) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		final int first = low;
+
+		return new Iterable<Entry<V>>() {
+			@Override
+			public Iterator<Entry<V>> iterator() {
+				return new EntryIterator(ipv6, first, upperHigh, upperLow);
+			}
+		};
+	}
+
+	// all segments, the ipv4 segments first
+	@Override
+	public Iterator<Entry<V>> iterator() {
+		build();
+		final Iterator<Entry<V>> ipv4 = new EntryIterator(false, 0, 0l, RangeList.IPV4_MAX);
+		final Iterator<Entry<V>> ipv6 = new EntryIterator(true, 0, -1l, -1l);
+		return new Iterator<Entry<V>>() {
+			@Override
+			public boolean hasNext() {
+				return ipv4.hasNext() || ipv6.hasNext();
+			}
+
+			@Override
+			public Entry<V> next() {
+				return ipv4.hasNext() ? ipv4.next() : ipv6.next();
+			}
+		};
+	}
+
+	// the number of segments
+	public int size() {
+		build();
+		return ipv4Segments.size + ipv6Segments.size;
+	}
+
+	public boolean isEmpty() {
+		return ipv4Inputs.size == 0 && ipv6Inputs.size == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Entry<V> entry(RangeList segments, Object[] values, int idx) {
+		return new Entry<V>(segments.getIpRange(idx), (V) values[idx]);
+	}
+
+	// the segments from the index on which start at or before the upper limit
+	private final class EntryIterator implements Iterator<Entry<V>> {
+		private final RangeList segments;
+		private final Object[] values;
+		private final long upperHigh;
+		private final long upperLow;
+		private int next;
+
+		EntryIterator(boolean ipv6, int first, long upperHigh, long upperLow) {
+			this.segments = ipv6 ? ipv6Segments : ipv4Segments;
+			this.values = ipv6 ? ipv6Values : ipv4Values;
+			this.upperHigh = upperHigh;
+			this.upperLow = upperLow;
+			this.next = first;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < segments.size && RangeList.compare(segments.lowerHigh[next], segments.lowerLow[next],
+					upperHigh, upperLow) <= 0;
+		}
+
+		@Override
+		public Entry<V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return entry(segments, values, next++);
+		}
+	}
+
+	private void build() {
+		if (!modified) {
+			return;
+		}
+		ipv4Segments = new RangeList(false, ipv4Inputs.size);
+		ipv4Values = split(ipv4Inputs, ipv4InputValues, ipv4Segments);
+		ipv6Segments = new RangeList(true, ipv6Inputs.size);
+		ipv6Values = split(ipv6Inputs, ipv6InputValues, ipv6Segments);
+		modified = false;
+	}
+
+	// sweeps over the bounds of the ranges in ascending order, the ranges
+	// covering the current position are kept ordered by the time they were
+	// put. a segment ends in front of the next lower limit or at the next
+	// upper limit
+	private Object[] split(final RangeList inputs, List<V> inputValues, RangeList segments) {
+		int n = inputs.size;
+		Integer[] byLower = new Integer[n];
+		Integer[] byUpper = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			byLower[i] = i;
+			byUpper[i] = i;
+		}
+		Arrays.sort(byLower, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return RangeList.compare(inputs.lowerHigh[a], inputs.lowerLow[a], inputs.lowerHigh[b], inputs.lowerLow[b]);
+			}
+		});
+		Arrays.sort(byUpper, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return RangeList.compare(inputs.upperHigh[a], inputs.upperLow[a], inputs.upperHigh[b], inputs.upperLow[b]);
+			}
+		});
+
+		List<V> values = new ArrayList<V>();
+		TreeSet<Integer> active = new TreeSet<Integer>();
+		long high = 0l;
+		long low = 0l;
+		int nextLower = 0;
+		int nextUpper = 0;
+		while (nextUpper < n) {
+			if (active.isEmpty()) {
+				// jump to the next range
+				int i = byLower[nextLower];
+				high = inputs.lowerHigh[i];
+				low = inputs.lowerLow[i];
+			}
+			while (nextLower < n && inputs.lowerHigh[byLower[nextLower]] == high
+					&& inputs.lowerLow[byLower[nextLower]] == low) {
+				active.add(byLower[nextLower++]);
+			}
+
+			int upper = byUpper[nextUpper];
+			long endHigh = inputs.upperHigh[upper];
+			long endLow = inputs.upperLow[upper];
+			if (nextLower < n) {
+				int lower = byLower[nextLower];
+				if (RangeList.compare(inputs.lowerHigh[lower], inputs.lowerLow[lower], endHigh, endLow) <= 0) {
+					// the segment ends in front of the next range
+					endLow = inputs.lowerLow[lower] - 1;
+					endHigh = inputs.lowerHigh[lower] - (endLow == -1l ? 1 : 0);
+				}
+			}
+			append(segments, values, high, low, endHigh, endLow, value(active, inputValues));
+
+			while (nextUpper < n && inputs.upperHigh[byUpper[nextUpper]] == endHigh
+					&& inputs.upperLow[byUpper[nextUpper]] == endLow) {
+				active.remove(byUpper[nextUpper++]);
+			}
+			low = endLow + 1;
+			high = low == 0l ? endHigh + 1 : endHigh;
+		}
+		return values.toArray();
+	}
+
+	private V value(TreeSet<Integer> active, List<V> inputValues) {
+		switch (policy) {
+		case FIRST_WINS:
+			return inputValues.get(active.first());
+		case LAST_WINS:
+			return inputValues.get(active.last());
+		default:
+			Iterator<Integer> it = active.iterator();
+			V value = inputValues.get(it.next());
+			while (it.hasNext()) {
+				value = combiner.apply(value, inputValues.get(it.next()));
+			}
+			return value;
+		}
+	}
+
+	// appends a segment or extends the last one if it has the same value
+	private static <V> void append(RangeList segments, List<V> values, long lh, long ll, long uh, long ul, V value) {
+		int last = segments.size - 1;
+		if (last >= 0 && RangeList.isTouching(segments.upperHigh[last], segments.upperLow[last], lh, ll)
+				&& Objects.equals(values.get(last), value)) {
+			segments.upperHigh[last] = uh;
+			segments.upperLow[last] = ul;
+			return;
+		}
+		segments.addUnsorted(lh, ll, uh, ul);
+		values.add(value);
+	}
+}
@@ -0,0 +1,146 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BinaryOperator;
+
+import org.junit.Test;
+
+public class IpRangeMapTest {
+
+	@Test
+	public void testMergePolicies() throws Exception {
+		IpRangeMap<String> first = new IpRangeMap<String>(IpRangeMap.MergePolicy.FIRST_WINS);
+		IpRangeMap<String> last = new IpRangeMap<String>();
+		IpRangeMap<String> combined = new IpRangeMap<String>(new BinaryOperator<String>() {
+			@Override
+			public String apply(String a, String b) {
+				return a + "+" + b;
+			}
+		});
+		List<IpRangeMap<String>> maps = new ArrayList<IpRangeMap<String>>();
+		maps.add(first);
+		maps.add(last);
+		maps.add(combined);
+		for (IpRangeMap<String> map : maps) {
+			map.put(IpRange.parseIpRange("132.230.0.0/16"), "campus");
+			map.put(IpRange.parseIpRange("132.230.25.0/24"), "library");
+			map.put(IpRange.parseIpRange("132.230.25.128-132.230.26.10"), "lab");
+		}
+
+		assertEquals("[132.230.0.0-132.230.255.255=campus]", toStrings(first).toString());
+		assertEquals("[132.230.0.0-132.230.24.255=campus, 132.230.25.0-132.230.25.127=library, "
+				+ "132.230.25.128-132.230.26.10=lab, 132.230.26.11-132.230.255.255=campus]", toStrings(last).toString());
+		assertEquals("[132.230.0.0-132.230.24.255=campus, 132.230.25.0-132.230.25.127=campus+library, "
+				+ "132.230.25.128-132.230.25.255=campus+library+lab, 132.230.26.0-132.230.26.10=campus+lab, "
+				+ "132.230.26.11-132.230.255.255=campus]", toStrings(combined).toString());
+
+		assertEquals("library", last.get(IpAddress.parseIpAddress("132.230.25.1")));
+		assertEquals("campus+lab", combined.get(IpAddress.parseIpAddress("132.230.26.10")));
+		assertNull(last.get(IpAddress.parseIpAddress("132.231.0.0")));
+		assertEquals("132.230.25.128-132.230.26.10",
+				last.getEntry(IpAddress.parseIpAddress("132.230.26.1")).getIpRange().toRangeString());
+
+		// the segments are not cut to the queried range
+		List<String> entries = new ArrayList<String>();
+		for (IpRangeMap.Entry<String> entry : combined.entries(IpRange.parseIpRange("132.230.25.200-132.230.26.0"))) {
+			entries.add(entry.toString());
+		}
+		assertEquals("[132.230.25.128-132.230.25.255=campus+library+lab, 132.230.26.0-132.230.26.10=campus+lab]",
+				entries.toString());
+
+		// a later put is visible to the next query
+		last.put(IpRange.parseIpRange("132.230.25.0/24"), "library");
+		assertEquals("library", last.get(IpAddress.parseIpAddress("132.230.25.200")));
+		assertEquals(4, last.size());
+	}
+
+	@Test
+	public void testBounds() throws Exception {
+		IpRangeMap<Integer> map = new IpRangeMap<Integer>();
+		map.put(IpRange.parseIpRange("255.255.255.0/24"), 1);
+		map.put(IpRange.parseIpRange("255.255.255.255"), 2);
+		map.put(IpRange.parseIpRange("::/0"), 3);
+		map.put(IpRange.parseIpRange("ffff:ffff:ffff:ffff::/64"), 4);
+		map.put(IpRange.parseIpRange("::/64"), 5);
+
+		assertEquals(Integer.valueOf(1), map.get(IpAddress.parseIpAddress("255.255.255.254")));
+		assertEquals(Integer.valueOf(2), map.get(IpAddress.parseIpAddress("255.255.255.255")));
+		assertEquals(Integer.valueOf(5), map.get(IpAddress.parseIpAddress("::1")));
+		assertEquals(Integer.valueOf(3), map.get(IpAddress.parseIpAddress("0:0:0:1::")));
+		assertEquals(Integer.valueOf(4), map.get(IpAddress.parseIpAddress("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+		assertEquals(5, map.size());
+	}
+
+	@Test
+	public void testRandom() throws Exception {
+		Random random = new Random(21);
+		for (int round = 0; round < 50; round++) {
+			IpRangeMap<Integer> first = new IpRangeMap<Integer>(IpRangeMap.MergePolicy.FIRST_WINS);
+			IpRangeMap<Integer> last = new IpRangeMap<Integer>(IpRangeMap.MergePolicy.LAST_WINS);
+			IpRangeMap<Integer> sum = new IpRangeMap<Integer>(new BinaryOperator<Integer>() {
+				@Override
+				public Integer apply(Integer a, Integer b) {
+					return a + b;
+				}
+			});
+
+			int n = 1 + random.nextInt(20);
+			long[] lower = new long[n];
+			long[] upper = new long[n];
+			int[] values = new int[n];
+			for (int i = 0; i < n; i++) {
+				lower[i] = random.nextInt(200);
+				upper[i] = lower[i] + random.nextInt(40);
+				// few values so that equal neighbours are merged
+				values[i] = 1 + random.nextInt(3);
+				IpRange range = new IpRange(new Ipv4Address(lower[i]), new Ipv4Address(upper[i]));
+				first.put(range, values[i]);
+				last.put(range, values[i]);
+				sum.put(range, values[i]);
+			}
+
+			for (long bits = 0; bits < 250; bits++) {
+				Integer expectedFirst = null;
+				Integer expectedLast = null;
+				Integer expectedSum = null;
+				for (int i = 0; i < n; i++) {
+					if (lower[i] <= bits && bits <= upper[i]) {
+						if (expectedFirst == null) {
+							expectedFirst = values[i];
+							expectedSum = 0;
+						}
+						expectedLast = values[i];
+						expectedSum += values[i];
+					}
+				}
+				assertEquals(expectedFirst, first.getIpv4(bits));
+				assertEquals(expectedLast, last.getIpv4(bits));
+				assertEquals(expectedSum, sum.getIpv4(bits));
+			}
+
+			// neighbouring segments have different values
+			IpRangeMap.Entry<Integer> previous = null;
+			for (IpRangeMap.Entry<Integer> entry : last) {
+				if (previous != null && ((Ipv4Address) previous.getIpRange().getUpperLimit()).longValue()
+						+ 1 == ((Ipv4Address) entry.getIpRange().getLowerLimit()).longValue()) {
+					assertNotEquals(previous.getValue(), entry.getValue());
+				}
+				previous = entry;
+			}
+		}
+	}
+
+	private static List<String> toStrings(IpRangeMap<String> map) {
+		List<String> result = new ArrayList<String>();
+		for (IpRangeMap.Entry<String> entry : map) {
+			result.add(entry.toString());
+		}
+		return result;
+	}
+}
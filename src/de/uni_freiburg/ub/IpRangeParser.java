@@ -0,0 +1,289 @@
+package de.uni_freiburg.ub;
+
+// single pass parser for the range notations of IpRange.parseIpRange, the
+// bounds are read directly from the characters without splitting or
+// intermediate strings. input with whitespace is left to IpRange
+//
+//   range    = address "/" suffix
+//            | address "-" address
+//            | octet "." octet "." block "." block
+//            | octet "." octet "." block ".*"
+//            | address
+//   block    = octet | "*" | octet "-" octet
+//   address  = ipv4 | ipv6 (see Ipv4Address.parseBits, Ipv6Address.parseBits)
+//   octet    = digit+ with a value of at most 255
+//   suffix   = digit+ with a value of at most 32 (ipv4) or 128 (ipv6)
+//
+// the lower octet of a block range is smaller than the upper one, if the
+// third block is no single octet the last one is a wildcard. both addresses
+// of a dash range have the same version and the lower one is not greater
+// than the upper one
+//
+// parse only accepts input which is valid for these rules, everything else
+// is left to the split based parser of IpRange which classifies the errors
+final class IpRangeParser {
+
+	static final int INVALID = 0;
+	static final int IPV4 = 4;
+	static final int IPV6 = 6;
+
+	private IpRangeParser() {
+	}
+
+	// parses s[from, to) and returns IPV4 or IPV6 with the bounds in
+	// bounds[0..3] (lower high bits, lower low bits, upper high bits, upper
+	// low bits) or INVALID. ipv4 bounds have high bits 0
+	static int parse(CharSequence s, int from, int to, long[] bounds) {
+		int slash = -1;
+		int dash = -1;
+		int dashes = 0;
+		boolean colon = false;
+		boolean star = false;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c == '/') {
+				if (slash >= 0) {
+					return INVALID;
+				}
+				slash = i;
+			} else if (c == '-') {
+				dash = i;
+				dashes++;
+			} else if (c == ':') {
+				colon = true;
+			} else if (c == '*') {
+				star = true;
+			} else if (IpRange.isWhitespace(c)) {
+				return INVALID;
+			}
+		}
+
+		if (slash >= 0) {
+			if (dashes > 0 || star) {
+				return INVALID;
+			}
+			int version = parseAddress(s, from, slash, bounds);
+			int cidrSuffix = parseCidrSuffix(s, slash + 1, to, version == IPV6 ? Ipv6Address.MAX_CIDR_SUFFIX
+					: Ipv4Address.MAX_CIDR_SUFFIX);
+			if (version == INVALID || cidrSuffix < 0) {
+				return INVALID;
+			}
+			long high = bounds[0];
+			long low = bounds[1];
+			if (version == IPV6) {
+				long highMask = cidrSuffix >= 64 ? -1l : cidrSuffix == 0 ? 0l : -1l << (64 - cidrSuffix);
+				long lowMask = cidrSuffix <= 64 ? 0l : -1l << (128 - cidrSuffix);
+				bounds[0] = high & highMask;
+				bounds[1] = low & lowMask;
+				bounds[2] = high | ~highMask;
+				bounds[3] = low | ~lowMask;
+			} else {
+				long mask = (0xFFFFFFFFl << (32 - cidrSuffix)) & 0xFFFFFFFFl;
+				bounds[0] = 0l;
+				bounds[1] = low & mask;
+				bounds[2] = 0l;
+				bounds[3] = low | (~mask & 0xFFFFFFFFl);
+			}
+			return version;
+		}
+
+		if (colon) {
+			if (star || dashes > 1) {
+				return INVALID;
+			}
+			if (dashes == 0) {
+				if (parseAddress(s, from, to, bounds) != IPV6) {
+					return INVALID;
+				}
+				bounds[2] = bounds[0];
+				bounds[3] = bounds[1];
+				return IPV6;
+			}
+			if (parseAddress(s, from, dash, bounds) != IPV6) {
+				return INVALID;
+			}
+			long lowerHigh = bounds[0];
+			long lowerLow = bounds[1];
+			if (parseAddress(s, dash + 1, to, bounds) != IPV6
+					|| RangeList.compare(lowerHigh, lowerLow, bounds[0], bounds[1]) > 0) {
+				return INVALID;
+			}
+			bounds[2] = bounds[0];
+			bounds[3] = bounds[1];
+			bounds[0] = lowerHigh;
+			bounds[1] = lowerLow;
+			return IPV6;
+		}
+
+		if (dashes == 0 && !star) {
+			long ipv4 = Ipv4Address.parseBits(s, from, to - from);
+			if (ipv4 < 0) {
+				return INVALID;
+			}
+			return ipv4(ipv4, ipv4, bounds);
+		}
+
+		if (dashes == 1) {
+			// two addresses, a block out of range is an error, other limits
+			// may still be a range of blocks like 132.230.10.17-20
+			long lower = Ipv4Address.parseBits(s, from, dash - from);
+			if (lower == Ipv4Address.INVALID_BLOCK) {
+				return INVALID;
+			}
+			if (lower >= 0) {
+				long upper = Ipv4Address.parseBits(s, dash + 1, to - dash - 1);
+				if (upper == Ipv4Address.INVALID_BLOCK) {
+					return INVALID;
+				}
+				if (upper >= 0) {
+					if (lower > upper) {
+						return INVALID;
+					}
+					return ipv4(lower, upper, bounds);
+				}
+			}
+		}
+
+		return parseBlocks(s, from, to, bounds);
+	}
+
+	// dotted notation with wildcards or ranges of numbers in the blocks like
+	// 132.230.*, 132.230.10-12.* or 132.230.10.17-20
+	private static int parseBlocks(CharSequence s, int from, int to, long[] bounds) {
+		long lower = 0l;
+		long upper = 0l;
+		int count = 0;
+		boolean thirdIsNumber = true;
+		boolean lastIsWildcard = false;
+
+		int blockStart = from;
+		for (int i = from; i <= to; i++) {
+			if (i < to && s.charAt(i) != '.') {
+				continue;
+			}
+			if (count == 4) {
+				return INVALID;
+			}
+			int block = parseBlock(s, blockStart, i);
+			if (block < 0) {
+				return INVALID;
+			}
+			int low = block >>> 8;
+			int high = block & 0xFF;
+			if (count < 2 && low != high) {
+				return INVALID;
+			}
+			if (count == 2) {
+				thirdIsNumber = low == high;
+			}
+			lastIsWildcard = i - blockStart == 1 && s.charAt(blockStart) == '*';
+			lower = lower << 8 | low;
+			upper = upper << 8 | high;
+			count++;
+			blockStart = i + 1;
+		}
+
+		// three blocks are only allowed with a trailing wildcard, which also
+		// covers the last block
+		if (count == 3 && lastIsWildcard) {
+			lower = lower << 8;
+			upper = upper << 8 | 0xFF;
+		} else if (count != 4) {
+			return INVALID;
+		}
+		if (!thirdIsNumber && !lastIsWildcard) {
+			return INVALID;
+		}
+		return ipv4(lower, upper, bounds);
+	}
+
+	// a block as (low << 8 | high) or -1 if it is invalid, a single octet
+	// has low == high
+	private static int parseBlock(CharSequence s, int from, int to) {
+		if (to - from == 1 && s.charAt(from) == '*') {
+			return 0xFF;
+		}
+
+		int dash = -1;
+		for (int i = from; i < to; i++) {
+			if (s.charAt(i) == '-') {
+				dash = i;
+				break;
+			}
+		}
+		if (dash < 0) {
+			int value = parseOctet(s, from, to);
+			return value < 0 ? -1 : value << 8 | value;
+		}
+
+		int low = parseOctet(s, from, dash);
+		int high = parseOctet(s, dash + 1, to);
+		if (low < 0 || high < 0 || low >= high) {
+			return -1;
+		}
+		return low << 8 | high;
+	}
+
+	private static int parseOctet(CharSequence s, int from, int to) {
+		if (from == to) {
+			return -1;
+		}
+
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || '9' < c) {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+			if (value > 255) {
+				return -1;
+			}
+		}
+		return value;
+	}
+
+	// parses the address into bits[0..1] and returns its version or INVALID
+	private static int parseAddress(CharSequence s, int from, int to, long[] bits) {
+		for (int i = from; i < to; i++) {
+			if (s.charAt(i) == ':') {
+				return Ipv6Address.parseBits(s, from, to - from, bits) == Ipv6Address.VALID ? IPV6 : INVALID;
+			}
+		}
+
+		long ipv4 = Ipv4Address.parseBits(s, from, to - from);
+		if (ipv4 < 0) {
+			return INVALID;
+		}
+		bits[0] = 0l;
+		bits[1] = ipv4;
+		return IPV4;
+	}
+
+	private static int parseCidrSuffix(CharSequence s, int from, int to, int maxCidrSuffix) {
+		if (from == to) {
+			return -1;
+		}
+
+		int cidrSuffix = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || '9' < c) {
+				return -1;
+			}
+			cidrSuffix = cidrSuffix * 10 + (c - '0');
+			if (cidrSuffix > maxCidrSuffix) {
+				return -1;
+			}
+		}
+		return cidrSuffix;
+	}
+
+	private static int ipv4(long lower, long upper, long[] bounds) {
+		bounds[0] = 0l;
+		bounds[1] = lower;
+		bounds[2] = 0l;
+		bounds[3] = upper;
+		return IPV4;
+	}
+}
@@ -1,11 +1,20 @@
 package de.uni_freiburg.ub;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertArrayEquals;
 //import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 //import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.junit.Assert;
 //import org.junit.jupiter.api.Test;
@@ -249,6 +258,41 @@ public class IpRangeTest {
 		assertNumberFormatExceptionIsThrown("132.230.25.2/*");
 	}
 
+	@Test
+	public void testToCidrSink() throws Exception {
+		final List<String> cidr = new ArrayList<String>();
+		CidrSink sink = new CidrSink() {
+			@Override
+			public void accept(long highBits, long lowBits, int cidrSuffix) {
+				cidr.add(Long.toHexString(highBits) + ":" + Long.toHexString(lowBits) + "/" + cidrSuffix);
+			}
+		};
+
+		assertEquals(62, IpRange.parseIpRange("0.0.0.1-255.255.255.254").toCidr(sink));
+		assertEquals("0:1/32", cidr.get(0));
+		assertEquals("0:fffffffe/32", cidr.get(61));
+
+		cidr.clear();
+		assertEquals(1, IpRange.parseIpRange("0.0.0.0-255.255.255.255").toCidr(sink));
+		assertEquals("0:0/0", cidr.get(0));
+
+		cidr.clear();
+		assertEquals(254, IpRange.parseIpRange("::1-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe").toCidr(sink));
+		assertEquals("0:1/128", cidr.get(0));
+		assertEquals("0:2/127", cidr.get(1));
+		assertEquals("8000000000000000:0/2", cidr.get(127));
+		assertEquals("ffffffffffffffff:fffffffffffffffe/128", cidr.get(253));
+
+		cidr.clear();
+		assertEquals(1, IpRange.parseIpRange("::/0").toCidr(sink));
+		assertEquals("0:0/0", cidr.get(0));
+
+		cidr.clear();
+		assertEquals(2, IpRange.parseIpRange("::ffff:ffff:ffff:ffff-0:0:0:1::1").toCidr(sink));
+		assertEquals("0:ffffffffffffffff/128", cidr.get(0));
+		assertEquals("1:0/127", cidr.get(1));
+	}
+
 	@Test
 	public void testToString() throws Exception {
 		assertEquals("132.230.0.0-132.230.0.255", (IpRange.parseIpRange("132.230.0.*")).toRangeString());
@@ -270,6 +314,138 @@ public class IpRangeTest {
 		assertEquals("v6", (IpRange.parseIpRange("2001:4860:4860:0:0:0:0:88ff/2").getIpVersion()));
 	}
 
+	@Test
+	public void testSizeAndAddressAt() throws Exception {
+		IpRange ipv4 = IpRange.parseIpRange("132.230.0.0/16");
+		assertEquals(65536, ipv4.size());
+		assertEquals(IpAddress.parseIpAddress("132.230.1.2"), ipv4.addressAt(258));
+		assertEquals(IpAddress.parseIpAddress("132.230.255.255"), ipv4.addressAt(65535));
+		assertEquals(1l << 32, IpRange.parseIpRange("0.0.0.0/0").size());
+
+		IpRange ipv6 = IpRange.parseIpRange("2001:db8::/32");
+		assertEquals(Long.MAX_VALUE, ipv6.sizeSaturated());
+		assertEquals(IpAddress.parseIpAddress("2001:db8:0:1::2"), ipv6.addressAt(1l, 2l));
+		assertEquals(IpAddress.parseIpAddress("2001:db8:ffff:ffff:ffff:ffff:ffff:ffff"),
+				ipv6.addressAt(0xFFFFFFFFl, -1l));
+		long[] maxOffset = new long[2];
+		ipv6.maxOffset(maxOffset);
+		assertEquals(0xFFFFFFFFl, maxOffset[0]);
+		assertEquals(-1l, maxOffset[1]);
+		IpRange.parseIpRange("::/0").maxOffset(maxOffset);
+		assertEquals(-1l, maxOffset[0]);
+
+		assertEquals(256, IpRange.parseIpRange("2001:db8::/120").size());
+		assertEquals(Long.MAX_VALUE, IpRange.parseIpRange("::-::7fff:ffff:ffff:fffe").size());
+		try {
+			IpRange.parseIpRange("::-::7fff:ffff:ffff:ffff").size();
+			Assert.fail("ArithmeticException should be thrown");
+		} catch (ArithmeticException e) {
+		}
+		try {
+			ipv4.addressAt(65536);
+			Assert.fail("IndexOutOfBoundsException should be thrown");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			ipv6.addressAt(1l << 32, 0l);
+			Assert.fail("IndexOutOfBoundsException should be thrown");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testIteration() throws Exception {
+		IpRange ipv4 = IpRange.parseIpRange("132.230.25.254-132.230.26.1");
+		PrimitiveIterator.OfLong it = ipv4.ipv4Iterator();
+		assertEquals(0x84e619fel, it.nextLong());
+		assertEquals(0x84e619ffl, it.nextLong());
+		assertEquals(0x84e61a00l, it.nextLong());
+		assertEquals(0x84e61a01l, it.nextLong());
+		assertFalse(it.hasNext());
+		assertEquals(1l << 20, IpRange.parseIpRange("10.0.0.0/12").ipv4Stream().parallel().distinct().count());
+		assertEquals(0xFFFFFFFFl, IpRange.parseIpRange("255.255.255.255").ipv4Stream().sum());
+
+		// the cursor carries into the high bits
+		AddressCursor cursor = IpRange.parseIpRange("2001:db8::ffff:ffff:ffff:fffe-2001:db8:0:1::1").cursor();
+		List<String> addresses = new ArrayList<String>();
+		while (cursor.next()) {
+			addresses.add(cursor.toIpAddress().toString());
+		}
+		assertEquals(4, addresses.size());
+		assertEquals("2001:0db8:0000:0001:0000:0000:0000:0000", addresses.get(2));
+		cursor = IpRange.parseIpRange("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff").cursor();
+		assertTrue(cursor.next());
+		assertFalse(cursor.next());
+		assertFalse(cursor.next());
+
+		// all addresses of ::/0 split evenly
+		Spliterator<IpAddress> all = IpRange.parseIpRange("::/0").addressSpliterator();
+		assertEquals(Long.MAX_VALUE, all.estimateSize());
+		Spliterator<IpAddress> lowerHalf = all.trySplit();
+		assertEquals(IpAddress.parseIpAddress("::"), nextAddress(lowerHalf));
+		assertEquals(IpAddress.parseIpAddress("8000::"), nextAddress(all));
+		assertEquals(256, IpRange.parseIpRange("2001:db8::/120").addressStream().parallel().distinct().count());
+
+		List<IpRange> subnets = new ArrayList<IpRange>();
+		Iterator<IpRange> subnetIterator = IpRange.parseIpRange("132.230.0.0/16").subnets(24);
+		while (subnetIterator.hasNext()) {
+			subnets.add(subnetIterator.next());
+		}
+		assertEquals(256, subnets.size());
+		assertEquals("132.230.0.0-132.230.0.255", subnets.get(0).toRangeString());
+		assertEquals("132.230.255.0-132.230.255.255", subnets.get(255).toRangeString());
+		List<String> cidrs = new ArrayList<String>();
+		for (IpRange subnet : IpRange.parseIpRange("132.230.25.128-132.230.27.127").subnetStream(24)
+				.collect(Collectors.toList())) {
+			cidrs.addAll(subnet.toCidr());
+		}
+		assertEquals("[132.230.25.128/25, 132.230.26.0/24, 132.230.27.0/25]", cidrs.toString());
+		assertEquals(1, IpRange.parseIpRange("0.0.0.0/0").subnetStream(0).count());
+
+		assertEquals(65536, IpRange.parseIpRange("2001:db8::/32").subnetStream(48).parallel().distinct().count());
+		assertEquals("2001:0db8:ffff:0000:0000:0000:0000:0000-2001:0db8:ffff:ffff:ffff:ffff:ffff:ffff",
+				IpRange.parseIpRange("2001:db8::/32").subnetStream(48).skip(65535).findFirst().get().toRangeString());
+		assertEquals("0000:0000:0000:0000:0000:0000:0000:0000-7fff:ffff:ffff:ffff:ffff:ffff:ffff:ffff",
+				IpRange.parseIpRange("::/0").subnetStream(1).findFirst().get().toRangeString());
+		assertEquals(1, IpRange.parseIpRange("::/0").subnetStream(0).count());
+		assertEquals(Long.MAX_VALUE, IpRange.parseIpRange("::/0").subnetSpliterator(64).estimateSize());
+	}
+
+	private static IpAddress nextAddress(Spliterator<IpAddress> spliterator) {
+		final IpAddress[] result = new IpAddress[1];
+		spliterator.tryAdvance(new Consumer<IpAddress>() {
+			@Override
+			public void accept(IpAddress ipAddr) {
+				result[0] = ipAddr;
+			}
+		});
+		return result[0];
+	}
+
+	@Test
+	public void testTryParseIpRange() throws Exception {
+		ParseResult<IpRange> result = IpRange.tryParseIpRange("132.230.23-55.*");
+		assertTrue(result.isValid());
+		assertEquals("132.230.23.0-132.230.55.255", result.getValue().toRangeString());
+		assertEquals("132.230.25.0-132.230.25.255", IpRange.tryParseIpRange("132.230.25.0/24").getOrThrow().toRangeString());
+		assertEquals("132.230.25.10-132.230.25.20", IpRange.tryParseIpRange("132.230.25.10-20").getOrThrow().toRangeString());
+
+		// the errors match the exceptions of parseIpRange
+		assertEquals(ParseError.INVALID_NUMBER, IpRange.tryParseIpRange("132.230.25.0/aa").getError());
+		assertEquals(ParseError.INVALID_NUMBER, IpRange.tryParseIpRange("132.230.25.0/33").getError());
+		assertEquals(ParseError.INVALID_NUMBER, IpRange.tryParseIpRange("132.230.*.10-43").getError());
+		assertEquals(ParseError.INVALID_NUMBER, IpRange.tryParseIpRange("132.230.10.117-21").getError());
+		assertEquals(ParseError.INVALID_RANGE, IpRange.tryParseIpRange("132.230.23-55").getError());
+		assertEquals(ParseError.INVALID_RANGE, IpRange.tryParseIpRange("132.230.10-12.5").getError());
+		assertEquals(ParseError.INVALID_RANGE, IpRange.tryParseIpRange("132.230.10.17-132.230.10.10").getError());
+		assertEquals(ParseError.INVALID_RANGE, IpRange.tryParseIpRange("132.230.10.17-2001:4860:4860::8888").getError());
+		assertEquals(ParseError.INVALID_FORMAT, IpRange.tryParseIpRange("xyz/24").getError());
+
+		assertEquals(ParseError.INVALID_BLOCKS, IpRange.tryGetBlocks("132.230.25").getError());
+		assertEquals(ParseError.INVALID_RANGE, IpRange.tryGetBlocks("132.230").getError());
+		assertEquals(ParseError.INVALID_NUMBER, IpRange.tryGetBlocks("132.*.25.*").getError());
+	}
+
 //	workaround for the following method to work with junit4
 //	assertThrows(InvalidBlockException.class, () -> {
 //		IpRange.getBlocks("132.230.25.");
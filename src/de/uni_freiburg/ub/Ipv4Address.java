@@ -5,58 +5,228 @@ import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
 public class Ipv4Address extends IpAddress {
 
 	protected static final short MAX_CIDR_SUFFIX = 32;
-	protected long bits;
-	protected short max_cidr_suffix;
+	private static final long MAX_BITS = 0xFFFFFFFFl;
+	protected final long bits;
+	protected final short max_cidr_suffix;
 
 	public Ipv4Address() {
+		this.bits = 0l;
+		this.max_cidr_suffix = MAX_CIDR_SUFFIX;
 	}
 
 	public Ipv4Address(long ipAddress) throws InvalidIpAddressException {
-		this.max_cidr_suffix = 32;
-		if (0 <= ipAddress && ipAddress <= 4294967295l) {
-			this.bits = ipAddress;
-		} else {
+		if (ipAddress < 0 || 4294967295l < ipAddress) {
 			throw new InvalidIpAddressException();
 		}
+		this.max_cidr_suffix = 32;
+		this.bits = ipAddress;
+	}
+
+	// addresses are immutable, so instances of frequently used addresses like
+	// prefix boundaries can be shared, the cache is direct mapped and a racy
+	// read at worst creates another instance
+	private static final int CACHE_BITS = 12;
+	private static final Ipv4Address[] CACHE = new Ipv4Address[1 << CACHE_BITS];
+
+	// returns a possibly shared instance of the address
+	public static Ipv4Address valueOf(long bits) throws InvalidIpAddressException {
+		int idx = (int) ((bits * 0x9E3779B97F4A7C15l) >>> (64 - CACHE_BITS));
+		Ipv4Address cached = CACHE[idx];
+		if (cached != null && cached.bits == bits) {
+			return cached;
+		}
+
+		Ipv4Address ipAddr = new Ipv4Address(bits);
+		CACHE[idx] = ipAddr;
+		return ipAddr;
 	}
 
+	// return values of parseBits if the input is not a valid ipv4 address
+	public static final long INVALID_FORMAT = -1l;
+	public static final long INVALID_BLOCK = -2l;
+
 	public static IpAddress parseIpAddress(String str) throws InvalidIpAddressException, NumberFormatException {
+		return tryParseIpAddress(str).getOrThrow();
+	}
 
-		String[] blocks = str.split("\\.");
+	// same as parseIpAddress but reports invalid input without throwing
+	public static ParseResult<IpAddress> tryParseIpAddress(String str) {
+		long bits = parseBits(str, 0, str.length());
 
-		if (blocks.length != 4) {
-			throw new InvalidIpAddressException();
+		if (bits == INVALID_FORMAT) {
+			return ParseResult.invalid(ParseError.INVALID_FORMAT);
 		}
+		if (bits == INVALID_BLOCK) {
+			return ParseResult.invalid(ParseError.INVALID_NUMBER);
+		}
+
+		return ParseResult.<IpAddress>valid(new Ipv4Address(bits));
+	}
+
+	public static long parseBits(CharSequence s) {
+		return parseBits(s, 0, s.length());
+	}
 
-		Integer result = 0;
-		for (int idx = 0; idx <= 3; idx++) {
-			Integer block = Integer.parseInt(blocks[idx]);
-			if (0 <= block && block <= 255) {
-				result |= Integer.parseInt(blocks[idx]) << ((3 - idx) * 8);
+	// single pass parser for dotted decimal notation, returns the address as
+	// unsigned 32 bit value or INVALID_FORMAT if the input does not consist of
+	// exactly four blocks and INVALID_BLOCK if a block is not a number between
+	// 0 and 255
+	public static long parseBits(CharSequence s, int offset, int length) {
+		int end = offset + length;
+		long result = 0l;
+		int block = 0;
+		int digits = 0;
+		int dots = 0;
+		boolean invalidBlock = false;
+
+		for (int i = offset; i < end; i++) {
+			char c = s.charAt(i);
+			if (c == '.') {
+				if (digits == 0) {
+					invalidBlock = true;
+				}
+				result = (result << 8) | block;
+				block = 0;
+				digits = 0;
+				dots++;
+			} else if ('0' <= c && c <= '9') {
+				block = block * 10 + (c - '0');
+				digits++;
+				if (block > 255) {
+					invalidBlock = true;
+					block = 0;
+				}
 			} else {
-				throw new NumberFormatException();
+				invalidBlock = true;
 			}
 		}
 
-		return new Ipv4Address(Integer.toUnsignedLong(result));
+		return toBits(result, block, digits, dots, invalidBlock);
 	}
 
-	public String toString() {
-		final short[] shorts = new short[4];
-		for (int i = 0; i < 4; i++) {
-			shorts[i] = (short) (((bits << i * 8) >>> 8 * (3)) & 0xFF);
+	public static long parseBits(char[] s, int offset, int length) {
+		int end = offset + length;
+		long result = 0l;
+		int block = 0;
+		int digits = 0;
+		int dots = 0;
+		boolean invalidBlock = false;
+
+		for (int i = offset; i < end; i++) {
+			char c = s[i];
+			if (c == '.') {
+				if (digits == 0) {
+					invalidBlock = true;
+				}
+				result = (result << 8) | block;
+				block = 0;
+				digits = 0;
+				dots++;
+			} else if ('0' <= c && c <= '9') {
+				block = block * 10 + (c - '0');
+				digits++;
+				if (block > 255) {
+					invalidBlock = true;
+					block = 0;
+				}
+			} else {
+				invalidBlock = true;
+			}
 		}
 
-		final String[] strings = new String[shorts.length];
-		for (int i = 0; i < shorts.length; i++) {
-			strings[i] = String.valueOf(shorts[i]);
+		return toBits(result, block, digits, dots, invalidBlock);
+	}
+
+	// same as parseBits(CharSequence, int, int) for ascii encoded input
+	public static long parseBits(byte[] s, int offset, int length) {
+		int end = offset + length;
+		long result = 0l;
+		int block = 0;
+		int digits = 0;
+		int dots = 0;
+		boolean invalidBlock = false;
+
+		for (int i = offset; i < end; i++) {
+			byte c = s[i];
+			if (c == '.') {
+				if (digits == 0) {
+					invalidBlock = true;
+				}
+				result = (result << 8) | block;
+				block = 0;
+				digits = 0;
+				dots++;
+			} else if ('0' <= c && c <= '9') {
+				block = block * 10 + (c - '0');
+				digits++;
+				if (block > 255) {
+					invalidBlock = true;
+					block = 0;
+				}
+			} else {
+				invalidBlock = true;
+			}
 		}
 
-		return String.join(".", strings);
+		return toBits(result, block, digits, dots, invalidBlock);
+	}
+
+	private static long toBits(long result, int block, int digits, int dots, boolean invalidBlock) {
+		// a wrong number of blocks takes precedence over invalid blocks
+		if (dots != 3) {
+			return INVALID_FORMAT;
+		}
+		if (invalidBlock || digits == 0) {
+			return INVALID_BLOCK;
+		}
+		return ((result << 8) | block) & 0xFFFFFFFFl;
+	}
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	// maximal length of the dotted decimal representation
+	public static final int MAX_LENGTH = 15;
+
+	// writes the dotted decimal form of bits into buf and returns the offset
+	// behind the last character
+	public static int format(long bits, char[] buf, int offset) {
+		for (int i = 3; i >= 0; i--) {
+			int block = (int) (bits >>> (i * 8)) & 0xFF;
+			if (block >= 100) {
+				buf[offset++] = (char) ('0' + block / 100);
+			}
+			if (block >= 10) {
+				buf[offset++] = (char) ('0' + (block / 10) % 10);
+			}
+			buf[offset++] = (char) ('0' + block % 10);
+			if (i > 0) {
+				buf[offset++] = '.';
+			}
+		}
+		return offset;
+	}
+
+	public StringBuilder appendTo(StringBuilder sb) {
+		for (int i = 3; i >= 0; i--) {
+			sb.append((int) (bits >>> (i * 8)) & 0xFF);
+			if (i > 0) {
+				sb.append('.');
+			}
+		}
+		return sb;
+	}
+
+	public String toString() {
+		char[] buf = new char[MAX_LENGTH];
+		return new String(buf, 0, format(bits, buf, 0));
 	}
 
 	public String toHexString() {
-		return String.format("%08x", bits);
+		char[] buf = new char[8];
+		for (int i = 0; i < 8; i++) {
+			buf[i] = HEX_DIGITS[(int) (bits >>> (28 - i * 4)) & 0xF];
+		}
+		return new String(buf);
 	}
 	
 	public long longValue() {
@@ -64,27 +234,79 @@ public class Ipv4Address extends IpAddress {
 	};
 
 	public boolean isGreater(IpAddress ipAddr) {
-		return this.longValue() > ((Ipv4Address) ipAddr).longValue();
+		return compareTo(ipAddr) > 0;
 	}
 
 	public boolean isGreaterEqual(IpAddress ipAddr) {
-		return this.longValue() >= ((Ipv4Address) ipAddr).longValue();
+		return compareTo(ipAddr) >= 0;
 	}
 
 	public boolean isLesser(IpAddress ipAddr) {
-		return this.longValue() < ((Ipv4Address) ipAddr).longValue();
+		return compareTo(ipAddr) < 0;
 	}
 
 	public boolean isLesserEqual(IpAddress ipAddr) {
-		return this.longValue() <= ((Ipv4Address) ipAddr).longValue();
+		return compareTo(ipAddr) <= 0;
+	}
+
+	// overloads for callers which know that both addresses are ipv4
+	public boolean isGreater(Ipv4Address ipAddr) {
+		return bits > ipAddr.bits;
+	}
+
+	public boolean isGreaterEqual(Ipv4Address ipAddr) {
+		return bits >= ipAddr.bits;
+	}
+
+	public boolean isLesser(Ipv4Address ipAddr) {
+		return bits < ipAddr.bits;
+	}
+
+	public boolean isLesserEqual(Ipv4Address ipAddr) {
+		return bits <= ipAddr.bits;
 	}
 
 	public Ipv4Address next() {
-		return new Ipv4Address(bits + 1);
+		return valueOf(bits + 1);
 	}
 	
 	public Ipv4Address prev() {
-		return new Ipv4Address(bits - 1);
+		return valueOf(bits - 1);
+	}
+
+	// the address n addresses behind this one (n may be negative), throws
+	// InvalidIpAddressException if the result is not an ipv4 address
+	public Ipv4Address plus(long n) {
+		if (n < -MAX_BITS || MAX_BITS < n) {
+			throw new InvalidIpAddressException();
+		}
+		return valueOf(bits + n);
+	}
+
+	// as plus, but stops at 0.0.0.0 or 255.255.255.255
+	public Ipv4Address plusSaturated(long n) {
+		n = Math.max(-MAX_BITS, Math.min(MAX_BITS, n));
+		return valueOf(Math.max(0l, Math.min(MAX_BITS, bits + n)));
+	}
+
+	public Ipv4Address minus(long n) {
+		if (n == Long.MIN_VALUE) {
+			throw new InvalidIpAddressException();
+		}
+		return plus(-n);
+	}
+
+	public Ipv4Address minusSaturated(long n) {
+		if (n == Long.MIN_VALUE) {
+			return valueOf(MAX_BITS);
+		}
+		return plusSaturated(-n);
+	}
+
+	// the number of addresses from this address to other, negative if other
+	// is lesser
+	public long distance(Ipv4Address other) {
+		return other.bits - bits;
 	}
 
 	public long highBits() {
@@ -98,26 +320,44 @@ public class Ipv4Address extends IpAddress {
 	public IpAddress getUpperLimit(int cidrSuffix) {
 		long lowBlockUpper = (bits | (~(-1l << MAX_CIDR_SUFFIX - cidrSuffix)));
 
-		return new Ipv4Address(lowBlockUpper);
+		return valueOf(lowBlockUpper);
 	}
 
 	public IpAddress getLowerLimit(int cidrSuffix) {
 		long lowBlockLower = (bits & (-1l << MAX_CIDR_SUFFIX - cidrSuffix));
 
-		return new Ipv4Address(lowBlockLower);
+		return valueOf(lowBlockLower);
 	}
 
 	public short parseCidrSuffix(String s) {
-		short cidrSuffix = Short.parseShort(s);
-		if (cidrSuffix < 0 || cidrSuffix > MAX_CIDR_SUFFIX) {
+		int cidrSuffix = tryParseCidrSuffix(s, MAX_CIDR_SUFFIX);
+		if (cidrSuffix < 0) {
 			throw new NumberFormatException();
 		}
-		return cidrSuffix;
+		return (short) cidrSuffix;
 	}
 	
+	// ipv4 addresses are lesser than all ipv6 addresses, like in the sorted
+	// ranges of IpRangeCollection, see DualStack for embedded addresses
 	@Override
 	public int compareTo(IpAddress o) {
-		Ipv4Address ipv4Addr = (Ipv4Address) o;
-		return Long.signum(bits - ipv4Addr.bits);
+		if (o instanceof Ipv6Address) {
+			return -1;
+		}
+		return compareTo((Ipv4Address) o);
+	}
+
+	public int compareTo(Ipv4Address o) {
+		return Long.compare(bits, o.bits);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Ipv4Address && bits == ((Ipv4Address) o).bits;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(bits);
 	}
 }
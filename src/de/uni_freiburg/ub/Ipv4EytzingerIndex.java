@@ -0,0 +1,125 @@
+package de.uni_freiburg.ub;
+
+// read only lookup structure for the compacted ipv4 ranges of a collection
+// with the ranges in eytzinger order: the ranges form an implicit binary
+// search tree with the children of node k at 2k and 2k + 1. the first levels
+// share a few cache lines and the search is a branch free loop, the sorted
+// arrays of IpRangeIndex and Ipv4RangeSet jump through the whole array and
+// mispredict about every second comparison
+//
+// the bounds are kept as ints with the sign bit flipped, which makes the
+// signed order of the ints the unsigned order of the addresses
+public final class Ipv4EytzingerIndex {
+
+	// node k at index k, index 0 is unused
+	private final int[] lower;
+	private final int[] upper;
+	// the position of the range of a node in the sorted ranges
+	private final int[] rank;
+	private final int size;
+
+	public Ipv4EytzingerIndex(IpRangeCollection ipRangeCollection) {
+		RangeList ranges = ipRangeCollection.toRangeList(false);
+		size = ranges.size;
+		lower = new int[size + 1];
+		upper = new int[size + 1];
+		rank = new int[size + 1];
+
+		int k = first();
+		for (int i = 0; i < size; i++) {
+			set(k, i, ranges.lowerLow[i], ranges.upperLow[i]);
+			k = next(k);
+		}
+	}
+
+	// reads the set like any other read of it, see Ipv4RangeSet
+	public Ipv4EytzingerIndex(Ipv4RangeSet ipv4RangeSet) {
+		size = ipv4RangeSet.size();
+		lower = new int[size + 1];
+		upper = new int[size + 1];
+		rank = new int[size + 1];
+
+		int k = first();
+		for (int i = 0; i < size; i++) {
+			set(k, i, ipv4RangeSet.getLowerLimit(i), ipv4RangeSet.getUpperLimit(i));
+			k = next(k);
+		}
+	}
+
+	private void set(int k, int i, long lowerLimit, long upperLimit) {
+		lower[k] = (int) lowerLimit ^ Integer.MIN_VALUE;
+		upper[k] = (int) upperLimit ^ Integer.MIN_VALUE;
+		rank[k] = i;
+	}
+
+	// the leftmost node, it holds the smallest range
+	private int first() {
+		int k = 1;
+		while (2 * k <= size) {
+			k = 2 * k;
+		}
+		return k;
+	}
+
+	// the node following k in sorted order
+	private int next(int k) {
+		if (2 * k + 1 <= size) {
+			k = 2 * k + 1;
+			while (2 * k <= size) {
+				k = 2 * k;
+			}
+			return k;
+		}
+		// up to the first ancestor of which k is in the left subtree
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	// the node of the last range with a lower limit lesser or equal than x,
+	// 0 if there is none
+	private int search(int x) {
+		int k = 1;
+		while (k <= size) {
+			// right if lower[k] <= x
+			k = 2 * k + (int) (((long) lower[k] - x - 1) >>> 63);
+		}
+		// the trailing zeros are the steps to the left after the last step to
+		// the right, the node of that step is the one searched for
+		return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+	}
+
+	public boolean contains(long bits) {
+		if (bits < 0 || RangeList.IPV4_MAX < bits) {
+			return false;
+		}
+		int x = (int) bits ^ Integer.MIN_VALUE;
+		int k = search(x);
+		return k != 0 && x <= upper[k];
+	}
+
+	public boolean contains(IpAddress ipAddr) {
+		if (!(ipAddr instanceof Ipv4Address)) {
+			return false;
+		}
+		return contains(((Ipv4Address) ipAddr).longValue());
+	}
+
+	// returns the position of the range containing the address in the
+	// sorted ranges or -1, like IpRangeIndex.indexOfIpv4
+	public int indexOf(long bits) {
+		if (bits < 0 || RangeList.IPV4_MAX < bits) {
+			return -1;
+		}
+		int x = (int) bits ^ Integer.MIN_VALUE;
+		int k = search(x);
+		return k != 0 && x <= upper[k] ? rank[k] : -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// approximate number of bytes used by this index
+	public long memoryFootprint() {
+		return 32 + 3 * (16 + 4l * (size + 1));
+	}
+}
@@ -0,0 +1,61 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Ipv4EytzingerIndexTest {
+
+	@Test
+	public void testContains() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.128-132.230.25.200"));
+		ipRangeCollection.add(IpRange.parseIpRange("0.0.0.0"));
+		ipRangeCollection.add(IpRange.parseIpRange("200.0.0.0-255.255.255.255"));
+		ipRangeCollection.add(IpRange.parseIpRange("2001:db8::/32"));
+
+		Ipv4EytzingerIndex index = new Ipv4EytzingerIndex(ipRangeCollection);
+		assertEquals(3, index.size());
+		assertTrue(index.contains(IpAddress.parseIpAddress("0.0.0.0")));
+		assertFalse(index.contains(IpAddress.parseIpAddress("0.0.0.1")));
+		assertTrue(index.contains(IpAddress.parseIpAddress("132.230.25.150")));
+		assertFalse(index.contains(IpAddress.parseIpAddress("132.230.25.201")));
+		assertTrue(index.contains(IpAddress.parseIpAddress("255.255.255.255")));
+		assertFalse(index.contains(IpAddress.parseIpAddress("2001:db8::1")));
+		assertEquals(1, index.indexOf(((Ipv4Address) IpAddress.parseIpAddress("132.230.25.0")).longValue()));
+		assertEquals(-1, index.indexOf(-1l));
+		assertEquals(-1, index.indexOf(0x100000000l));
+
+		assertFalse(new Ipv4EytzingerIndex(new IpRangeCollection()).contains(0l));
+	}
+
+	@Test
+	public void testRandom() throws Exception {
+		Random random = new Random(23);
+		// all tree shapes up to a few levels
+		for (int n = 0; n < 70; n++) {
+			Ipv4RangeSet ipv4RangeSet = new Ipv4RangeSet();
+			for (int i = 0; i < n; i++) {
+				long lower = random.nextInt(1000);
+				ipv4RangeSet.add(lower, lower + random.nextInt(10));
+			}
+			ipv4RangeSet.add(0xFFFFFFF0l, 0xFFFFFFFFl);
+
+			IpRangeIndex expected = new IpRangeIndex(ipv4RangeSet.toIpRangeCollection());
+			Ipv4EytzingerIndex index = new Ipv4EytzingerIndex(ipv4RangeSet);
+			assertEquals(ipv4RangeSet.size(), index.size());
+			for (long bits = 0; bits < 1020; bits++) {
+				assertEquals(expected.indexOfIpv4(bits), index.indexOf(bits));
+				assertEquals(ipv4RangeSet.contains(bits), index.contains(bits));
+			}
+			for (long bits = 0xFFFFFFE0l; bits <= 0xFFFFFFFFl; bits++) {
+				assertEquals(expected.indexOfIpv4(bits), index.indexOf(bits));
+			}
+		}
+	}
+}
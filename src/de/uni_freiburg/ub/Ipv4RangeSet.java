@@ -0,0 +1,205 @@
+package de.uni_freiburg.ub;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
+import de.uni_freiburg.ub.Exception.InvalidRangeException;
+
+// memory efficient set of ipv4 ranges
+// each range is packed into a single long (lowerLimit << 32 | upperLimit)
+// which needs 8 bytes per range instead of several objects per IpRange,
+// IpRange objects are only created on demand while iterating
+//
+// the set is not thread safe. ranges are added unsorted and the first read
+// after an add compacts the set in place, so reads change the set as well:
+// every method, including contains, size and the getters, needs external
+// synchronization while ranges are added. once compact() has been called
+// after the last add and the set was safely published, concurrent reads
+// are safe
+public class Ipv4RangeSet implements Iterable<IpRange> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// rough size of the object header and fields of this class and its array
+	private static final long SHALLOW_SIZE = 32 + 16;
+
+	private long[] ranges;
+	private int size;
+	private boolean compacted = true;
+
+	public Ipv4RangeSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public Ipv4RangeSet(int initialCapacity) {
+		this.ranges = new long[Math.max(initialCapacity, 1)];
+	}
+
+	public Ipv4RangeSet(IpRangeCollection ipRangeCollection) throws InvalidIpAddressException {
+		this(ipRangeCollection.ranges().size());
+		for (IpRange range : ipRangeCollection.ranges()) {
+			add(range);
+		}
+	}
+
+	public Ipv4RangeSet add(IpRange ipRange) throws InvalidIpAddressException {
+		if (!(ipRange.lowerLimit instanceof Ipv4Address)) {
+			throw new InvalidIpAddressException();
+		}
+		return add(((Ipv4Address) ipRange.lowerLimit).longValue(), ((Ipv4Address) ipRange.upperLimit).longValue());
+	}
+
+	public Ipv4RangeSet add(long lowerLimit, long upperLimit) throws InvalidRangeException {
+		if (lowerLimit < 0 || upperLimit > 0xFFFFFFFFl || lowerLimit > upperLimit) {
+			throw new InvalidRangeException();
+		}
+
+		if (size == ranges.length) {
+			ranges = Arrays.copyOf(ranges, size + (size >> 1) + 1);
+		}
+
+		long packed = pack(lowerLimit, upperLimit);
+		if (compacted && size > 0 && Long.compareUnsigned(packed, ranges[size - 1]) <= 0) {
+			compacted = false;
+		} else if (compacted && size > 0 && lowerLimit <= upper(ranges[size - 1]) + 1) {
+			// overlapping or touching the last range
+			compacted = false;
+		}
+
+		ranges[size++] = packed;
+		return this;
+	}
+
+	// sorts and merges overlapping or touching ranges in place
+	public Ipv4RangeSet compact() {
+		if (compacted) {
+			return this;
+		}
+
+		// flipping the sign bit makes the signed sort order equal to the
+		// unsigned order of the packed ranges
+		for (int i = 0; i < size; i++) {
+			ranges[i] ^= Long.MIN_VALUE;
+		}
+		Arrays.sort(ranges, 0, size);
+		for (int i = 0; i < size; i++) {
+			ranges[i] ^= Long.MIN_VALUE;
+		}
+
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			long lower = lower(ranges[i]);
+			long upper = upper(ranges[i]);
+			if (n > 0 && lower <= upper(ranges[n - 1]) + 1) {
+				if (upper > upper(ranges[n - 1])) {
+					ranges[n - 1] = pack(lower(ranges[n - 1]), upper);
+				}
+			} else {
+				ranges[n++] = ranges[i];
+			}
+		}
+
+		size = n;
+		compacted = true;
+		return this;
+	}
+
+	public boolean contains(IpAddress ipAddr) {
+		if (!(ipAddr instanceof Ipv4Address)) {
+			return false;
+		}
+		return contains(((Ipv4Address) ipAddr).longValue());
+	}
+
+	public boolean contains(long bits) {
+		compact();
+
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (lower(ranges[mid]) <= bits) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return high >= 0 && bits <= upper(ranges[high]);
+	}
+
+	public Ipv4RangeSet trimToSize() {
+		if (ranges.length > size) {
+			ranges = Arrays.copyOf(ranges, Math.max(size, 1));
+		}
+		return this;
+	}
+
+	// approximate number of bytes used by this set
+	public long memoryFootprint() {
+		return SHALLOW_SIZE + 8l * ranges.length;
+	}
+
+	public int size() {
+		compact();
+		return size;
+	}
+
+	public long getLowerLimit(int idx) {
+		compact();
+		return lower(ranges[idx]);
+	}
+
+	public long getUpperLimit(int idx) {
+		compact();
+		return upper(ranges[idx]);
+	}
+
+	public IpRange getIpRange(int idx) {
+		compact();
+		return new IpRange(new Ipv4Address(lower(ranges[idx])), new Ipv4Address(upper(ranges[idx])));
+	}
+
+	public IpRangeCollection toIpRangeCollection() {
+		IpRangeCollection result = new IpRangeCollection();
+		for (IpRange range : this) {
+			result.add(range);
+		}
+		return result;
+	}
+
+	@Override
+	public Iterator<IpRange> iterator() {
+		compact();
+		return new Iterator<IpRange>() {
+			private int idx = 0;
+
+			@Override
+			public boolean hasNext() {
+				return idx < size;
+			}
+
+			@Override
+			public IpRange next() {
+				if (idx >= size) {
+					throw new NoSuchElementException();
+				}
+				return getIpRange(idx++);
+			}
+		};
+	}
+
+	private static long pack(long lowerLimit, long upperLimit) {
+		return (lowerLimit << 32) | upperLimit;
+	}
+
+	private static long lower(long packed) {
+		return packed >>> 32;
+	}
+
+	private static long upper(long packed) {
+		return packed & 0xFFFFFFFFl;
+	}
+}
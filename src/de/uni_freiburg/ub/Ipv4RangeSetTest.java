@@ -0,0 +1,56 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class Ipv4RangeSetTest {
+
+	@Test
+	public void testCompact() throws Exception {
+		Ipv4RangeSet ipv4RangeSet = new Ipv4RangeSet(1);
+		ipv4RangeSet.add(IpRange.parseIpRange("132.230.30.0-132.230.30.130"));
+		ipv4RangeSet.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipv4RangeSet.add(IpRange.parseIpRange("132.230.25.128-132.230.25.255"));
+		ipv4RangeSet.add(IpRange.parseIpRange("10.0.0.0/8"));
+		ipv4RangeSet.add(IpRange.parseIpRange("255.255.255.0/24"));
+		ipv4RangeSet.add(IpRange.parseIpRange("132.230.30.5"));
+
+		assertEquals(4, ipv4RangeSet.size());
+		assertArrayEquals(
+				new String[] { "10.0.0.0-10.255.255.255", "132.230.25.0-132.230.25.255",
+						"132.230.30.0-132.230.30.130", "255.255.255.0-255.255.255.255" },
+				ipv4RangeSet.toIpRangeCollection().toRangeStrings().toArray());
+	}
+
+	@Test
+	public void testContains() throws Exception {
+		IpRangeCollection ipRangeCollection = new IpRangeCollection();
+		ipRangeCollection.add(IpRange.parseIpRange("132.230.25.0-132.230.25.127"));
+		ipRangeCollection.add(IpRange.parseIpRange("200.0.0.0-255.255.255.255"));
+
+		Ipv4RangeSet ipv4RangeSet = new Ipv4RangeSet(ipRangeCollection);
+		assertTrue(ipv4RangeSet.contains(IpAddress.parseIpAddress("132.230.25.0")));
+		assertTrue(ipv4RangeSet.contains(IpAddress.parseIpAddress("132.230.25.127")));
+		assertFalse(ipv4RangeSet.contains(IpAddress.parseIpAddress("132.230.25.128")));
+		assertTrue(ipv4RangeSet.contains(IpAddress.parseIpAddress("255.255.255.255")));
+		assertFalse(ipv4RangeSet.contains(IpAddress.parseIpAddress("0.0.0.0")));
+		assertFalse(ipv4RangeSet.contains(IpAddress.parseIpAddress("::1")));
+
+		ipv4RangeSet.add(0l, 0l);
+		assertTrue(ipv4RangeSet.contains(0l));
+	}
+
+	@Test
+	public void testMemoryFootprint() throws Exception {
+		Ipv4RangeSet ipv4RangeSet = new Ipv4RangeSet(1000);
+		for (long i = 0; i < 1000; i++) {
+			ipv4RangeSet.add(i * 4, i * 4 + 1);
+		}
+		assertEquals(1000, ipv4RangeSet.size());
+		assertTrue(ipv4RangeSet.memoryFootprint() < 1000 * 8 + 100);
+	}
+}
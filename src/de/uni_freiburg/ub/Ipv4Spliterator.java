@@ -0,0 +1,64 @@
+package de.uni_freiburg.ub;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+// the addresses next..last of an ipv4 range as unsigned bits, splits in
+// halves
+final class Ipv4Spliterator implements Spliterator.OfLong {
+
+	private long next;
+	private final long last;
+
+	Ipv4Spliterator(long next, long last) {
+		this.next = next;
+		this.last = last;
+	}
+
+	@Override
+	public boolean tryAdvance(LongConsumer action) {
+		if (next > last) {
+			return false;
+		}
+		action.accept(next++);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(LongConsumer action) {
+		long last = this.last;
+		for (long bits = next; bits <= last; bits++) {
+			action.accept(bits);
+		}
+		next = last + 1;
+	}
+
+	@Override
+	public Ipv4Spliterator trySplit() {
+		// the prefix gets the smaller half
+		long mid = next + (last - next + 1) / 2;
+		if (mid <= next) {
+			return null;
+		}
+		Ipv4Spliterator prefix = new Ipv4Spliterator(next, mid - 1);
+		next = mid;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Math.max(0l, last - next + 1);
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+	}
+
+	// natural order of the bits
+	@Override
+	public Comparator<? super Long> getComparator() {
+		return null;
+	}
+}
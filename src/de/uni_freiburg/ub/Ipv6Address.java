@@ -6,100 +6,398 @@ public class Ipv6Address extends IpAddress {
 
 	protected static final short MAX_CIDR_SUFFIX = 128;
 	
-	protected long highBits;
-	protected long lowBits;
+	protected final long highBits;
+	protected final long lowBits;
 	
 	public Ipv6Address(long highBits, long lowBits) {
 		this.highBits = highBits;
 		this.lowBits = lowBits;
 	}
 
-	public static IpAddress parseIpAddress(String s) {
+	// return values of parseBits
+	public static final int VALID = 0;
+	public static final int INVALID_FORMAT = -1;
+	public static final int INVALID_BLOCK = -2;
 
-		String[] blocks = s.split(":");
+	public static IpAddress parseIpAddress(String s) throws InvalidIpAddressException, NumberFormatException {
+		return tryParseIpAddress(s).getOrThrow();
+	}
 
-		long high = 0L;
-		long low = 0L;
+	// same as parseIpAddress but reports invalid input without throwing
+	public static ParseResult<IpAddress> tryParseIpAddress(String s) {
+		long[] bits = new long[2];
+		int state = parseBits(s, 0, s.length(), bits);
 
-		for (int i = 0; i < 8; i++) {
-			long longValue = 0l;
-			if (! blocks[i].isEmpty()) {
-				longValue = Long.parseLong(blocks[i], 16);
+		if (state == INVALID_FORMAT) {
+			return ParseResult.invalid(ParseError.INVALID_FORMAT);
+		}
+		if (state == INVALID_BLOCK) {
+			return ParseResult.invalid(ParseError.INVALID_NUMBER);
+		}
+
+		return ParseResult.<IpAddress>valid(new Ipv6Address(bits[0], bits[1]));
+	}
+
+	public static int parseBits(CharSequence s, long[] result) {
+		return parseBits(s, 0, s.length(), result);
+	}
+
+	// single pass parser for the text representation of ipv6 addresses
+	// (rfc 4291 section 2.2), on success the high and low bits are stored in
+	// result[0] and result[1] and VALID is returned
+	//
+	// accepted forms:
+	// * eight groups of up to four hex digits (mixed case)
+	// 2001:0DB8:0:0:0:0:0:1
+	// * one "::" replacing one or more groups of zeros
+	// 2001:db8::1, ::1, ::
+	// * the last 32 bits in dotted decimal notation
+	// ::ffff:132.230.25.150, 64:ff9b::132.230.25.150
+	// * an optional zone id, which is ignored
+	// fe80::1%eth0
+	// * for backward compatibility empty groups are read as zero if the
+	// address has eight groups, a single trailing colon is ignored
+	// 2001:4860:4860:::::8888, 2001:4860:4860:0:0:0:0:8888:
+	public static int parseBits(CharSequence s, int offset, int length, long[] result) {
+		int end = offset + length;
+
+		// a zone id ends the address
+		for (int i = offset; i < end; i++) {
+			if (s.charAt(i) == '%') {
+				if (i == end - 1) {
+					return INVALID_FORMAT;
+				}
+				end = i;
+				break;
+			}
+		}
+
+		int i = offset;
+		if (i < end && s.charAt(i) == ':') {
+			// a leading colon is only allowed as part of "::"
+			if (i + 1 >= end || s.charAt(i + 1) != ':') {
+				return INVALID_FORMAT;
+			}
+			i++;
+		}
+
+		// all groups with empty groups read as zero
+		long allHigh = 0l;
+		long allLow = 0l;
+		int groups = 0;
+		int emptyGroups = 0;
+
+		// groups in front of and after the first empty group
+		long headHigh = 0l;
+		long headLow = 0l;
+		int headGroups = 0;
+		long tailHigh = 0l;
+		long tailLow = 0l;
+
+		boolean invalidBlock = false;
+
+		while (i < end) {
+			int start = i;
+			int value = 0;
+			boolean embeddedIpv4 = false;
+
+			while (i < end) {
+				char c = s.charAt(i);
+				int digit;
+				if ('0' <= c && c <= '9') {
+					digit = c - '0';
+				} else if ('a' <= c && c <= 'f') {
+					digit = c - 'a' + 10;
+				} else if ('A' <= c && c <= 'F') {
+					digit = c - 'A' + 10;
+				} else if (c == ':') {
+					break;
+				} else if (c == '.') {
+					embeddedIpv4 = true;
+					break;
+				} else {
+					digit = 0;
+					invalidBlock = true;
+				}
+				value = (value << 4) | digit;
+				i++;
+			}
+
+			if (embeddedIpv4) {
+				// the embedded ipv4 address has to be the last part
+				long ipv4 = Ipv4Address.parseBits(s, start, end - start);
+				if (ipv4 == Ipv4Address.INVALID_FORMAT) {
+					return INVALID_FORMAT;
+				}
+				if (ipv4 == Ipv4Address.INVALID_BLOCK) {
+					invalidBlock = true;
+					ipv4 = 0l;
+				}
+
+				allHigh = (allHigh << 32) | (allLow >>> 32);
+				allLow = (allLow << 32) | ipv4;
+				tailHigh = (tailHigh << 32) | (tailLow >>> 32);
+				tailLow = (tailLow << 32) | ipv4;
+				groups += 2;
+				i = end;
+				break;
+			}
+
+			int digits = i - start;
+			if (digits > 4) {
+				invalidBlock = true;
+			}
+
+			// skip the separator, an empty last group is dropped
+			if (i < end) {
+				i++;
+			} else if (digits == 0) {
+				break;
 			}
-			if (longValue < 0 || longValue > 65535) {
-				throw new NumberFormatException();
+
+			if (digits == 0) {
+				if (emptyGroups == 0) {
+					headHigh = allHigh;
+					headLow = allLow;
+					headGroups = groups;
+				}
+				emptyGroups++;
+				value = 0;
+			} else if (emptyGroups > 0) {
+				tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+				tailLow = (tailLow << 16) | (value & 0xFFFF);
 			}
-			
-			if (0 <= i && i < 4) {
-				high |= (longValue << ((4 - i - 1) * 16));
+
+			allHigh = (allHigh << 16) | (allLow >>> 48);
+			allLow = (allLow << 16) | (value & 0xFFFF);
+			groups++;
+		}
+
+		if (groups == 8) {
+			// eight groups, possibly with empty groups read as zero
+			result[0] = allHigh;
+			result[1] = allLow;
+		} else if (emptyGroups == 1 && groups < 8) {
+			// "::" is replaced by as much zero groups as needed
+			int shift = (8 - headGroups) * 16;
+			if (shift >= 64) {
+				result[0] = headLow << (shift - 64) | tailHigh;
+				result[1] = tailLow;
 			} else {
-				low |= (longValue << ((4 - i - 1) * 16));
+				result[0] = (headHigh << shift) | (headLow >>> (64 - shift)) | tailHigh;
+				result[1] = (headLow << shift) | tailLow;
 			}
+		} else {
+			return INVALID_FORMAT;
 		}
 
-		return new Ipv6Address(high, low);
+		if (invalidBlock) {
+			return INVALID_BLOCK;
+		}
+
+		return VALID;
 	}
 
-	private short[] toShortArray() {
-		int N_SHORTS = 8;
-		final short[] shorts = new short[N_SHORTS];
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	// length of the zero padded text representation
+	public static final int PADDED_LENGTH = 39;
 
-		for (int i = 0; i < N_SHORTS; i++) {
-			if (0 <= i && i < 4)
-				shorts[i] = (short) (((highBits << i * 16) >>> 16 * (N_SHORTS - 1)) & 0xFFFF);
-			else
-				shorts[i] = (short) (((lowBits << i * 16) >>> 16 * (N_SHORTS - 1)) & 0xFFFF);
+	private static int group(long highBits, long lowBits, int i) {
+		long bits = i < 4 ? highBits : lowBits;
+		return (int) (bits >>> (48 - (i & 3) * 16)) & 0xFFFF;
+	}
+
+	// writes the zero padded form, e.g. 2001:0db8:0000:0000:0000:0000:0000:0001,
+	// into buf and returns the offset behind the last character
+	public static int format(long highBits, long lowBits, char[] buf, int offset) {
+		for (int i = 0; i < 8; i++) {
+			if (i > 0) {
+				buf[offset++] = ':';
+			}
+			int group = group(highBits, lowBits, i);
+			buf[offset++] = HEX_DIGITS[group >>> 12];
+			buf[offset++] = HEX_DIGITS[(group >>> 8) & 0xF];
+			buf[offset++] = HEX_DIGITS[(group >>> 4) & 0xF];
+			buf[offset++] = HEX_DIGITS[group & 0xF];
+		}
+		return offset;
+	}
+
+	// start (upper 16 bits) and length (lower 16 bits) of the longest run of
+	// at least two zero groups, the first one wins on equal length (rfc 5952)
+	private static int longestZeroRun(long highBits, long lowBits) {
+		int bestStart = -1;
+		int bestLength = 1;
+		int start = -1;
+		for (int i = 0; i <= 8; i++) {
+			if (i < 8 && group(highBits, lowBits, i) == 0) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				if (i - start > bestLength) {
+					bestStart = start;
+					bestLength = i - start;
+				}
+				start = -1;
+			}
+		}
+		if (bestStart < 0) {
+			return -1;
 		}
+		return (bestStart << 16) | bestLength;
+	}
 
-		return shorts;
+	private static boolean isIpv4Mapped(long highBits, long lowBits) {
+		return highBits == 0l && (lowBits >>> 32) == 0xFFFFl;
 	}
 
-	private String[] toArrayOfZeroPaddedstrings() {
-		final short[] shorts = toShortArray();
-		final String[] strings = new String[shorts.length];
-		for (int i = 0; i < shorts.length; i++) {
-			strings[i] = String.format("%04x", shorts[i]);
+	// writes the canonical form of rfc 5952, e.g. 2001:db8::1 or
+	// ::ffff:132.230.25.150, into buf and returns the offset behind the last
+	// character, buf needs space for up to 39 characters
+	public static int formatCanonical(long highBits, long lowBits, char[] buf, int offset) {
+		if (isIpv4Mapped(highBits, lowBits)) {
+			buf[offset++] = ':';
+			buf[offset++] = ':';
+			buf[offset++] = 'f';
+			buf[offset++] = 'f';
+			buf[offset++] = 'f';
+			buf[offset++] = 'f';
+			buf[offset++] = ':';
+			return Ipv4Address.format(lowBits & 0xFFFFFFFFl, buf, offset);
 		}
-		return strings;
+
+		int zeroRun = longestZeroRun(highBits, lowBits);
+		int zeroStart = zeroRun < 0 ? 8 : zeroRun >>> 16;
+		int zeroEnd = zeroRun < 0 ? 8 : zeroStart + (zeroRun & 0xFFFF);
+
+		for (int i = 0; i < 8; i++) {
+			if (i == zeroStart) {
+				buf[offset++] = ':';
+				if (zeroEnd == 8) {
+					buf[offset++] = ':';
+				}
+				i = zeroEnd - 1;
+				continue;
+			}
+			if (i > 0) {
+				buf[offset++] = ':';
+			}
+			int group = group(highBits, lowBits, i);
+			for (int shift = 12; shift > 0; shift -= 4) {
+				if ((group >>> shift) != 0) {
+					buf[offset++] = HEX_DIGITS[(group >>> shift) & 0xF];
+				}
+			}
+			buf[offset++] = HEX_DIGITS[group & 0xF];
+		}
+		return offset;
+	}
+
+	public StringBuilder appendTo(StringBuilder sb) {
+		for (int i = 0; i < 8; i++) {
+			if (i > 0) {
+				sb.append(':');
+			}
+			int group = group(highBits, lowBits, i);
+			sb.append(HEX_DIGITS[group >>> 12]);
+			sb.append(HEX_DIGITS[(group >>> 8) & 0xF]);
+			sb.append(HEX_DIGITS[(group >>> 4) & 0xF]);
+			sb.append(HEX_DIGITS[group & 0xF]);
+		}
+		return sb;
+	}
+
+	public StringBuilder appendCanonicalTo(StringBuilder sb) {
+		if (isIpv4Mapped(highBits, lowBits)) {
+			sb.append("::ffff:");
+			for (int i = 3; i >= 0; i--) {
+				sb.append((int) (lowBits >>> (i * 8)) & 0xFF);
+				if (i > 0) {
+					sb.append('.');
+				}
+			}
+			return sb;
+		}
+
+		int zeroRun = longestZeroRun(highBits, lowBits);
+		int zeroStart = zeroRun < 0 ? 8 : zeroRun >>> 16;
+		int zeroEnd = zeroRun < 0 ? 8 : zeroStart + (zeroRun & 0xFFFF);
+
+		for (int i = 0; i < 8; i++) {
+			if (i == zeroStart) {
+				sb.append(':');
+				if (zeroEnd == 8) {
+					sb.append(':');
+				}
+				i = zeroEnd - 1;
+				continue;
+			}
+			if (i > 0) {
+				sb.append(':');
+			}
+			int group = group(highBits, lowBits, i);
+			for (int shift = 12; shift > 0; shift -= 4) {
+				if ((group >>> shift) != 0) {
+					sb.append(HEX_DIGITS[(group >>> shift) & 0xF]);
+				}
+			}
+			sb.append(HEX_DIGITS[group & 0xF]);
+		}
+		return sb;
 	}
 
 	public String toString() {
-		return String.join(":", toArrayOfZeroPaddedstrings());
+		char[] buf = new char[PADDED_LENGTH];
+		return new String(buf, 0, format(highBits, lowBits, buf, 0));
+	}
+
+	public String toCanonicalString() {
+		char[] buf = new char[PADDED_LENGTH];
+		return new String(buf, 0, formatCanonical(highBits, lowBits, buf, 0));
 	}
 	
 	public String toHexString() {
-		return String.format("%016x", highBits) + String.format("%016x", lowBits);
+		char[] buf = new char[32];
+		for (int i = 0; i < 16; i++) {
+			buf[i] = HEX_DIGITS[(int) (highBits >>> (60 - i * 4)) & 0xF];
+			buf[i + 16] = HEX_DIGITS[(int) (lowBits >>> (60 - i * 4)) & 0xF];
+		}
+		return new String(buf);
 	}
 
 	public boolean isGreater(IpAddress ipAddr) {
-		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
-
-		if (this.highBits == ipv6Addr.highBits) {
-			return (Long.compareUnsigned(this.lowBits, ipv6Addr.lowBits) > 0);
-			//return this.lowBits > ipv6Addr.lowBits;
-		} else {
-			//return this.highBits > ipv6Addr.highBits;
-			return (Long.compareUnsigned(this.highBits, ipv6Addr.highBits) > 0);
-		}
+		return compareTo(ipAddr) > 0;
 	}
 
 	public boolean isGreaterEqual(IpAddress ipAddr) {
-		Ipv6Address ipv6Addr = (Ipv6Address) ipAddr;
-		if (this.highBits == ipv6Addr.highBits) {
-			//return this.lowBits >= ipv6Addr.lowBits;
-			return (Long.compareUnsigned(this.lowBits, ipv6Addr.lowBits) >= 0);
-		} else {
-			//return this.highBits > ipv6Addr.highBits;
-			return (Long.compareUnsigned(this.highBits, ipv6Addr.highBits) > 0);
-		}
+		return compareTo(ipAddr) >= 0;
 	}
-	
+
 	public boolean isLesser(IpAddress ipAddr) {
-		return ! ipAddr.isGreaterEqual(this);
+		return compareTo(ipAddr) < 0;
 	}
-	
+
 	public boolean isLesserEqual(IpAddress ipAddr) {
-		return ! ipAddr.isGreater(this);
+		return compareTo(ipAddr) <= 0;
+	}
+
+	// overloads for callers which know that both addresses are ipv6
+	public boolean isGreater(Ipv6Address ipAddr) {
+		return compareTo(ipAddr) > 0;
+	}
+
+	public boolean isGreaterEqual(Ipv6Address ipAddr) {
+		return compareTo(ipAddr) >= 0;
+	}
+
+	public boolean isLesser(Ipv6Address ipAddr) {
+		return compareTo(ipAddr) < 0;
+	}
+
+	public boolean isLesserEqual(Ipv6Address ipAddr) {
+		return compareTo(ipAddr) <= 0;
 	}
 	
 
@@ -148,11 +446,11 @@ public class Ipv6Address extends IpAddress {
 	}
 	
 	public short parseCidrSuffix(String s) {
-		short cidrSuffix = Short.parseShort(s);
-		if (cidrSuffix < 0 || cidrSuffix > MAX_CIDR_SUFFIX) {
+		int cidrSuffix = tryParseCidrSuffix(s, MAX_CIDR_SUFFIX);
+		if (cidrSuffix < 0) {
 			throw new NumberFormatException();
 		}
-		return cidrSuffix;
+		return (short) cidrSuffix;
 	}
 	
 	public Ipv6Address next() {
@@ -179,14 +477,138 @@ public class Ipv6Address extends IpAddress {
 		}
 	}
 	
+	// the address n addresses behind this one (n may be negative), throws
+	// InvalidIpAddressException if the result is not an ipv6 address
+	public Ipv6Address plus(long n) {
+		// -n of Long.MIN_VALUE is 2^63 read unsigned
+		return n >= 0 ? add(0l, n, false) : subtract(0l, -n, false);
+	}
+
+	// as plus, but stops at :: or ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff
+	public Ipv6Address plusSaturated(long n) {
+		return n >= 0 ? add(0l, n, true) : subtract(0l, -n, true);
+	}
+
+	public Ipv6Address minus(long n) {
+		return n >= 0 ? subtract(0l, n, false) : add(0l, -n, false);
+	}
+
+	public Ipv6Address minusSaturated(long n) {
+		return n >= 0 ? subtract(0l, n, true) : add(0l, -n, true);
+	}
+
+	// the offset is an unsigned 128 bit value
+	public Ipv6Address plus(long highOffset, long lowOffset) {
+		return add(highOffset, lowOffset, false);
+	}
+
+	public Ipv6Address plusSaturated(long highOffset, long lowOffset) {
+		return add(highOffset, lowOffset, true);
+	}
+
+	public Ipv6Address minus(long highOffset, long lowOffset) {
+		return subtract(highOffset, lowOffset, false);
+	}
+
+	public Ipv6Address minusSaturated(long highOffset, long lowOffset) {
+		return subtract(highOffset, lowOffset, true);
+	}
+
+	// 128 bit addition with carry, the sum wrapped around if it is lesser
+	// than this address
+	private Ipv6Address add(long highOffset, long lowOffset, boolean saturate) {
+		long low = lowBits + lowOffset;
+		long high = highBits + highOffset + (Long.compareUnsigned(low, lowBits) < 0 ? 1 : 0);
+		if (RangeList.compare(high, low, highBits, lowBits) < 0) {
+			if (!saturate) {
+				throw new InvalidIpAddressException();
+			}
+			return new Ipv6Address(-1l, -1l);
+		}
+		return new Ipv6Address(high, low);
+	}
+
+	private Ipv6Address subtract(long highOffset, long lowOffset, boolean saturate) {
+		if (RangeList.compare(highBits, lowBits, highOffset, lowOffset) < 0) {
+			if (!saturate) {
+				throw new InvalidIpAddressException();
+			}
+			return new Ipv6Address(0l, 0l);
+		}
+		long low = lowBits - lowOffset;
+		long high = highBits - highOffset - (Long.compareUnsigned(lowBits, lowOffset) < 0 ? 1 : 0);
+		return new Ipv6Address(high, low);
+	}
+
+	// the number of addresses from this address to other, negative if other
+	// is lesser, throws ArithmeticException if it does not fit into a long
+	public long distance(Ipv6Address other) {
+		return distance(other, false);
+	}
+
+	// as distance, but stops at Long.MIN_VALUE or Long.MAX_VALUE
+	public long distanceSaturated(Ipv6Address other) {
+		return distance(other, true);
+	}
+
+	private long distance(Ipv6Address other, boolean saturate) {
+		boolean negative = other.compareTo(this) < 0;
+		Ipv6Address lower = negative ? other : this;
+		Ipv6Address upper = negative ? this : other;
+		long low = upper.lowBits - lower.lowBits;
+		long high = upper.highBits - lower.highBits - (Long.compareUnsigned(upper.lowBits, lower.lowBits) < 0 ? 1 : 0);
+
+		// -2^63 is the only negative distance whose absolute value does not
+		// fit into a long
+		if (high != 0l || low < 0 && !(negative && low == Long.MIN_VALUE)) {
+			if (!saturate) {
+				throw new ArithmeticException("distance does not fit into a long");
+			}
+			return negative ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+		return negative ? -low : low;
+	}
+
+	// writes the absolute distance to other as unsigned 128 bit value to
+	// result[0] (high bits) and result[1] (low bits) and returns its sign
+	public int distance(Ipv6Address other, long[] result) {
+		int sign = other.compareTo(this);
+		Ipv6Address lower = sign < 0 ? other : this;
+		Ipv6Address upper = sign < 0 ? this : other;
+		result[1] = upper.lowBits - lower.lowBits;
+		result[0] = upper.highBits - lower.highBits - (Long.compareUnsigned(upper.lowBits, lower.lowBits) < 0 ? 1 : 0);
+		return Integer.signum(sign);
+	}
+
+	// ipv6 addresses are greater than all ipv4 addresses
 	@Override
 	public int compareTo(IpAddress o) {
-		Ipv6Address ipv6Addr = (Ipv6Address) o;
-		
-		if (highBits == ipv6Addr.highBits) {
-			return Long.signum(lowBits - ipv6Addr.lowBits);
+		if (o instanceof Ipv4Address) {
+			return 1;
+		}
+		return compareTo((Ipv6Address) o);
+	}
+
+	// both halves are compared unsigned
+	public int compareTo(Ipv6Address o) {
+		if (highBits == o.highBits) {
+			return Long.compareUnsigned(lowBits, o.lowBits);
 		} else {
-			return Long.signum(highBits - ipv6Addr.highBits);
-		} 
+			return Long.compareUnsigned(highBits, o.highBits);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Ipv6Address)) {
+			return false;
+		}
+		Ipv6Address ipv6Addr = (Ipv6Address) o;
+		return highBits == ipv6Addr.highBits && lowBits == ipv6Addr.lowBits;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(highBits) + Long.hashCode(lowBits);
 	}
 }
@@ -0,0 +1,61 @@
+package de.uni_freiburg.ub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() throws Exception {
+		assertEquals(31, LatencyHistogram.bucket(31));
+		assertEquals(32, LatencyHistogram.bucket(32));
+		assertEquals(64, LatencyHistogram.bucket(64));
+		assertEquals(64, LatencyHistogram.bucket(65));
+		assertEquals(65, LatencyHistogram.bucket(66));
+		assertEquals(65l, LatencyHistogram.highestValue(64));
+
+		// the buckets are consecutive and cover all values
+		long previous = -1l;
+		for (int bucket = 0; bucket <= LatencyHistogram.bucket(Long.MAX_VALUE); bucket++) {
+			long highest = LatencyHistogram.highestValue(bucket);
+			assertEquals(bucket, LatencyHistogram.bucket(previous + 1));
+			assertEquals(bucket, LatencyHistogram.bucket(highest));
+			assertTrue(highest - previous <= Math.max(1l, (previous + 1) / 32));
+			previous = highest;
+		}
+		assertEquals(Long.MAX_VALUE, previous);
+	}
+
+	@Test
+	public void testPercentiles() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99.0));
+
+		Random random = new Random(25);
+		long[] values = new long[10000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(random.nextDouble() * 20);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, histogram.getCount());
+		assertEquals(values[values.length - 1], histogram.getMax());
+		assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100.0));
+		for (double percentile : new double[] { 0.0, 1.0, 50.0, 90.0, 99.0, 99.9 }) {
+			long expected = values[Math.max(0, (int) Math.ceil(percentile / 100.0 * values.length) - 1)];
+			long actual = histogram.getValueAtPercentile(percentile);
+			assertTrue(actual >= expected);
+			assertTrue(actual - expected <= Math.max(1l, expected / 32));
+		}
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0.0, histogram.getMean(), 0.0);
+	}
+}
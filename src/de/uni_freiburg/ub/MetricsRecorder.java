@@ -0,0 +1,20 @@
+package de.uni_freiburg.ub;
+
+// receives the metrics of the library, see IpMetrics. an adapter to a
+// metrics system only overrides the methods it needs
+//
+// the methods are called on the threads doing the work, so they should be
+// fast and must be thread safe
+public interface MetricsRecorder {
+
+	default void increment(IpMetrics.Counter counter) {
+	}
+
+	// the duration of a (sampled) operation in nanoseconds
+	default void recordNanos(IpMetrics.Timer timer, long nanos) {
+	}
+
+	default void gauge(IpMetrics.Gauge gauge, long value) {
+	}
+
+}
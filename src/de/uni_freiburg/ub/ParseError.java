@@ -0,0 +1,29 @@
+package de.uni_freiburg.ub;
+
+import de.uni_freiburg.ub.Exception.InvalidIpAddressException;
+import de.uni_freiburg.ub.Exception.InvalidRangeException;
+
+// reasons for a failed parse, see ParseResult
+public enum ParseError {
+
+	// the input does not have the structure of an ip address
+	INVALID_FORMAT,
+	// a block or a cidr suffix is not a number or out of range
+	INVALID_NUMBER,
+	// wildcards or octet ranges are used at a position where they are not allowed
+	INVALID_BLOCKS,
+	// the input is no valid ip range
+	INVALID_RANGE;
+
+	// the exception thrown by the parse methods for this error
+	public RuntimeException toException() {
+		switch (this) {
+		case INVALID_FORMAT:
+			return new InvalidIpAddressException();
+		case INVALID_NUMBER:
+			return new NumberFormatException();
+		default:
+			return new InvalidRangeException();
+		}
+	}
+}
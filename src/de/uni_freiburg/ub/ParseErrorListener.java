@@ -0,0 +1,8 @@
+package de.uni_freiburg.ub;
+
+// receives the lines which could not be parsed, lineNumber starts with 1
+public interface ParseErrorListener {
+
+	void onError(long lineNumber, String line, ParseError error);
+
+}
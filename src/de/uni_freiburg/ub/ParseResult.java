@@ -0,0 +1,55 @@
+package de.uni_freiburg.ub;
+
+// result of the tryParse methods, which report invalid input without
+// throwing an exception, the invalid results are shared instances so that
+// rejecting input does not allocate
+public final class ParseResult<T> {
+
+	private static final ParseResult<?>[] INVALID = new ParseResult<?>[ParseError.values().length];
+
+	static {
+		for (ParseError error : ParseError.values()) {
+			INVALID[error.ordinal()] = new ParseResult<Object>(null, error);
+		}
+	}
+
+	private final T value;
+	private final ParseError error;
+
+	private ParseResult(T value, ParseError error) {
+		this.value = value;
+		this.error = error;
+	}
+
+	static <T> ParseResult<T> valid(T value) {
+		return new ParseResult<T>(value, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> ParseResult<T> invalid(ParseError error) {
+		return (ParseResult<T>) INVALID[error.ordinal()];
+	}
+
+	public boolean isValid() {
+		return error == null;
+	}
+
+	// the parsed value or null if the input is invalid
+	public T getValue() {
+		return value;
+	}
+
+	// the reason of the failure or null if the input is valid
+	public ParseError getError() {
+		return error;
+	}
+
+	// the parsed value, throws the exception of the parse methods if the
+	// input is invalid
+	public T getOrThrow() {
+		if (error != null) {
+			throw error.toException();
+		}
+		return value;
+	}
+}
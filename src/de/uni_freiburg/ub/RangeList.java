@@ -0,0 +1,460 @@
+package de.uni_freiburg.ub;
+
+import java.util.Arrays;
+import java.util.List;
+
+// sorted list of disjoint, non touching ranges of one ip version kept in
+// primitive arrays, ipv4 addresses are stored with highBits = 0
+// this is the common base for compaction and the set operations of
+// IpRangeCollection, all operations are linear sweeps over the arrays
+final class RangeList {
+
+	static final long IPV4_MAX = 0xFFFFFFFFl;
+
+	final boolean ipv6;
+
+	long[] lowerHigh;
+	long[] lowerLow;
+	long[] upperHigh;
+	long[] upperLow;
+	int size;
+
+	RangeList(boolean ipv6, int capacity) {
+		this.ipv6 = ipv6;
+		capacity = Math.max(capacity, 1);
+		lowerHigh = new long[capacity];
+		lowerLow = new long[capacity];
+		upperHigh = new long[capacity];
+		upperLow = new long[capacity];
+	}
+
+	// compacts all ranges of the requested ip version without touching them
+	static RangeList of(Iterable<IpRange> ranges, boolean ipv6) {
+		int count = 0;
+		for (IpRange range : ranges) {
+			if ((range.lowerLimit instanceof Ipv6Address) == ipv6) {
+				count++;
+			}
+		}
+
+		RangeList unsorted = new RangeList(ipv6, count);
+		for (IpRange range : ranges) {
+			if ((range.lowerLimit instanceof Ipv6Address) != ipv6) {
+				continue;
+			}
+			if (ipv6) {
+				Ipv6Address lower = (Ipv6Address) range.lowerLimit;
+				Ipv6Address upper = (Ipv6Address) range.upperLimit;
+				unsorted.addUnsorted(lower.highBits(), lower.lowBits(), upper.highBits(), upper.lowBits());
+			} else {
+				unsorted.addUnsorted(0l, ((Ipv4Address) range.lowerLimit).longValue(), 0l,
+						((Ipv4Address) range.upperLimit).longValue());
+			}
+		}
+
+		return unsorted.compact();
+	}
+
+	// compacts ipv4 ranges packed as lower << 32 | upper, the packed values
+	// are overwritten, the result has no unused capacity
+	static RangeList ofIpv4(long[] packed, int count) {
+		for (int i = 0; i < count; i++) {
+			packed[i] ^= Long.MIN_VALUE;
+		}
+		Arrays.sort(packed, 0, count);
+
+		// the merged ranges are written over the sorted ones
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			long value = packed[i] ^ Long.MIN_VALUE;
+			long upper = value & IPV4_MAX;
+			if (n > 0 && (value >>> 32) <= (packed[n - 1] & IPV4_MAX) + 1) {
+				if (upper > (packed[n - 1] & IPV4_MAX)) {
+					packed[n - 1] = (packed[n - 1] & ~IPV4_MAX) | upper;
+				}
+			} else {
+				packed[n++] = value;
+			}
+		}
+
+		RangeList result = new RangeList(false, n);
+		for (int i = 0; i < n; i++) {
+			result.lowerLow[i] = packed[i] >>> 32;
+			result.upperLow[i] = packed[i] & IPV4_MAX;
+		}
+		result.size = n;
+		return result;
+	}
+
+	long maxHigh() {
+		return ipv6 ? -1l : 0l;
+	}
+
+	long maxLow() {
+		return ipv6 ? -1l : IPV4_MAX;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > lowerHigh.length) {
+			int newCapacity = Math.max(capacity, lowerHigh.length + (lowerHigh.length >> 1) + 1);
+			lowerHigh = Arrays.copyOf(lowerHigh, newCapacity);
+			lowerLow = Arrays.copyOf(lowerLow, newCapacity);
+			upperHigh = Arrays.copyOf(upperHigh, newCapacity);
+			upperLow = Arrays.copyOf(upperLow, newCapacity);
+		}
+	}
+
+	// appends a range without any checks, compact() restores the invariants
+	void addUnsorted(long lh, long ll, long uh, long ul) {
+		ensureCapacity(size + 1);
+		lowerHigh[size] = lh;
+		lowerLow[size] = ll;
+		upperHigh[size] = uh;
+		upperLow[size] = ul;
+		size++;
+	}
+
+	// appends a range whose lower limit is not lesser than the lower limit of
+	// the last range, overlapping or touching ranges are merged
+	void append(long lh, long ll, long uh, long ul) {
+		int last = size - 1;
+		if (last >= 0 && isTouching(upperHigh[last], upperLow[last], lh, ll)) {
+			if (compare(uh, ul, upperHigh[last], upperLow[last]) > 0) {
+				upperHigh[last] = uh;
+				upperLow[last] = ul;
+			}
+			return;
+		}
+		addUnsorted(lh, ll, uh, ul);
+	}
+
+	// returns the position of the range containing the address or -1
+	int indexOf(long highBits, long lowBits) {
+		int low = 0;
+		int high = size - 1;
+
+		// find the last range whose lower limit is lesser or equal
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (compare(lowerHigh[mid], lowerLow[mid], highBits, lowBits) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (high >= 0 && compare(highBits, lowBits, upperHigh[high], upperLow[high]) <= 0) {
+			return high;
+		}
+		return -1;
+	}
+
+	// as indexOf for a list of ipv4 ranges, the low bits are compared signed
+	int indexOfIpv4(long bits) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (lowerLow[mid] <= bits) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (high >= 0 && bits <= upperLow[high]) {
+			return high;
+		}
+		return -1;
+	}
+
+	// inserts a range into the compacted list, merging it with all
+	// overlapping or touching ranges
+	void insert(long lh, long ll, long uh, long ul) {
+		// the first range with a lower limit greater than the new one
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(lowerHigh[mid], lowerLow[mid], lh, ll) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		int first = low;
+		if (first > 0 && isTouching(upperHigh[first - 1], upperLow[first - 1], lh, ll)) {
+			first--;
+			lh = lowerHigh[first];
+			ll = lowerLow[first];
+			if (compare(upperHigh[first], upperLow[first], uh, ul) > 0) {
+				uh = upperHigh[first];
+				ul = upperLow[first];
+			}
+		}
+
+		int last = low;
+		while (last < size && isTouching(uh, ul, lowerHigh[last], lowerLow[last])) {
+			if (compare(upperHigh[last], upperLow[last], uh, ul) > 0) {
+				uh = upperHigh[last];
+				ul = upperLow[last];
+			}
+			last++;
+		}
+
+		// the ranges first until last (exclusive) are replaced by the new one
+		int shift = 1 - (last - first);
+		if (shift != 0) {
+			ensureCapacity(size + shift);
+			System.arraycopy(lowerHigh, last, lowerHigh, last + shift, size - last);
+			System.arraycopy(lowerLow, last, lowerLow, last + shift, size - last);
+			System.arraycopy(upperHigh, last, upperHigh, last + shift, size - last);
+			System.arraycopy(upperLow, last, upperLow, last + shift, size - last);
+			size += shift;
+		}
+
+		lowerHigh[first] = lh;
+		lowerLow[first] = ll;
+		upperHigh[first] = uh;
+		upperLow[first] = ul;
+	}
+
+	// sorts the ranges by their lower limits and merges them in place
+	RangeList compact() {
+		if (ipv6) {
+			sort(0, size - 1);
+		} else {
+			sortIpv4();
+		}
+
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (n > 0 && isTouching(upperHigh[n - 1], upperLow[n - 1], lowerHigh[i], lowerLow[i])) {
+				if (compare(upperHigh[i], upperLow[i], upperHigh[n - 1], upperLow[n - 1]) > 0) {
+					upperHigh[n - 1] = upperHigh[i];
+					upperLow[n - 1] = upperLow[i];
+				}
+			} else {
+				lowerHigh[n] = lowerHigh[i];
+				lowerLow[n] = lowerLow[i];
+				upperHigh[n] = upperHigh[i];
+				upperLow[n] = upperLow[i];
+				n++;
+			}
+		}
+		size = n;
+
+		return this;
+	}
+
+	// drops the unused capacity
+	RangeList trimToSize() {
+		return size == lowerHigh.length ? this : copy();
+	}
+
+	RangeList union(RangeList other) {
+		RangeList result = new RangeList(ipv6, size + other.size);
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size) {
+			if (j >= other.size
+					|| (i < size && compare(lowerHigh[i], lowerLow[i], other.lowerHigh[j], other.lowerLow[j]) <= 0)) {
+				result.append(lowerHigh[i], lowerLow[i], upperHigh[i], upperLow[i]);
+				i++;
+			} else {
+				result.append(other.lowerHigh[j], other.lowerLow[j], other.upperHigh[j], other.upperLow[j]);
+				j++;
+			}
+		}
+		return result;
+	}
+
+	RangeList intersect(RangeList other) {
+		RangeList result = new RangeList(ipv6, Math.min(size, other.size) * 2);
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			// the larger lower limit and the smaller upper limit
+			boolean otherLower = compare(other.lowerHigh[j], other.lowerLow[j], lowerHigh[i], lowerLow[i]) > 0;
+			long lh = otherLower ? other.lowerHigh[j] : lowerHigh[i];
+			long ll = otherLower ? other.lowerLow[j] : lowerLow[i];
+
+			boolean otherUpper = compare(other.upperHigh[j], other.upperLow[j], upperHigh[i], upperLow[i]) < 0;
+			long uh = otherUpper ? other.upperHigh[j] : upperHigh[i];
+			long ul = otherUpper ? other.upperLow[j] : upperLow[i];
+
+			if (compare(lh, ll, uh, ul) <= 0) {
+				result.addUnsorted(lh, ll, uh, ul);
+			}
+
+			// the range ending first can not intersect with any further range
+			if (otherUpper) {
+				j++;
+			} else {
+				i++;
+			}
+		}
+		return result;
+	}
+
+	RangeList subtract(RangeList other) {
+		RangeList result = new RangeList(ipv6, size + other.size);
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			long ch = lowerHigh[i];
+			long cl = lowerLow[i];
+			boolean covered = false;
+
+			// skip the ranges of other ending in front of the current range
+			while (j < other.size && compare(other.upperHigh[j], other.upperLow[j], ch, cl) < 0) {
+				j++;
+			}
+
+			while (j < other.size && compare(other.lowerHigh[j], other.lowerLow[j], upperHigh[i], upperLow[i]) <= 0) {
+				if (compare(other.lowerHigh[j], other.lowerLow[j], ch, cl) > 0) {
+					long oh = other.lowerHigh[j];
+					long ol = other.lowerLow[j];
+					result.addUnsorted(ch, cl, ol == 0l ? oh - 1 : oh, ol - 1);
+				}
+				if (compare(other.upperHigh[j], other.upperLow[j], upperHigh[i], upperLow[i]) >= 0) {
+					// the rest of the current range is removed, other[j]
+					// may still overlap the next range
+					covered = true;
+					break;
+				}
+				long oh = other.upperHigh[j];
+				long ol = other.upperLow[j];
+				ch = ol == -1l ? oh + 1 : oh;
+				cl = ol + 1;
+				j++;
+			}
+
+			if (!covered) {
+				result.addUnsorted(ch, cl, upperHigh[i], upperLow[i]);
+			}
+		}
+		return result;
+	}
+
+	// all addresses of the ip version which are not part of this list
+	RangeList complement() {
+		RangeList universe = new RangeList(ipv6, 1);
+		universe.addUnsorted(0l, 0l, maxHigh(), maxLow());
+		return universe.subtract(this);
+	}
+
+	IpRange getIpRange(int idx) {
+		return new IpRange(toIpAddress(lowerHigh[idx], lowerLow[idx]), toIpAddress(upperHigh[idx], upperLow[idx]));
+	}
+
+	IpAddress toIpAddress(long highBits, long lowBits) {
+		if (ipv6) {
+			return new Ipv6Address(highBits, lowBits);
+		}
+		return new Ipv4Address(lowBits);
+	}
+
+	void addTo(List<IpRange> ranges) {
+		for (int i = 0; i < size; i++) {
+			ranges.add(getIpRange(i));
+		}
+	}
+
+	RangeList copy() {
+		RangeList result = new RangeList(ipv6, size);
+		System.arraycopy(lowerHigh, 0, result.lowerHigh, 0, size);
+		System.arraycopy(lowerLow, 0, result.lowerLow, 0, size);
+		System.arraycopy(upperHigh, 0, result.upperHigh, 0, size);
+		System.arraycopy(upperLow, 0, result.upperLow, 0, size);
+		result.size = size;
+		return result;
+	}
+
+	static int compare(long high1, long low1, long high2, long low2) {
+		if (high1 == high2) {
+			return Long.compareUnsigned(low1, low2);
+		}
+		return Long.compareUnsigned(high1, high2);
+	}
+
+	// true if a range starting at (lh, ll) overlaps or touches a range ending
+	// at (uh, ul) which starts in front of it
+	static boolean isTouching(long uh, long ul, long lh, long ll) {
+		if (compare(lh, ll, uh, ul) <= 0) {
+			return true;
+		}
+		if (ul == -1l) {
+			return ll == 0l && lh == uh + 1;
+		}
+		return lh == uh && ll == ul + 1;
+	}
+
+	// ipv4 bounds fit into one long (lower << 32 | upper), flipping the sign
+	// bit makes the signed order of the packed values the unsigned order
+	private void sortIpv4() {
+		long[] packed = new long[size];
+		for (int i = 0; i < size; i++) {
+			packed[i] = (lowerLow[i] << 32 | upperLow[i]) ^ Long.MIN_VALUE;
+		}
+		Arrays.sort(packed);
+		for (int i = 0; i < size; i++) {
+			long value = packed[i] ^ Long.MIN_VALUE;
+			lowerLow[i] = value >>> 32;
+			upperLow[i] = value & 0xFFFFFFFFl;
+		}
+	}
+
+	// quicksort of the parallel arrays by lower limit
+	private void sort(int left, int right) {
+		while (right - left > 16) {
+			int mid = (left + right) >>> 1;
+			long ph = lowerHigh[mid];
+			long pl = lowerLow[mid];
+
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (compare(lowerHigh[i], lowerLow[i], ph, pl) < 0) {
+					i++;
+				}
+				while (compare(lowerHigh[j], lowerLow[j], ph, pl) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+
+			// recurse into the smaller part to limit the stack depth
+			if (j - left < right - i) {
+				sort(left, j);
+				left = i;
+			} else {
+				sort(i, right);
+				right = j;
+			}
+		}
+
+		for (int i = left + 1; i <= right; i++) {
+			for (int j = i; j > left && compare(lowerHigh[j - 1], lowerLow[j - 1], lowerHigh[j], lowerLow[j]) > 0; j--) {
+				swap(j, j - 1);
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		long tmp = lowerHigh[i];
+		lowerHigh[i] = lowerHigh[j];
+		lowerHigh[j] = tmp;
+		tmp = lowerLow[i];
+		lowerLow[i] = lowerLow[j];
+		lowerLow[j] = tmp;
+		tmp = upperHigh[i];
+		upperHigh[i] = upperHigh[j];
+		upperHigh[j] = tmp;
+		tmp = upperLow[i];
+		upperLow[i] = upperLow[j];
+		upperLow[j] = tmp;
+	}
+}